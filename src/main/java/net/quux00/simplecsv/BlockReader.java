@@ -0,0 +1,79 @@
+package net.quux00.simplecsv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Base class for the block-buffered readers that the CsvReader hands to its
+ * parser. Subclasses expose their internal window (chars or bytes) to the
+ * parsers in this package, which tokenize directly out of it.  The valid
+ * part of the window is [pos, limit); anything before pos has been consumed
+ * and is compacted away on the next {@link #fill()}.
+ *
+ * It extends BufferedReader so that CsvParser implementations that check for
+ * a BufferedReader (and call readLine) continue to work when handed one of these
+ * by the CsvReader.
+ *
+ * NotThreadSafe - like the CsvReader that owns it, use one per thread.
+ */
+abstract class BlockReader extends BufferedReader {
+  static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  int pos = 0;
+  int limit = 0;
+  // if the last line ended with a CR, a following LF is part of that line ending
+  boolean skipLF = false;
+  // offset in the source of the start of the window, or of the part of it
+  // that subclasses have not counted yet; see position()
+  long base = 0;
+
+  BlockReader(Reader in) {
+    super(in, 1);
+  }
+
+  /**
+   * For subclasses that do not read from a Reader.
+   */
+  BlockReader() {
+    this(new StringReader(""));
+  }
+
+  /**
+   * Reads another block from the underlying source into the window, first
+   * compacting out the consumed entries (and growing the window if it is full).
+   * Indexes into the window held by the caller must be rebased on <code>pos</code>,
+   * since it is reset to 0 by the compaction.
+   *
+   * @return false if the underlying source is at EOF, true otherwise
+   * @throws IOException
+   */
+  abstract boolean fill() throws IOException;
+
+  /**
+   * Returns the offset in the source of the next unconsumed entry, which is
+   * where a new reader of the same source can resume.  An LF that would be
+   * skipped as the end of a CRLF is consumed first, reading ahead if needed.
+   * Offsets start at the value of <code>base</code> when the reader is created.
+   *
+   * @return offset in the source, in bytes or chars, of <code>pos</code>
+   * @throws IOException
+   */
+  abstract long position() throws IOException;
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void mark(int readAheadLimit) throws IOException {
+    throw new IOException("mark() not supported");
+  }
+
+  @Override
+  public void reset() throws IOException {
+    throw new IOException("reset() not supported");
+  }
+}
@@ -0,0 +1,355 @@
+package net.quux00.simplecsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A BlockReader over a UTF-8 encoded byte source (an InputStream, a
+ * ReadableByteChannel or a fixed byte[] range).  It exposes its internal
+ * byte[] window to the {@link Utf8CsvParser}, which finds the CSV structure
+ * directly on the bytes and only decodes the field contents.
+ *
+ * Since it is also a Reader, any other CsvParser can be used with it as well;
+ * the Reader methods decode the window as UTF-8.  Malformed input is replaced
+ * with U+FFFD, as an InputStreamReader would do.
+ *
+ * NotThreadSafe - like the CsvReader that owns it, use one per thread.
+ */
+final class ByteBlockReader extends BlockReader {
+  static final Charset UTF8 = Charset.forName("UTF-8");
+  static final int REPLACEMENT_CHAR = 0xFFFD;
+
+  private final InputStream in;
+  private final ReadableByteChannel channel;
+  private ByteBuffer bbuf;  // wraps buf when reading from a channel
+
+  // the window: valid bytes are buf[pos, limit)
+  byte[] buf;
+
+  // low surrogate left over when a read(char[]) call only had room for the high one
+  private char pendingLowSurrogate = 0;
+
+  ByteBlockReader(InputStream in) {
+    this(in, DEFAULT_BLOCK_SIZE);
+  }
+
+  ByteBlockReader(InputStream in, int blockSize) {
+    if (in == null) {
+      throw new IllegalArgumentException("InputStream may not be null");
+    }
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be greater than zero");
+    }
+    this.in = in;
+    this.channel = null;
+    this.buf = new byte[blockSize];
+  }
+
+  ByteBlockReader(ReadableByteChannel channel) {
+    this(channel, DEFAULT_BLOCK_SIZE);
+  }
+
+  ByteBlockReader(ReadableByteChannel channel, int blockSize) {
+    if (channel == null) {
+      throw new IllegalArgumentException("Channel may not be null");
+    }
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be greater than zero");
+    }
+    this.in = null;
+    this.channel = channel;
+    this.buf = new byte[blockSize];
+    this.bbuf = ByteBuffer.wrap(buf);
+  }
+
+  /**
+   * Reads from bytes[offset, offset + length) without copying it.
+   * The array is never modified.
+   */
+  ByteBlockReader(byte[] bytes, int offset, int length) {
+    this.in = null;
+    this.channel = null;
+    this.buf = bytes;
+    this.pos = offset;
+    this.limit = offset + length;
+    // positions are relative to the start of the range
+    this.base = -offset;
+  }
+
+  @Override
+  boolean fill() throws IOException {
+    if (in == null && channel == null) {
+      // fixed range - nothing more to read, and the caller's array must not be compacted
+      return false;
+    }
+    if (pos > 0) {
+      base += pos;
+      System.arraycopy(buf, pos, buf, 0, limit - pos);
+      limit -= pos;
+      pos = 0;
+    }
+    if (limit == buf.length) {
+      buf = Arrays.copyOf(buf, buf.length * 2);
+      if (channel != null) {
+        bbuf = ByteBuffer.wrap(buf);
+      }
+    }
+    int n;
+    do {
+      if (channel != null) {
+        bbuf.limit(buf.length).position(limit);
+        n = channel.read(bbuf);
+      } else {
+        n = in.read(buf, limit, buf.length - limit);
+      }
+    } while (n == 0);
+
+    if (n < 0) {
+      return false;
+    }
+    limit += n;
+    return true;
+  }
+
+  @Override
+  long position() throws IOException {
+    if (skipLF && (pos < limit || fill())) {
+      if (buf[pos] == '\n') {
+        pos++;
+      }
+      skipLF = false;
+    }
+    return base + pos;
+  }
+
+  /**
+   * Decodes the multi-byte UTF-8 sequence whose lead byte is at buf[pos],
+   * refilling the window if the sequence is split across blocks, and moves
+   * pos past it.
+   *
+   * @return the code point or U+FFFD if the sequence is malformed
+   * @throws IOException
+   */
+  int decodeSequence() throws IOException {
+    int b0 = buf[pos] & 0xFF;
+    int n;
+    int cp;
+    if (b0 >= 0xC2 && b0 <= 0xDF) {
+      n = 2;
+      cp = b0 & 0x1F;
+    } else if ((b0 & 0xF0) == 0xE0) {
+      n = 3;
+      cp = b0 & 0x0F;
+    } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+      n = 4;
+      cp = b0 & 0x07;
+    } else {
+      pos++;
+      return REPLACEMENT_CHAR;
+    }
+
+    while (limit - pos < n && fill()) {
+      // keep reading until the whole sequence is in the window or EOF
+    }
+
+    int end = Math.min(pos + n, limit);
+    int i = pos + 1;
+    for (; i < end; i++) {
+      int b = buf[i];
+      if ((b & 0xC0) != 0x80) {
+        break;
+      }
+      cp = (cp << 6) | (b & 0x3F);
+    }
+    boolean truncated = (i < pos + n);
+    pos = i;
+    if (truncated) {
+      return REPLACEMENT_CHAR;
+    }
+    // reject overlong encodings, surrogates and code points beyond U+10FFFF
+    if ((n == 3 && (cp < 0x800 || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))) ||
+        (n == 4 && (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT))) {
+      return REPLACEMENT_CHAR;
+    }
+    return cp;
+  }
+
+  /**
+   * Ensures the window holds a full line starting at <code>pos</code> and returns
+   * the index in buf of its line terminator (LF, CR or the CR of CRLF).  If the
+   * last line in the input has no terminator, <code>limit</code> is returned.
+   * The line is not consumed - call {@link #consumeLine(int)} for that.
+   *
+   * @return index of the end of the line or -1 if there are no more lines
+   * @throws IOException
+   */
+  int findLineEnd() throws IOException {
+    if (skipLF) {
+      if (pos >= limit && !fill()) {
+        return -1;
+      }
+      if (buf[pos] == '\n') {
+        pos++;
+      }
+      skipLF = false;
+    }
+    if (pos >= limit && !fill()) {
+      return -1;
+    }
+
+    int i = pos;
+    while (true) {
+      for (; i < limit; i++) {
+        byte b = buf[i];
+        if (b == '\n' || b == '\r') {
+          return i;
+        }
+      }
+      int scanned = i - pos;
+      if (!fill()) {
+        return limit;
+      }
+      i = pos + scanned;
+    }
+  }
+
+  /**
+   * Moves past the line ending at <code>end</code>, which must be a value
+   * returned by {@link #findLineEnd()}.
+   */
+  void consumeLine(int end) {
+    if (end < limit) {
+      skipLF = (buf[end] == '\r');
+      pos = end + 1;
+    } else {
+      pos = end;
+    }
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    // the second half of a supplementary char started by read() begins the line
+    char pending = pendingLowSurrogate;
+    pendingLowSurrogate = 0;
+    int end = findLineEnd();
+    if (end < 0) {
+      return (pending != 0 ? String.valueOf(pending) : null);
+    }
+    String line = new String(buf, pos, end - pos, UTF8);
+    consumeLine(end);
+    return (pending != 0 ? pending + line : line);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (pendingLowSurrogate != 0) {
+      char c = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+      return c;
+    }
+    if (pos >= limit && !fill()) {
+      return -1;
+    }
+    if (skipLF) {
+      skipLF = false;
+      if (buf[pos] == '\n') {
+        pos++;
+        return read();
+      }
+    }
+    byte b = buf[pos];
+    if (b >= 0) {
+      pos++;
+      return b;
+    }
+    int cp = decodeSequence();
+    if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+      char[] pair = Character.toChars(cp);
+      pendingLowSurrogate = pair[1];
+      return pair[0];
+    }
+    return cp;
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    int n = 0;
+    if (pendingLowSurrogate != 0) {
+      cbuf[off + n++] = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+    }
+    while (n < len) {
+      // only go back to the source if nothing has been read yet
+      if (pos >= limit && (n > 0 || !fill())) {
+        break;
+      }
+      if (skipLF) {
+        skipLF = false;
+        if (buf[pos] == '\n') {
+          pos++;
+          continue;
+        }
+      }
+      byte b = buf[pos];
+      if (b >= 0) {
+        cbuf[off + n++] = (char) b;
+        pos++;
+      } else {
+        int cp = decodeSequence();
+        if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+          char[] pair = Character.toChars(cp);
+          cbuf[off + n++] = pair[0];
+          if (n < len) {
+            cbuf[off + n++] = pair[1];
+          } else {
+            pendingLowSurrogate = pair[1];
+          }
+        } else {
+          cbuf[off + n++] = (char) cp;
+        }
+      }
+    }
+    return (n == 0 ? -1 : n);
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n < 0L) {
+      throw new IllegalArgumentException("skip value is negative");
+    }
+    char[] skipBuf = new char[(int) Math.min(n, 8192)];
+    long remaining = n;
+    while (remaining > 0) {
+      int k = read(skipBuf, 0, (int) Math.min(remaining, skipBuf.length));
+      if (k < 0) {
+        break;
+      }
+      remaining -= k;
+    }
+    return n - remaining;
+  }
+
+  @Override
+  public boolean ready() throws IOException {
+    if (pos < limit || pendingLowSurrogate != 0) {
+      return true;
+    }
+    return (in != null && in.available() > 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (in != null) {
+      in.close();
+    } else if (channel != null) {
+      channel.close();
+    }
+  }
+}
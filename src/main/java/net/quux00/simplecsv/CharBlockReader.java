@@ -0,0 +1,238 @@
+package net.quux00.simplecsv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A BlockReader that exposes its internal char[] window to the parsers in
+ * this package, so they can tokenize directly out of the block rather than
+ * first copying each line into a String with readLine().
+ *
+ * The window is refilled from the underlying Reader in large blocks. If a 
+ * single line is larger than the window, the window is grown.
+ *
+ * Its position is a char offset, or, for a Reader that decodes UTF-8, the
+ * byte offset the consumed chars were decoded from.  Byte offsets are exact
+ * as long as the input is well-formed UTF-8.
+ *
+ * NotThreadSafe - like the CsvReader that owns it, use one per thread.
+ */
+final class CharBlockReader extends BlockReader {
+
+  private final Reader in;
+
+  // the window: valid chars are buf[pos, limit)
+  char[] buf;
+
+  // whether positions count the UTF-8 bytes of the chars rather than the chars
+  private final boolean utf8;
+  // base is the offset of buf[counted]
+  private int counted = 0;
+
+  CharBlockReader(Reader in) {
+    this(in, DEFAULT_BLOCK_SIZE);
+  }
+
+  CharBlockReader(Reader in, int blockSize) {
+    this(in, blockSize, false);
+  }
+
+  /**
+   * @param utf8 true if the Reader decodes UTF-8, and positions should be byte offsets
+   */
+  CharBlockReader(Reader in, int blockSize, boolean utf8) {
+    super(in);
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be greater than zero");
+    }
+    this.in = in;
+    this.buf = new char[blockSize];
+    this.utf8 = utf8;
+  }
+
+  @Override
+  boolean fill() throws IOException {
+    if (pos > 0) {
+      count();
+      counted = 0;
+      System.arraycopy(buf, pos, buf, 0, limit - pos);
+      limit -= pos;
+      pos = 0;
+    }
+    if (limit == buf.length) {
+      buf = Arrays.copyOf(buf, buf.length * 2);
+    }
+    int n;
+    do {
+      n = in.read(buf, limit, buf.length - limit);
+    } while (n == 0);
+
+    if (n < 0) {
+      return false;
+    }
+    limit += n;
+    return true;
+  }
+
+  @Override
+  long position() throws IOException {
+    if (skipLF && (pos < limit || fill())) {
+      if (buf[pos] == '\n') {
+        pos++;
+      }
+      skipLF = false;
+    }
+    count();
+    return base;
+  }
+
+  // moves base up to pos
+  private void count() {
+    if (utf8) {
+      base += utf8Length(buf, counted, pos);
+    } else {
+      base += pos - counted;
+    }
+    counted = pos;
+  }
+
+  /**
+   * @return number of bytes the UTF-8 encoding of buf[from, to) takes,
+   *         where each half of a surrogate pair takes 2
+   */
+  static int utf8Length(char[] buf, int from, int to) {
+    int n = to - from;
+    for (int i = from; i < to; i++) {
+      char c = buf[i];
+      if (c >= 0x80) {
+        n += (c < 0x800 || (c >= '\uD800' && c <= '\uDFFF') ? 1 : 2);
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Ensures the window holds a full line starting at <code>pos</code> and returns
+   * the index in buf of its line terminator (LF, CR or the CR of CRLF).  If the
+   * last line in the input has no terminator, <code>limit</code> is returned.
+   * The line is not consumed - call {@link #consumeLine(int)} for that.
+   *
+   * @return index of the end of the line or -1 if there are no more lines
+   * @throws IOException
+   */
+  int findLineEnd() throws IOException {
+    if (skipLF) {
+      if (pos >= limit && !fill()) {
+        return -1;
+      }
+      if (buf[pos] == '\n') {
+        pos++;
+      }
+      skipLF = false;
+    }
+    if (pos >= limit && !fill()) {
+      return -1;
+    }
+
+    int i = pos;
+    while (true) {
+      for (; i < limit; i++) {
+        char c = buf[i];
+        if (c == '\n' || c == '\r') {
+          return i;
+        }
+      }
+      int scanned = i - pos;
+      if (!fill()) {
+        return limit;
+      }
+      i = pos + scanned;
+    }
+  }
+
+  /**
+   * Moves past the line ending at <code>end</code>, which must be a value
+   * returned by {@link #findLineEnd()}.
+   */
+  void consumeLine(int end) {
+    if (end < limit) {
+      skipLF = (buf[end] == '\r');
+      pos = end + 1;
+    } else {
+      pos = end;
+    }
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    int end = findLineEnd();
+    if (end < 0) {
+      return null;
+    }
+    String line = new String(buf, pos, end - pos);
+    consumeLine(end);
+    return line;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!skipPendingLF()) {
+      return -1;
+    }
+    return buf[pos++];
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!skipPendingLF()) {
+      return -1;
+    }
+    int n = Math.min(len, limit - pos);
+    System.arraycopy(buf, pos, cbuf, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n < 0L) {
+      throw new IllegalArgumentException("skip value is negative");
+    }
+    long remaining = n;
+    while (remaining > 0 && skipPendingLF()) {
+      int k = (int) Math.min(remaining, limit - pos);
+      pos += k;
+      remaining -= k;
+    }
+    return n - remaining;
+  }
+
+  // returns false if EOF was hit; otherwise at least one char is in the window
+  private boolean skipPendingLF() throws IOException {
+    if (pos >= limit && !fill()) {
+      return false;
+    }
+    if (skipLF) {
+      skipLF = false;
+      if (buf[pos] == '\n') {
+        pos++;
+        return skipPendingLF();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean ready() throws IOException {
+    return pos < limit || in.ready();
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
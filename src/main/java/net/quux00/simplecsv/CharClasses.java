@@ -0,0 +1,230 @@
+package net.quux00.simplecsv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The lexer tables shared by the parsers: the class of every char the parser
+ * state machine treats specially, resolved once when the parser is built.
+ *
+ * Each ASCII char maps to its class through a 128-entry table, so the parsers
+ * make one table lookup per char instead of comparing it against each of the
+ * separator, quote and escape chars (and against NULL_CHARACTER for the
+ * optional ones).  A char that is undefined (NULL_CHARACTER) gets no class.
+ * Non-ASCII chars are REGULAR unless one of the structural chars is itself
+ * non-ASCII.
+ *
+ * Where two classes apply, the one the state machine checks first wins:
+ * quote, then escape, then separator, then CR and LF.
+ *
+ * The skipPlain methods find the end of a run of chars that need no handling
+ * in the current quote state, so the parsers can bulk append them.  When the
+ * JDK Vector API is available, a StructuralScanner first skips over whole
+ * vectors of plain chars.  Otherwise, on Java 9 and later, the byte scan
+ * skips eight bytes at a time with SWAR (SIMD within a register) arithmetic
+ * on longs loaded through a ByteBuffer.  On Java 8 and earlier, where
+ * ByteBuffer.getLong assembles the long from single byte loads, that is
+ * slower than the table, as SkipPlainBenchmark in the tests shows, so there
+ * the table is used alone.
+ *
+ * Immutable and so ThreadSafe.
+ */
+final class CharClasses {
+  static final byte REGULAR = 0;
+  static final byte SEPARATOR = 1;
+  static final byte QUOTE = 2;
+  static final byte ESCAPE = 3;
+  static final byte CR = 4;
+  static final byte LF = 5;
+
+  static final int TABLE_SIZE = 128;
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+  private static final long HIGH = 0x8080808080808080L;
+  private static final long CR_WORD = '\r' * ONES;
+  private static final long LF_WORD = '\n' * ONES;
+
+  // whether ByteBuffer.getLong is a single load, as it is from Java 9 on
+  private static final boolean WORD_LOADS =
+      !System.getProperty("java.specification.version", "1.6").startsWith("1.");
+
+  // class of each ASCII char outside of quotes
+  private final byte[] outside = new byte[TABLE_SIZE];
+  // only QUOTE and ESCAPE are special inside quotes
+  private final byte[] inside = new byte[TABLE_SIZE];
+
+  // structural chars outside of the tables, if any
+  private final boolean wide;
+  private final char separator;
+  private final char quotechar;
+  private final char escapechar;
+
+  // vectorized scanning, or null to only use the tables
+  private final StructuralScanner scanner;
+
+  // each ASCII structural byte repeated in every byte of a long, for the
+  // word-at-a-time byte scan; an undefined or non-ASCII char is 0x80, which
+  // can only match a byte the scan already stops at
+  private final long separatorWord;
+  private final long quoteWord;
+  private final long escapeWord;
+
+  /**
+   * Checks that the structural chars are ASCII, as they must be for the
+   * parsers and scans that work on UTF-8 bytes: a byte below 0x80 is then
+   * never part of a multi-byte sequence.
+   *
+   * @throws UnsupportedOperationException if any of them is not
+   */
+  static void requireAscii(char separator, char quotechar, char escapechar) {
+    if (separator >= TABLE_SIZE || quotechar >= TABLE_SIZE || escapechar >= TABLE_SIZE) {
+      throw new UnsupportedOperationException("The separator, quote, and escape characters must be ASCII!");
+    }
+  }
+
+  CharClasses(final char separator, final char quotechar, final char escapechar) {
+    this.separator = separator;
+    this.quotechar = quotechar;
+    this.escapechar = escapechar;
+
+    // lowest precedence first, so later classes overwrite
+    outside['\r'] = CR;
+    outside['\n'] = LF;
+    set(separator, SEPARATOR);
+    set(escapechar, ESCAPE);
+    set(quotechar, QUOTE);
+
+    wide = separator >= TABLE_SIZE || quotechar >= TABLE_SIZE || escapechar >= TABLE_SIZE;
+    scanner = StructuralScanner.newInstance(separator, quotechar, escapechar);
+    separatorWord = wordOf(separator);
+    quoteWord = wordOf(quotechar);
+    escapeWord = wordOf(escapechar);
+  }
+
+  private static long wordOf(char c) {
+    return (c != ParserUtil.NULL_CHARACTER && c < TABLE_SIZE ? c : 0x80) * ONES;
+  }
+
+  private void set(char c, byte charClass) {
+    if (c != ParserUtil.NULL_CHARACTER && c < TABLE_SIZE) {
+      outside[c] = charClass;
+      inside[c] = (charClass == QUOTE || charClass == ESCAPE ? charClass : REGULAR);
+    }
+  }
+
+  /**
+   * @return the class of the char, outside of quotes
+   */
+  byte classOf(char c) {
+    if (c < TABLE_SIZE) {
+      return outside[c];
+    }
+    return (wide ? wideClassOf(c) : REGULAR);
+  }
+
+  /**
+   * @return the class of the byte of a UTF-8 sequence, outside of quotes.
+   *         Bytes of multi-byte sequences (b < 0) are REGULAR.
+   */
+  byte classOf(byte b) {
+    return (b >= 0 ? outside[b] : REGULAR);
+  }
+
+  private byte wideClassOf(char c) {
+    if (c == quotechar) {
+      return QUOTE;
+    } else if (c == escapechar) {
+      return ESCAPE;
+    } else if (c == separator) {
+      return SEPARATOR;
+    }
+    return REGULAR;
+  }
+
+  /**
+   * Finds the end of a run of REGULAR chars.  Inside quotes, the separator,
+   * CR and LF are regular chars too.
+   *
+   * @return index of the first char in buf[from, to) that is not regular,
+   *         or to if they all are
+   */
+  int skipPlain(char[] buf, int from, int to, boolean inQuotes) {
+    final byte[] table = (inQuotes ? inside : outside);
+    int i = (scanner == null ? from : scanner.skipPlain(buf, from, to, inQuotes));
+    if (wide) {
+      while (i < to && (buf[i] < TABLE_SIZE ? table[buf[i]] == REGULAR : !isWideSpecial(buf[i], inQuotes))) {
+        i++;
+      }
+    } else {
+      while (i < to && (buf[i] >= TABLE_SIZE || table[buf[i]] == REGULAR)) {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  private boolean isWideSpecial(char c, boolean inQuotes) {
+    byte charClass = wideClassOf(c);
+    return (inQuotes ? charClass == QUOTE || charClass == ESCAPE : charClass != REGULAR);
+  }
+
+  /**
+   * Same as skipPlain for chars, over ASCII bytes.  Stops at the first byte of
+   * a multi-byte UTF-8 sequence (b < 0), since it has to be decoded.
+   */
+  int skipPlain(byte[] buf, int from, int to, boolean inQuotes) {
+    int i = from;
+    if (scanner != null) {
+      i = scanner.skipPlain(buf, from, to, inQuotes);
+    } else if (WORD_LOADS) {
+      i = skipWords(buf, from, to, inQuotes);
+    }
+    return skipBytes(buf, i, to, inQuotes);
+  }
+
+  /**
+   * The byte at a time part of skipPlain: one table lookup per byte.
+   */
+  int skipBytes(byte[] buf, int from, int to, boolean inQuotes) {
+    final byte[] table = (inQuotes ? inside : outside);
+    int i = from;
+    while (i < to && buf[i] >= 0 && table[buf[i]] == REGULAR) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * The word at a time (SWAR) part of skipPlain: eight bytes are loaded into
+   * a little-endian long at once and compared against every structural byte
+   * with a few bitwise operations, the lowest set bit of the result marking
+   * the first one found.
+   *
+   * @return index of the first structural byte in buf[from, to), or the index
+   *         of the first byte of the last partial word
+   */
+  int skipWords(byte[] buf, int from, int to, boolean inQuotes) {
+    final ByteBuffer words = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    int i = from;
+    for (; i <= to - 8; i += 8) {
+      long w = words.getLong(i);
+      long found = (w & HIGH) | zeroBytes(w ^ quoteWord) | zeroBytes(w ^ escapeWord);
+      if (!inQuotes) {
+        found |= zeroBytes(w ^ separatorWord) | zeroBytes(w ^ CR_WORD) | zeroBytes(w ^ LF_WORD);
+      }
+      if (found != 0) {
+        return i + (Long.numberOfTrailingZeros(found) >>> 3);
+      }
+    }
+    return i;
+  }
+
+  /**
+   * @return 0x80 in each byte of the word that is zero, 0 in the others.
+   *         Exact, as no carry crosses a byte.
+   */
+  private static long zeroBytes(long x) {
+    return ~(((x & LOW7) + LOW7) | x | LOW7);
+  }
+}
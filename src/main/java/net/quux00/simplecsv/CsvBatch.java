@@ -0,0 +1,216 @@
+package net.quux00.simplecsv;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A block of records read by {@link CsvReader#readBatch(int)}.  The fields
+ * of all the records are stored back to back in one char buffer, with an
+ * array of field offsets and an array of where each record's fields start,
+ * so a batch is three arrays however many records it holds.
+ *
+ * Unlike a CsvRecord, a batch is not refilled: each readBatch returns a new
+ * one, which stays valid and can be handed to another thread to process
+ * while the reader goes on.
+ *
+ * NotThreadSafe - but a batch is not changed once readBatch returns it.
+ */
+public final class CsvBatch {
+  private char[] buf;
+  private int length = 0;
+  // field i (counting over all records) is buf[starts[i], starts[i+1])
+  private int[] starts;
+  private int fields = 0;
+  // the fields of record r are starts[records[r]] up to starts[records[r+1]]
+  private final int[] records;
+  private int size = 0;
+
+  CsvBatch(int maxRecords, int capacity) {
+    buf = new char[Math.max(capacity, SimpleCsvParser.INITIAL_READ_SIZE)];
+    starts = new int[maxRecords * 4 + 1];
+    records = new int[maxRecords + 1];
+  }
+
+  /**
+   * @return number of records in the batch
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param record index of the record in the batch
+   * @return number of fields in the record
+   */
+  public int width(int record) {
+    checkRecord(record);
+    return records[record + 1] - records[record];
+  }
+
+  /**
+   * Returns the field as a read-only slice of the batch's buffer.
+   *
+   * @param record index of the record in the batch
+   * @param field  index of the field in the record
+   * @return the field's chars
+   */
+  public CharSequence get(int record, int field) {
+    int i = fieldIndex(record, field);
+    return CharBuffer.wrap(buf, starts[i], starts[i + 1] - starts[i]).asReadOnlyBuffer();
+  }
+
+  /**
+   * @param record index of the record in the batch
+   * @param field  index of the field in the record
+   * @return a copy of the field as a String
+   */
+  public String getString(int record, int field) {
+    int i = fieldIndex(record, field);
+    return new String(buf, starts[i], starts[i + 1] - starts[i]);
+  }
+
+  /**
+   * @return the field's value, as Integer.parseInt would read it
+   * @throws NumberFormatException if the field is not an int
+   */
+  public int getInt(int record, int field) {
+    int i = fieldIndex(record, field);
+    return FieldValues.parseInt(buf, starts[i], starts[i + 1]);
+  }
+
+  /**
+   * @return the field's value, as Long.parseLong would read it
+   * @throws NumberFormatException if the field is not a long
+   */
+  public long getLong(int record, int field) {
+    int i = fieldIndex(record, field);
+    return FieldValues.parseLong(buf, starts[i], starts[i + 1]);
+  }
+
+  /**
+   * @return the field's value, as Double.parseDouble would read it
+   * @throws NumberFormatException if the field is not a double
+   */
+  public double getDouble(int record, int field) {
+    int i = fieldIndex(record, field);
+    return FieldValues.parseDouble(buf, starts[i], starts[i + 1]);
+  }
+
+  /**
+   * @return whether the field is "true", ignoring case, as Boolean.parseBoolean would read it
+   */
+  public boolean getBoolean(int record, int field) {
+    int i = fieldIndex(record, field);
+    return FieldValues.parseBoolean(buf, starts[i], starts[i + 1]);
+  }
+
+  /**
+   * @return the number of days from 1970-01-01 to the yyyy-MM-dd date in the field
+   * @throws IllegalArgumentException if the field is not a valid yyyy-MM-dd date
+   */
+  public long getEpochDay(int record, int field) {
+    int i = fieldIndex(record, field);
+    return FieldValues.parseEpochDay(buf, starts[i], starts[i + 1]);
+  }
+
+  /**
+   * The buffer holding the chars of all the fields, for code that scans
+   * the fields in place with {@link #start} and {@link #end}.  It must not
+   * be changed.
+   */
+  public char[] getBuffer() {
+    return buf;
+  }
+
+  /**
+   * @return offset in the buffer of the first char of the field
+   */
+  public int start(int record, int field) {
+    return starts[fieldIndex(record, field)];
+  }
+
+  /**
+   * @return offset in the buffer after the last char of the field
+   */
+  public int end(int record, int field) {
+    return starts[fieldIndex(record, field) + 1];
+  }
+
+  /**
+   * @param record index of the record in the batch
+   * @return a copy of the record's fields, as CsvReader.readNext() would have returned
+   */
+  public List<String> toList(int record) {
+    checkRecord(record);
+    List<String> toks = new ArrayList<String>(records[record + 1] - records[record]);
+    for (int i = records[record]; i < records[record + 1]; i++) {
+      toks.add(new String(buf, starts[i], starts[i + 1] - starts[i]));
+    }
+    return toks;
+  }
+
+  /**
+   * @return a copy of all the records, as CsvReader.readAll() would have returned
+   */
+  public List<List<String>> toLists() {
+    List<List<String>> all = new ArrayList<List<String>>(size);
+    for (int r = 0; r < size; r++) {
+      all.add(toList(r));
+    }
+    return all;
+  }
+
+  @Override
+  public String toString() {
+    return toLists().toString();
+  }
+
+  private void checkRecord(int record) {
+    if (record < 0 || record >= size) {
+      throw new IndexOutOfBoundsException("Record: " + record + ", Size: " + size);
+    }
+  }
+
+  private int fieldIndex(int record, int field) {
+    checkRecord(record);
+    int width = records[record + 1] - records[record];
+    if (field < 0 || field >= width) {
+      throw new IndexOutOfBoundsException("Field: " + field + ", Width: " + width);
+    }
+    return records[record] + field;
+  }
+
+  /* ---[ used by the CsvReader ]--- */
+
+  /**
+   * @return number of chars of all the fields, to size the next batch by
+   */
+  int length() {
+    return length;
+  }
+
+  /**
+   * Appends a copy of the record as the last record of the batch.
+   */
+  void add(CsvRecord record) {
+    if (length + record.length > buf.length) {
+      char[] grown = new char[Math.max(length + record.length, buf.length * 2)];
+      System.arraycopy(buf, 0, grown, 0, length);
+      buf = grown;
+    }
+    if (fields + record.size + 1 > starts.length) {
+      int[] grown = new int[Math.max(fields + record.size + 1, starts.length * 2)];
+      System.arraycopy(starts, 0, grown, 0, fields + 1);
+      starts = grown;
+    }
+    System.arraycopy(record.buf, 0, buf, length, record.length);
+    for (int i = 1; i <= record.size; i++) {
+      starts[fields + i] = length + record.starts[i];
+    }
+    fields += record.size;
+    length += record.length;
+    size++;
+    records[size] = fields;
+  }
+}
@@ -0,0 +1,63 @@
+package net.quux00.simplecsv;
+
+/**
+ * Where a CsvReader is in its source between two records: the offset of the
+ * next record and the number of records read or skipped before it.  Since
+ * every parser's state is clean at a record boundary, that is all a new
+ * reader needs to resume there with {@link CsvReaderBuilder#resumeAt}.
+ *
+ * The offset is a byte offset for the UTF-8 sources (an InputStream,
+ * ReadableByteChannel or File) and a char offset for a Reader.  To persist a
+ * checkpoint, store its two numbers and construct it again from them.
+ *
+ * Immutable and so ThreadSafe.
+ */
+public final class CsvCheckpoint {
+  private final long offset;
+  private final long records;
+
+  /**
+   * @param offset  offset in the source of the next record
+   * @param records number of records read or skipped before the offset
+   */
+  public CsvCheckpoint(long offset, long records) {
+    if (offset < 0 || records < 0) {
+      throw new IllegalArgumentException("Offset and record count may not be negative");
+    }
+    this.offset = offset;
+    this.records = records;
+  }
+
+  /**
+   * @return offset in the source of the next record
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return number of records read or skipped before the offset
+   */
+  public long getRecords() {
+    return records;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof CsvCheckpoint)) {
+      return false;
+    }
+    CsvCheckpoint other = (CsvCheckpoint) o;
+    return offset == other.offset && records == other.records;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (offset ^ (offset >>> 32)) * 31 + (int) (records ^ (records >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return "offset " + offset + " after " + records + " records";
+  }
+}
@@ -0,0 +1,282 @@
+package net.quux00.simplecsv;
+
+import java.util.Arrays;
+
+/**
+ * Up to capacity rows of the columns of a CsvSchema, stored column by column
+ * in primitive arrays and filled by {@link CsvColumnReader#readBatch}:
+ *
+ * <ul>
+ * <li>INT columns in an int[], LONG in a long[] and DOUBLE in a double[]</li>
+ * <li>DATE columns in an int[] of days since 1970-01-01</li>
+ * <li>STRING columns in an int[] of codes into the batch's dictionary of the
+ * column's distinct values, so each value is only made into a String once
+ * per batch, and grouping by the column can work on the codes</li>
+ * </ul>
+ *
+ * An empty or missing field is null: its bit is set in the column's null
+ * bitmap, its value is 0 and its code is -1.  The arrays are returned as they
+ * are, for aggregation code to loop over directly; only the first size()
+ * rows of them are valid.
+ *
+ * A batch is refilled by each readBatch it is passed to, reusing its arrays,
+ * so a steady-state reading loop makes no garbage but for new dictionary
+ * values.  Dictionary codes are only valid within a fill.
+ *
+ * NotThreadSafe
+ */
+public final class CsvColumnBatch {
+  final CsvSchema schema;
+  private final int capacity;
+  int size = 0;
+
+  // by column, the array that holds its values; the others are null
+  final int[][] ints;
+  final long[][] longs;
+  final double[][] doubles;
+  final Dictionary[] dictionaries;
+  // by column, bit (row & 63) of word (row >>> 6) is set if the value is null
+  final long[][] nulls;
+
+  CsvColumnBatch(CsvSchema schema, int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than zero");
+    }
+    this.schema = schema;
+    this.capacity = capacity;
+    int columns = schema.size();
+    ints = new int[columns][];
+    longs = new long[columns][];
+    doubles = new double[columns][];
+    dictionaries = new Dictionary[columns];
+    nulls = new long[columns][(capacity + 63) >>> 6];
+    for (int c = 0; c < columns; c++) {
+      switch (schema.getType(c)) {
+        case LONG:
+          longs[c] = new long[capacity];
+          break;
+        case DOUBLE:
+          doubles[c] = new double[capacity];
+          break;
+        case STRING:
+          dictionaries[c] = new Dictionary();
+          // fall through: the codes are an int[]
+        default:
+          ints[c] = new int[capacity];
+      }
+    }
+  }
+
+  /**
+   * @return number of rows filled
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the most rows a fill reads
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  public CsvSchema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return the values of an INT or DATE column, or the codes of a STRING column
+   */
+  public int[] getInts(int column) {
+    return checked(ints[checkColumn(column)], column, "an INT, DATE or STRING");
+  }
+
+  /**
+   * @return the values of a LONG column
+   */
+  public long[] getLongs(int column) {
+    return checked(longs[checkColumn(column)], column, "a LONG");
+  }
+
+  /**
+   * @return the values of a DOUBLE column
+   */
+  public double[] getDoubles(int column) {
+    return checked(doubles[checkColumn(column)], column, "a DOUBLE");
+  }
+
+  /**
+   * @return the codes of a STRING column, -1 for null
+   */
+  public int[] getCodes(int column) {
+    checked(dictionaries[checkColumn(column)], column, "a STRING");
+    return ints[column];
+  }
+
+  /**
+   * @return the distinct values of a STRING column in this fill, indexed by code
+   */
+  public String[] getDictionary(int column) {
+    Dictionary dictionary = checked(dictionaries[checkColumn(column)], column, "a STRING");
+    return Arrays.copyOf(dictionary.values, dictionary.size);
+  }
+
+  /**
+   * @return number of distinct values of a STRING column in this fill
+   */
+  public int getDictionarySize(int column) {
+    return checked(dictionaries[checkColumn(column)], column, "a STRING").size;
+  }
+
+  /**
+   * @return the value of a STRING column in the row, or null
+   */
+  public String getString(int column, int row) {
+    Dictionary dictionary = checked(dictionaries[checkColumn(column)], column, "a STRING");
+    int code = ints[column][checkRow(row)];
+    return (code < 0 ? null : dictionary.values[code]);
+  }
+
+  /**
+   * @return the null bitmap of the column: bit (row & 63) of word (row >>> 6)
+   *         is set if the value in the row is null
+   */
+  public long[] getNulls(int column) {
+    return nulls[checkColumn(column)];
+  }
+
+  /**
+   * @return whether the column's value in the row is null
+   */
+  public boolean isNull(int column, int row) {
+    checkRow(row);
+    return (nulls[checkColumn(column)][row >>> 6] & (1L << row)) != 0;
+  }
+
+  private int checkColumn(int column) {
+    if (column < 0 || column >= ints.length) {
+      throw new IndexOutOfBoundsException("Column: " + column + ", Columns: " + ints.length);
+    }
+    return column;
+  }
+
+  private int checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+    return row;
+  }
+
+  private <T> T checked(T values, int column, String type) {
+    if (values == null) {
+      throw new IllegalStateException("Column " + schema.describe(column) + " is " +
+          schema.getType(column) + ", not " + type + " column");
+    }
+    return values;
+  }
+
+  /* ---[ used by the CsvColumnReader ]--- */
+
+  /**
+   * Empties the batch for the next fill.
+   */
+  void clear() {
+    for (int c = 0; c < nulls.length; c++) {
+      Arrays.fill(nulls[c], 0L);
+      if (dictionaries[c] != null) {
+        dictionaries[c].clear();
+      }
+    }
+    size = 0;
+  }
+
+  /**
+   * Marks the column's value in the row as null.
+   */
+  void setNull(int column, int row) {
+    nulls[column][row >>> 6] |= (1L << row);
+    if (ints[column] != null) {
+      ints[column][row] = (dictionaries[column] != null ? -1 : 0);
+    } else if (longs[column] != null) {
+      longs[column][row] = 0L;
+    } else {
+      doubles[column][row] = 0.0;
+    }
+  }
+
+  /**
+   * The distinct values of a STRING column, each with its code.  A field is
+   * looked up by the hash of its chars, so a String is only made for a
+   * value the first time it is seen.
+   */
+  static final class Dictionary {
+    String[] values = new String[16];
+    int size = 0;
+    private int[] hashes = new int[16];
+    // code + 1 of the value in each slot, 0 if the slot is empty
+    private int[] slots = new int[32];
+
+    /**
+     * @return the code of the value buf[from, to), added if it is new
+     */
+    int code(char[] buf, int from, int to) {
+      int h = 0;
+      for (int i = from; i < to; i++) {
+        h = 31 * h + buf[i];
+      }
+      int mask = slots.length - 1;
+      int slot = (h ^ (h >>> 16)) & mask;
+      int code;
+      while ((code = slots[slot] - 1) >= 0) {
+        if (hashes[code] == h && equals(values[code], buf, from, to)) {
+          return code;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+        hashes = Arrays.copyOf(hashes, size * 2);
+      }
+      code = size++;
+      values[code] = new String(buf, from, to - from);
+      hashes[code] = h;
+      slots[slot] = code + 1;
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      return code;
+    }
+
+    private void rehash() {
+      slots = new int[slots.length * 2];
+      int mask = slots.length - 1;
+      for (int code = 0; code < size; code++) {
+        int h = hashes[code];
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = code + 1;
+      }
+    }
+
+    private static boolean equals(String v, char[] buf, int from, int to) {
+      if (v.length() != to - from) {
+        return false;
+      }
+      for (int i = 0; i < v.length(); i++) {
+        if (v.charAt(i) != buf[from + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void clear() {
+      Arrays.fill(values, 0, size, null);
+      Arrays.fill(slots, 0);
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package net.quux00.simplecsv;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of a CsvReader column by column into CsvColumnBatches of
+ * typed primitive arrays, for code that aggregates over columns:
+ *
+ * <pre>
+ * CsvColumnReader ccr = new CsvColumnReader(csvReader, schema);
+ * CsvColumnBatch batch = ccr.newBatch(4096);
+ * while (ccr.readBatch(batch)) {
+ *   double[] prices = batch.getDoubles(1);
+ *   for (int row = 0; row < batch.size(); row++) {
+ *     total += prices[row];
+ *   }
+ * }
+ * </pre>
+ *
+ * Each record is parsed into a reused CsvRecord and its fields are converted
+ * straight from the record's buffer into the batch's arrays, so no List or
+ * String is made per record (but for new dictionary values of STRING columns).
+ *
+ * The columns are found in the records as the CsvReader returns them, so if
+ * its parser only materializes some columns (CsvParserBuilder.columns, a
+ * good idea for a wide file), the schema's indexes count the projected
+ * fields only.
+ *
+ * NotThreadSafe
+ */
+public class CsvColumnReader implements Closeable {
+  private final CsvReader reader;
+  private final CsvSchema schema;
+  private final CsvSchema.Type[] types;
+  private final CsvRecord record = new CsvRecord();
+  // index in the record of each column, once resolved
+  private int[] fields;
+
+  /**
+   * @param reader the records to read; if the schema has columns by name,
+   *               the first record it returns is the header
+   * @param schema the columns to read
+   */
+  public CsvColumnReader(CsvReader reader, CsvSchema schema) {
+    if (reader == null || schema == null) {
+      throw new IllegalArgumentException("Reader and schema may not be null");
+    }
+    if (schema.size() == 0) {
+      throw new IllegalArgumentException("The schema must have at least one column");
+    }
+    this.reader = reader;
+    this.schema = schema;
+    this.types = new CsvSchema.Type[schema.size()];
+    for (int c = 0; c < types.length; c++) {
+      types[c] = schema.getType(c);
+    }
+  }
+
+  /**
+   * @param capacity the most rows to read into it at a time
+   * @return a new batch of this reader's schema
+   */
+  public CsvColumnBatch newBatch(int capacity) {
+    return new CsvColumnBatch(schema, capacity);
+  }
+
+  /**
+   * Refills the batch with up to its capacity of rows.
+   *
+   * @param batch a batch from newBatch
+   * @return false if there were no more records, in which case the batch is empty
+   * @throws IOException if bad things happen during the read
+   * @throws IllegalArgumentException if a field is not a valid value of its column's type
+   */
+  public boolean readBatch(CsvColumnBatch batch) throws IOException {
+    if (batch.schema != schema) {
+      throw new IllegalArgumentException("The batch is not of this reader's schema");
+    }
+    batch.clear();
+    if (fields == null && !resolve()) {
+      return false;
+    }
+    final int capacity = batch.capacity();
+    while (batch.size < capacity && reader.readNext(record)) {
+      final int row = batch.size;
+      for (int c = 0; c < fields.length; c++) {
+        int f = fields[c];
+        int from = (f < record.size ? record.starts[f] : 0);
+        int to = (f < record.size ? record.starts[f + 1] : 0);
+        if (from == to) {
+          batch.setNull(c, row);
+          continue;
+        }
+        try {
+          switch (types[c]) {
+            case INT:
+              batch.ints[c][row] = FieldValues.parseInt(record.buf, from, to);
+              break;
+            case LONG:
+              batch.longs[c][row] = FieldValues.parseLong(record.buf, from, to);
+              break;
+            case DOUBLE:
+              batch.doubles[c][row] = FieldValues.parseDouble(record.buf, from, to);
+              break;
+            case STRING:
+              batch.ints[c][row] = batch.dictionaries[c].code(record.buf, from, to);
+              break;
+            case DATE:
+              batch.ints[c][row] = (int) FieldValues.parseEpochDay(record.buf, from, to);
+              break;
+          }
+        } catch (IllegalArgumentException e) {
+          batch.size = row;
+          throw new IllegalArgumentException(e.getMessage() + " in column " + schema.describe(c) +
+              ": " + reader.recordsRead() + ".", e);
+        }
+      }
+      batch.size = row + 1;
+    }
+    return batch.size > 0;
+  }
+
+  /**
+   * Finds the columns in the records, reading the header if the schema has
+   * columns by name.
+   *
+   * @return false if there is no header to read
+   */
+  private boolean resolve() throws IOException {
+    if (!schema.needsHeader()) {
+      fields = schema.resolve(null);
+      return true;
+    }
+    if (!reader.readNext(record)) {
+      return false;
+    }
+    fields = schema.resolve(record.toList());
+    return true;
+  }
+
+  /**
+   * Closes the underlying reader.
+   *
+   * @throws IOException if the close fails
+   */
+  public void close() throws IOException {
+    reader.close();
+  }
+}
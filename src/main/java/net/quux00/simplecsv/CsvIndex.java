@@ -0,0 +1,285 @@
+package net.quux00.simplecsv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * An index of the byte offsets of every interval-th record of a UTF-8
+ * encoded CSV file, for random access to record N: a reader for record N
+ * starts at the nearest indexed record before it and skips the rest of the
+ * way with CsvReader.skipLines, which only looks for record boundaries.
+ *
+ * The index is built with a CsvScanner byte scan of the file in the
+ * dialect of a CsvParserBuilder, so with the multi-line parser the quoted
+ * line endings inside records are not taken for record boundaries.
+ * Records are counted as the parser reads them before its filters are
+ * applied, from 0.
+ *
+ * The index can be saved to a sidecar file (by default the CSV file's name
+ * plus ".idx") and read back later.  It records the dialect it was built
+ * with and a fingerprint of the file (its length, last modified time and a
+ * checksum of its first bytes), and will not open a reader on a file that
+ * no longer matches it, or with a parser of a different dialect.
+ *
+ * Immutable and so ThreadSafe.
+ */
+public final class CsvIndex {
+  public static final int DEFAULT_INTERVAL = 1000;
+  public static final String SIDECAR_SUFFIX = ".idx";
+
+  private static final int MAGIC = 0x53435649;  // "SCVI"
+  private static final int VERSION = 1;
+  // number of bytes at the start of the file that go into the fingerprint
+  private static final int FINGERPRINT_BYTES = 64 * 1024;
+
+  private final File file;
+  // dialect
+  private final char separator;
+  private final char quoteChar;
+  private final char escapeChar;
+  private final boolean strictQuotes;
+  private final boolean multiLine;
+  // fingerprint
+  private final long length;
+  private final long lastModified;
+  private final long checksum;
+
+  private final long records;
+  private final int interval;
+  private final long[] offsets;
+
+  private CsvIndex(File file, CsvParserBuilder builder, long length, long lastModified, long checksum,
+      long records, int interval, long[] offsets) {
+    this(file, builder.separator, builder.quoteChar, builder.escapeChar, builder.strictQuotes,
+        builder.build() instanceof MultiLineCsvParser, length, lastModified, checksum, records, interval, offsets);
+  }
+
+  private CsvIndex(File file, char separator, char quoteChar, char escapeChar, boolean strictQuotes,
+      boolean multiLine, long length, long lastModified, long checksum, long records, int interval, long[] offsets) {
+    this.file = file;
+    this.separator = separator;
+    this.quoteChar = quoteChar;
+    this.escapeChar = escapeChar;
+    this.strictQuotes = strictQuotes;
+    this.multiLine = multiLine;
+    this.length = length;
+    this.lastModified = lastModified;
+    this.checksum = checksum;
+    this.records = records;
+    this.interval = interval;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Indexes every DEFAULT_INTERVAL-th record of the file.
+   *
+   * @see #build(File, CsvParserBuilder, int)
+   */
+  public static CsvIndex build(File file, CsvParserBuilder builder) throws IOException {
+    return build(file, builder, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Scans the file and indexes every interval-th record.  A smaller interval
+   * makes seeks faster and the index bigger: it holds 8 bytes per indexed
+   * record.
+   *
+   * @param file     the UTF-8 encoded file to index
+   * @param builder  the dialect of the file; its separator, quote and escape chars must be ASCII
+   * @param interval number of records from one indexed record to the next
+   * @throws UnsupportedOperationException if the separator, quote or escape char is not ASCII
+   */
+  public static CsvIndex build(File file, CsvParserBuilder builder, int interval) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File may not be null");
+    }
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Interval must be positive");
+    }
+    long length = file.length();
+    long lastModified = file.lastModified();
+    long checksum = checksum(file);
+    CsvScanner.Summary summary;
+    InputStream in = new FileInputStream(file);
+    try {
+      summary = new CsvScanner(builder).scan(in, interval);
+    } finally {
+      in.close();
+    }
+    return new CsvIndex(file, builder, length, lastModified, checksum,
+        summary.getRecordCount(), interval, summary.recordStarts());
+  }
+
+  /**
+   * @return the default sidecar index file of the CSV file
+   */
+  public static File sidecarOf(File file) {
+    return new File(file.getPath() + SIDECAR_SUFFIX);
+  }
+
+  /**
+   * Saves the index to its default sidecar file.
+   */
+  public void write() throws IOException {
+    write(sidecarOf(file));
+  }
+
+  /**
+   * Saves the index to the given file.
+   */
+  public void write(File indexFile) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeChar(separator);
+      out.writeChar(quoteChar);
+      out.writeChar(escapeChar);
+      out.writeBoolean(strictQuotes);
+      out.writeBoolean(multiLine);
+      out.writeLong(length);
+      out.writeLong(lastModified);
+      out.writeLong(checksum);
+      out.writeLong(records);
+      out.writeInt(interval);
+      out.writeInt(offsets.length);
+      for (long offset : offsets) {
+        out.writeLong(offset);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads the index of the CSV file from its default sidecar file.
+   */
+  public static CsvIndex read(File file) throws IOException {
+    return read(file, sidecarOf(file));
+  }
+
+  /**
+   * Reads the index of the CSV file from the given index file.  Whether the
+   * CSV file still matches it is only checked when a reader is opened;
+   * see {@link #isCurrent()}.
+   *
+   * @throws IOException if the index file is not one written by CsvIndex
+   */
+  public static CsvIndex read(File file, File indexFile) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File may not be null");
+    }
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a CSV index file: " + indexFile);
+      }
+      char separator = in.readChar();
+      char quoteChar = in.readChar();
+      char escapeChar = in.readChar();
+      boolean strictQuotes = in.readBoolean();
+      boolean multiLine = in.readBoolean();
+      long length = in.readLong();
+      long lastModified = in.readLong();
+      long checksum = in.readLong();
+      long records = in.readLong();
+      int interval = in.readInt();
+      long[] offsets = new long[in.readInt()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = in.readLong();
+      }
+      return new CsvIndex(file, separator, quoteChar, escapeChar, strictQuotes, multiLine,
+          length, lastModified, checksum, records, interval, offsets);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return number of records in the file
+   */
+  public long getRecordCount() {
+    return records;
+  }
+
+  /**
+   * @return number of records from one indexed record to the next
+   */
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * @return whether the file still has the length, last modified time and
+   *         first bytes it had when it was indexed
+   */
+  public boolean isCurrent() throws IOException {
+    return file.length() == length && file.lastModified() == lastModified && checksum(file) == checksum;
+  }
+
+  /**
+   * @return byte offset of the nearest indexed record at or before the given record
+   */
+  long offsetOf(long record) {
+    return offsets[(int) (record / interval)];
+  }
+
+  /**
+   * Opens a reader whose first record is the given record of the file.  The
+   * file is read through memory-mapped regions from the nearest indexed
+   * record, as with {@link CsvReaderBuilder#CsvReaderBuilder(File)}, and the
+   * records up to the given one are skipped.  The reader's checkpoints are
+   * offsets in the file.
+   *
+   * @param record  number of the first record to read, from 0; the record
+   *                count gives a reader at the end of the file
+   * @param builder builds the parser, which must have the dialect of the index
+   * @throws IllegalArgumentException if the parser's dialect is not the index's
+   * @throws IllegalStateException if the file changed since it was indexed
+   */
+  public CsvReader readerAt(long record, CsvParserBuilder builder) throws IOException {
+    if (record < 0 || record > records) {
+      throw new IndexOutOfBoundsException("Record " + record + " of " + records);
+    }
+    if (builder.separator != separator || builder.quoteChar != quoteChar || builder.escapeChar != escapeChar ||
+        builder.strictQuotes != strictQuotes || (builder.build() instanceof MultiLineCsvParser) != multiLine) {
+      throw new IllegalArgumentException("The parser's dialect is not the one the file was indexed with");
+    }
+    if (!isCurrent()) {
+      throw new IllegalStateException("The file changed since it was indexed: " + file);
+    }
+    CsvParser parser = builder.build();
+    int skip = (int) (record == records ? 0 : record % interval);
+    long start = (record == records ? length : offsetOf(record));
+    MappedFile mapped = new MappedFile(file, start, -1, MappedFile.DEFAULT_REGION_SIZE);
+    BlockReader source = (parser instanceof Utf8CsvParser ? new ByteBlockReader(mapped) :
+        new CharBlockReader(mapped.newReader(), BlockReader.DEFAULT_BLOCK_SIZE, true));
+    source.base = start;
+    return new CsvReader(source, skip, parser, new CsvCheckpoint(start, record - skip));
+  }
+
+  private static long checksum(File file) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buf = new byte[8192];
+    InputStream in = new FileInputStream(file);
+    try {
+      int total = 0;
+      int n;
+      while (total < FINGERPRINT_BYTES && (n = in.read(buf, 0, Math.min(buf.length, FINGERPRINT_BYTES - total))) >= 0) {
+        crc.update(buf, 0, n);
+        total += n;
+      }
+    } finally {
+      in.close();
+    }
+    return crc.getValue();
+  }
+}
@@ -1,5 +1,7 @@
 package net.quux00.simplecsv;
 
+import java.util.Arrays;
+
 public class CsvParserBuilder {
   char separator = ParserUtil.DEFAULT_SEPARATOR;
   char quoteChar = ParserUtil.DEFAULT_QUOTE_CHAR;
@@ -13,6 +15,10 @@ public class CsvParserBuilder {
   MultiLineStatus supportsMultiLine = MultiLineStatus.DEFAULT;
   boolean rfc4180quotes = false;
   boolean threadSafe = false;
+  boolean utf8Bytes = false;
+  Projection projection = null;
+  FieldFilter[] filters = null;  // by column index
+  boolean[] deduplicated = null;  // by column index
   
   private enum MultiLineStatus {
     DEFAULT, REQUESTED_TRUE, REQUESTED_FALSE;
@@ -81,20 +87,121 @@ public class CsvParserBuilder {
     threadSafe = safe;
     return this;
   }
+
+  /**
+   * Requests the Utf8CsvParser, which parses UTF-8 encoded bytes directly
+   * when reading from an InputStream or ReadableByteChannel source.
+   * It is a multi-line parser.
+   */
+  public CsvParserBuilder utf8Bytes(boolean bytes) {
+    utf8Bytes = bytes;
+    return this;
+  }
   
+
+  /**
+   * Only materializes the given columns, by zero-based index.  The fields of
+   * the other columns are skipped over without making Strings of them, and
+   * the parser returns the projected fields in column order.
+   */
+  public CsvParserBuilder columns(int... indexes) {
+    projection = new Projection(indexes);
+    return this;
+  }
+
+  /**
+   * Only materializes the columns with the given header names.  The names
+   * are resolved by the CsvReader against the first record it reads, which
+   * is returned projected like every other record.  The parser returns every
+   * column until then, such as when it is used without a CsvReader.
+   */
+  public CsvParserBuilder columns(String... names) {
+    projection = new Projection(names);
+    return this;
+  }
+
+  /**
+   * Only returns the records whose field in the given column, by zero-based
+   * index in the input, is accepted by the filter.  Setting more than one
+   * filter, on the same or other columns, only returns the records that all
+   * of them accept.  Once a field is not accepted, the rest of its record is
+   * skipped over without being parsed.
+   *
+   * The filtered column does not have to be one of the projected columns.
+   * A header read to resolve the projected column names is not filtered.
+   */
+  public CsvParserBuilder filter(int column, FieldFilter filter) {
+    if (column < 0) {
+      throw new IllegalArgumentException("Column index may not be negative: " + column);
+    }
+    if (filter == null) {
+      throw new IllegalArgumentException("Filter may not be null");
+    }
+    if (filters == null) {
+      filters = new FieldFilter[column + 1];
+    } else if (filters.length <= column) {
+      filters = Arrays.copyOf(filters, column + 1);
+    }
+    filters[column] = (filters[column] == null ? filter : FieldFilters.both(filters[column], filter));
+    return this;
+  }
   
+  /**
+   * Returns one String instance for all the equal fields of the given
+   * columns, by zero-based index in the input, rather than a new String for
+   * every field.  Meant for low-cardinality columns such as country, status
+   * or currency, whose records then share a handful of Strings, so that
+   * readAll() results take far less heap.
+   *
+   * Each column gets a bounded cache of StringCache.SLOTS recent values that
+   * evicts older ones as new ones come, so a high-cardinality column only
+   * costs a hash and compare per field.  Fields of more than
+   * StringCache.MAX_LENGTH chars are not deduplicated.
+   */
+  public CsvParserBuilder deduplicate(int... columns) {
+    if (columns == null || columns.length == 0) {
+      throw new IllegalArgumentException("At least one column must be deduplicated");
+    }
+    for (int col : columns) {
+      if (col < 0) {
+        throw new IllegalArgumentException("Column index may not be negative: " + col);
+      }
+      if (deduplicated == null) {
+        deduplicated = new boolean[col + 1];
+      } else if (deduplicated.length <= col) {
+        deduplicated = Arrays.copyOf(deduplicated, col + 1);
+      }
+      deduplicated[col] = true;
+    }
+    return this;
+  }
+
   /**
    * Constructs Parser
    */
   public CsvParser build() {
     if (supportsMultiLine == MultiLineStatus.REQUESTED_FALSE && 
-        (rfc4180quotes || threadSafe)) {
-      throw new IllegalStateException("Request of 'allowDoubleEscapedQuotes' or 'threadSafe' requires MultiLineParser");
+        (rfc4180quotes || threadSafe || utf8Bytes)) {
+      throw new IllegalStateException("Request of 'allowDoubleEscapedQuotes', 'threadSafe' or 'utf8Bytes' requires MultiLineParser");
+    }
+
+    if (utf8Bytes) {
+      return configure(new Utf8CsvParser(
+          separator,
+          quoteChar,
+          escapeChar,
+          strictQuotes,
+          trimWhitespace,
+          allowUnbalancedQuotes,
+          retainOuterQuotes,
+          retainEscapeChars,
+          alwaysQuoteOutput,
+          rfc4180quotes));
     }
     
     if (supportsMultiLine == MultiLineStatus.REQUESTED_TRUE || 
         rfc4180quotes || threadSafe) {
-      return new MultiLineCsvParser(
+      return configure(new MultiLineCsvParser(
           separator,
           quoteChar,
           escapeChar,
@@ -104,10 +211,15 @@ public class CsvParserBuilder {
           retainOuterQuotes,
           retainEscapeChars,
           alwaysQuoteOutput,
-          rfc4180quotes);
+          rfc4180quotes));
     }
     
-    return new SimpleCsvParser(
+    if (DefaultDialectCsvParser.supports(this)) {
+      // the options most jobs use, without checking each option for every char
+      return new DefaultDialectCsvParser(separator, quoteChar, escapeChar, allowUnbalancedQuotes);
+    }
+
+    return configure(new SimpleCsvParser(
         separator,
         quoteChar,
         escapeChar,
@@ -116,6 +228,20 @@ public class CsvParserBuilder {
         allowUnbalancedQuotes,
         retainOuterQuotes,
         retainEscapeChars,
-        alwaysQuoteOutput);
+        alwaysQuoteOutput));
+  }
+
+  private SimpleCsvParser configure(SimpleCsvParser parser) {
+    parser.projection = (projection == null ? null : projection.copy());
+    parser.filters = (filters == null ? null : filters.clone());
+    parser.caches = StringCache.forColumns(deduplicated);
+    return parser;
+  }
+
+  private MultiLineCsvParser configure(MultiLineCsvParser parser) {
+    parser.projection = (projection == null ? null : projection.copy());
+    parser.filters = (filters == null ? null : filters.clone());
+    parser.deduplicated = (deduplicated == null ? null : deduplicated.clone());
+    return parser;
   }
 }
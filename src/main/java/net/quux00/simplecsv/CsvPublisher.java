@@ -0,0 +1,271 @@
+package net.quux00.simplecsv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the records of a CsvReader in batches, only as fast as its
+ * subscriber asks for them.  Each batch signalled to onNext holds up to
+ * batchSize records, so request(n) asks for n batches, not n records, and
+ * the per-signal overhead is spread over many rows.  Only one record is
+ * read ahead of the demand, to find the end of the input after a full
+ * batch, so a slow subscriber holds at most one batch in memory.
+ *
+ * No thread is dedicated to a publisher: records are read and signalled by
+ * tasks run on the given Executor whenever there is outstanding demand, and
+ * a task gives its thread back after a few batches, so many publishers can
+ * share a small pool.  Signals to the subscriber never overlap.
+ *
+ * subscribe and the Subscriber and Subscription interfaces follow the
+ * Reactive Streams contract of java.util.concurrent.Flow (Java 9), which this
+ * library can't use as it runs on Java 6; wrapping a Flow.Subscriber in a
+ * CsvPublisher.Subscriber is a matter of forwarding its four methods.
+ *
+ * A CsvReader can only be read once, so a CsvPublisher has a single
+ * subscriber: later subscribers get onError with an IllegalStateException.
+ * The reader is closed when the records are exhausted, on an error and on
+ * cancel.
+ */
+public final class CsvPublisher {
+  public static final int DEFAULT_BATCH_SIZE = 256;
+  // batches signalled by a task before it reschedules itself
+  static final int BATCHES_PER_TASK = 16;
+
+  /**
+   * Receives the batches of a CsvPublisher, as a Flow.Subscriber would.
+   */
+  public interface Subscriber<T> {
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    void onError(Throwable throwable);
+
+    void onComplete();
+  }
+
+  /**
+   * A subscriber's link to its CsvPublisher, as a Flow.Subscription.
+   */
+  public interface Subscription {
+    /**
+     * Asks for n more batches.  A non-positive n ends the subscription with
+     * an IllegalArgumentException.
+     */
+    void request(long n);
+
+    void cancel();
+  }
+
+  private final CsvReader reader;
+  private final Executor executor;
+  private final int batchSize;
+  private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+  /**
+   * @param reader   the records to publish
+   * @param executor runs the tasks that read and signal the records
+   */
+  public CsvPublisher(CsvReader reader, Executor executor) {
+    this(reader, executor, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * @param reader    the records to publish
+   * @param executor  runs the tasks that read and signal the records
+   * @param batchSize the most records in a batch
+   */
+  public CsvPublisher(CsvReader reader, Executor executor, int batchSize) {
+    if (reader == null || executor == null) {
+      throw new IllegalArgumentException("Reader and executor may not be null");
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be greater than zero");
+    }
+    this.reader = reader;
+    this.executor = executor;
+    this.batchSize = batchSize;
+  }
+
+  public void subscribe(final Subscriber<? super List<List<String>>> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("Subscriber may not be null");
+    }
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Subscription() {
+        public void request(long n) {
+        }
+
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("A CsvPublisher only has one subscriber"));
+      return;
+    }
+    BatchSubscription subscription = new BatchSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * Reads and signals the batches.  request and cancel only record what
+   * they ask for and make sure a drain task is scheduled; the task runs
+   * alone (wip counts the calls it has not seen yet), so the reader and the
+   * subscriber are only touched by one thread at a time.
+   */
+  private final class BatchSubscription implements Subscription, Runnable {
+    private final Subscriber<? super List<List<String>>> subscriber;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled = false;
+    private volatile Long invalidRequest = null;
+    // only touched by the drain task
+    private boolean done = false;
+    // the record read after the last full batch, to see if the input ended
+    private List<String> next = null;
+
+    BatchSubscription(Subscriber<? super List<List<String>>> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = n;
+      } else {
+        long r;
+        do {
+          r = requested.get();
+        } while (r != Long.MAX_VALUE && !requested.compareAndSet(r, (r + n < 0 ? Long.MAX_VALUE : r + n)));
+      }
+      schedule();
+    }
+
+    public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (wip.getAndIncrement() == 0) {
+        executor.execute(this);
+      }
+    }
+
+    public void run() {
+      int missed = wip.get();
+      while (true) {
+        if (!drain()) {
+          // gave way to other tasks with demand left; run again later
+          executor.execute(this);
+          return;
+        }
+        missed = wip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * @return false if stopped with demand left, after BATCHES_PER_TASK batches
+     */
+    private boolean drain() {
+      if (done) {
+        return true;
+      }
+      if (cancelled) {
+        finish(null, false);
+        return true;
+      }
+      if (invalidRequest != null) {
+        finish(new IllegalArgumentException("Requested " + invalidRequest + " batches; must be positive"), true);
+        return true;
+      }
+      int emitted = 0;
+      while (requested.get() > 0) {
+        if (emitted == BATCHES_PER_TASK) {
+          return false;
+        }
+        List<List<String>> batch = new ArrayList<List<String>>(batchSize);
+        try {
+          List<String> record;
+          while (batch.size() < batchSize && (record = readRecord()) != null) {
+            batch.add(record);
+          }
+        } catch (Exception e) {
+          finish(e, true);
+          return true;
+        }
+        // look one record past a full batch, so an input that ends with it
+        // is completed without waiting for more demand (Reactive Streams
+        // rule 1.2); an error there is signalled after the batch
+        boolean end = (batch.size() < batchSize);
+        Exception error = null;
+        if (!end) {
+          try {
+            next = reader.readNext();
+            end = (next == null);
+          } catch (Exception e) {
+            error = e;
+          }
+        }
+        if (!batch.isEmpty()) {
+          try {
+            subscriber.onNext(batch);
+          } catch (Throwable t) {
+            // a subscriber that throws is cancelled (Reactive Streams rule 2.13)
+            cancelled = true;
+            finish(t, false);
+            return true;
+          }
+          emitted++;
+          if (requested.get() != Long.MAX_VALUE) {
+            requested.decrementAndGet();
+          }
+        }
+        if (error != null || end) {
+          finish(error, true);
+          return true;
+        }
+        if (cancelled) {
+          finish(null, false);
+          return true;
+        }
+      }
+      return true;
+    }
+
+    private List<String> readRecord() throws IOException {
+      if (next == null) {
+        return reader.readNext();
+      }
+      List<String> record = next;
+      next = null;
+      return record;
+    }
+
+    // closes the reader and signals the end, unless cancelled
+    private void finish(Throwable error, boolean signal) {
+      done = true;
+      try {
+        reader.close();
+      } catch (IOException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+      if (!signal || cancelled) {
+        return;
+      }
+      if (error != null) {
+        subscriber.onError(error);
+      } else {
+        subscriber.onComplete();
+      }
+    }
+  }
+}
@@ -16,10 +16,20 @@ import java.util.List;
 public class CsvReader implements Closeable, Iterable<List<String>> {
 
   private BufferedReader br;
-  private int recordNumber = 1;
+  private long recordNumber = 1;
 
   CsvParser parser;
   int skipLines;
+  // reused by readNextView
+  private CsvRecordView view;
+  // reused by readNextLazy
+  private LazyCsvRecord lazy;
+  // reused by readBatch to parse each record into
+  private CsvRecord batchRecord;
+  // chars in the last batch, to size the next one by
+  private int batchLength = 0;
+  // the parser's columns by name, until they are resolved against the header
+  private Projection unresolved;
 
   /**
    * The default line to start reading.
@@ -33,7 +43,7 @@ public class CsvReader implements Closeable, Iterable<List<String>> {
    * @param reader the reader to an underlying CSV source.
    */
   public CsvReader(Reader reader) {
-    this(reader, DEFAULT_SKIP_LINES, new SimpleCsvParser());
+    this(reader, DEFAULT_SKIP_LINES, new CsvParserBuilder().build());
   }
 
   /**
@@ -44,7 +54,7 @@ public class CsvReader implements Closeable, Iterable<List<String>> {
    * @param line      the line number to skip for start reading
    */
   public CsvReader(Reader reader, int line) {
-    this(reader, line, new SimpleCsvParser());
+    this(reader, line, new CsvParserBuilder().build());
   }
   
   /**
@@ -60,15 +70,39 @@ public class CsvReader implements Closeable, Iterable<List<String>> {
   /**
    * Constructs CsvReader with supplied separator and quote char.
    *
+   * A BufferedReader is read as it is, a line at a time, so that the caller
+   * can go on reading from it before and after the CsvReader; a reader
+   * constructed on one can't take checkpoints.  Any other Reader is read
+   * ahead in large blocks, which the parsers scan in place.
+   *
    * @param reader    the reader to an underlying CSV source.
    * @param line      the line number to skip for start reading
    * @param csvParser the parser to use to parse input
    */
   public CsvReader(Reader reader, int line, CsvParser csvParser) {
     this.br = (reader instanceof BufferedReader ?
-        (BufferedReader) reader : new BufferedReader(reader));
+        (BufferedReader) reader : new CharBlockReader(reader));
     this.skipLines = line;
     this.parser = csvParser;
+    Projection projection = Projection.of(csvParser);
+    if (projection != null && !projection.isResolved()) {
+      this.unresolved = projection;
+    }
+  }
+
+  /**
+   * Constructs a CsvReader that resumes at a checkpoint.  The reader must
+   * already be at the checkpoint's offset in the source, and its position
+   * start there.
+   *
+   * @param line the number of records to skip from the checkpoint
+   */
+  CsvReader(BlockReader reader, int line, CsvParser csvParser, CsvCheckpoint start) {
+    this(reader, line, csvParser);
+    if (start.getRecords() > 0 && unresolved != null) {
+      throw new IllegalStateException("Columns projected by name need the header, so can't resume past it");
+    }
+    this.recordNumber = start.getRecords() + 1;
   }
 
   /**
@@ -100,30 +134,266 @@ public class CsvReader implements Closeable, Iterable<List<String>> {
    */
   public List<String> readNext() throws IOException {
     try {
-      while (skipLines > 0) {
-        if (parser.parseNext(br) == null) {
-          // if we reacher EOF, then consider all lines skipped
-          skipLines = 0;
-        } else {
-          recordNumber++;
-          skipLines--;
-        }
-      }
+      skipLines();
 
-      List<String> next = parser.parseNext(br);
+      List<String> next = (unresolved != null ? readHeader() : parseNext());
       if (next != null) {
         recordNumber++;
       }
       return next;
       
     } catch (IllegalArgumentException re) {
-      // we append the record number that caused the exception
-      IllegalArgumentException nre = new IllegalArgumentException(re.getMessage() + ": " + recordNumber + ".");
-      nre.setStackTrace(re.getStackTrace());
-      throw nre;
+      throw withRecordNumber(re);
+    }
+  }
+
+  /**
+   * Reads the next record into a view whose fields are CharSequence slices
+   * of a shared buffer, rather than new Strings.  The same view is returned
+   * for every record, so it and its fields are only valid until the next call
+   * to readNextView; call toString() on any field that needs to be kept.
+   *
+   * Mixing calls to readNext and readNextView is fine; each reads one record.
+   *
+   * @return the view of the next record or null at the end of the input
+   * @throws IOException if bad things happen during the read
+   */
+  public CsvRecordView readNextView() throws IOException {
+    if (view == null) {
+      view = new CsvRecordView();
+    }
+    return (readNext(view) ? view : null);
+  }
+
+  /**
+   * Reads the next record, but only decodes each of its fields when it is
+   * first asked for.  With the SimpleCsvParser, a field without quote or
+   * escape chars is a slice of the line, and the others are decoded on
+   * demand, so fields that are never looked at cost next to nothing.  The
+   * same record is returned for every read, so it and its fields are only
+   * valid until the next read.
+   *
+   * @return the next record or null at the end of the input
+   * @throws IOException if bad things happen during the read
+   */
+  public LazyCsvRecord readNextLazy() throws IOException {
+    if (lazy == null) {
+      lazy = new LazyCsvRecord();
+    }
+    try {
+      skipLines();
+
+      boolean found;
+      if (unresolved == null && parser instanceof SimpleCsvParser) {
+        try {
+          found = ((SimpleCsvParser) parser).parseNext(br, lazy);
+        } finally {
+          countRejected();
+        }
+      } else {
+        // a parser that doesn't index, or the header - the fields come decoded
+        List<String> next = (unresolved != null ? readHeader() : parseNext());
+        found = (next != null);
+        lazy.reset(null, null);
+        if (found) {
+          for (String tok : next) {
+            lazy.add(tok);
+          }
+        }
+      }
+      if (found) {
+        recordNumber++;
+      }
+      return (found ? lazy : null);
+
+    } catch (IllegalArgumentException re) {
+      throw withRecordNumber(re);
+    }
+  }
+
+  /**
+   * Clears the record and refills it with the next record.  Reusing the same
+   * CsvRecord for every call avoids allocating a List and a String per field
+   * for each record.
+   *
+   * @param reuse the record to read into
+   * @return false if there are no more records, in which case reuse is left empty
+   * @throws IOException if bad things happen during the read
+   */
+  public boolean readNext(CsvRecord reuse) throws IOException {
+    try {
+      skipLines();
+
+      boolean found;
+      if (unresolved == null && parser instanceof RecordParser) {
+        found = parseNext(reuse);
+      } else {
+        // a parser that only produces Lists, or the header - copy its tokens into the record
+        List<String> next = (unresolved != null ? readHeader() : parseNext());
+        found = (next != null);
+        reuse.clear();
+        if (found) {
+          for (String tok : next) {
+            reuse.add(tok);
+          }
+        }
+      }
+      if (found) {
+        recordNumber++;
+      }
+      return found;
+
+    } catch (IllegalArgumentException re) {
+      throw withRecordNumber(re);
     }
   }
 
+  /**
+   * Reads up to maxRecords records into one CsvBatch, their fields stored
+   * back to back in a single buffer.  The records are parsed in one loop,
+   * without the per-record bookkeeping of readNext, and the batch is new
+   * each time, so it can be handed to another thread.
+   *
+   * @param maxRecords the most records to read
+   * @return a batch of at least one record or null if there are no more
+   * @throws IOException if bad things happen during the read
+   */
+  public CsvBatch readBatch(int maxRecords) throws IOException {
+    if (maxRecords <= 0) {
+      throw new IllegalArgumentException("maxRecords must be greater than zero");
+    }
+    if (batchRecord == null) {
+      batchRecord = new CsvRecord();
+    }
+    CsvBatch batch = new CsvBatch(maxRecords, batchLength);
+    if (!(parser instanceof RecordParser)) {
+      // a parser that only produces Lists - copy its tokens
+      while (batch.size() < maxRecords && readNext(batchRecord)) {
+        batch.add(batchRecord);
+      }
+    } else {
+      if (unresolved != null && readNext(batchRecord)) {
+        // the header, read in full to resolve the columns against
+        batch.add(batchRecord);
+      }
+      int counted = batch.size();
+      try {
+        skipLines();
+        while (batch.size() < maxRecords && parseNext(batchRecord)) {
+          batch.add(batchRecord);
+        }
+      } catch (IllegalArgumentException re) {
+        recordNumber += batch.size() - counted;
+        throw withRecordNumber(re);
+      }
+      recordNumber += batch.size() - counted;
+    }
+    batchLength = batch.length();
+    return (batch.size() == 0 ? null : batch);
+  }
+
+  /**
+   * Returns where the next record starts, for a new reader of the same
+   * source to resume there with {@link CsvReaderBuilder#resumeAt}.  A
+   * checkpoint taken before any read is at the start of the input, and
+   * the records to skip are skipped again when resuming from it.
+   *
+   * @return the offset of the next record in the source and the number of
+   *         records read or skipped before it
+   * @throws IOException if the reader has to read ahead past a CRLF and fails
+   * @throws UnsupportedOperationException if this reader was constructed on
+   *         a caller's BufferedReader, whose position it does not know
+   */
+  public CsvCheckpoint checkpoint() throws IOException {
+    if (!(br instanceof BlockReader)) {
+      throw new UnsupportedOperationException("Checkpoints can't be taken of a caller's BufferedReader");
+    }
+    return new CsvCheckpoint(((BlockReader) br).position(), recordNumber - 1);
+  }
+
+  /**
+   * @return number of records read or skipped so far
+   */
+  long recordsRead() {
+    return recordNumber - 1;
+  }
+
+  private void skipLines() throws IOException {
+    while (skipLines > 0) {
+      // a RecordParser only finds where the skipped record ends
+      boolean skipped = (parser instanceof RecordParser ?
+          ((RecordParser) parser).skipNext(br) : parser.parseNext(br) != null);
+      if (!skipped) {
+        // if we reacher EOF, then consider all lines skipped
+        skipLines = 0;
+      } else {
+        recordNumber++;
+        skipLines--;
+      }
+    }
+  }
+
+  /**
+   * Reads the header in full and resolves the parser's column names against it.
+   *
+   * @return the projected header or null at the end of the input
+   */
+  private List<String> readHeader() throws IOException {
+    Projection projection = unresolved;
+    unresolved = null;
+    List<String> header = parseNext();
+    if (header == null || projection.isResolved()) {
+      // the end of the input, or resolved by another reader sharing the parser
+      return header;
+    }
+    projection.resolve(header);
+    return projection.select(header);
+  }
+
+  /**
+   * Parses the next record into a List, counting the records the parser's
+   * filters rejected on the way to it.
+   */
+  private List<String> parseNext() throws IOException {
+    try {
+      return parser.parseNext(br);
+    } finally {
+      countRejected();
+    }
+  }
+
+  /**
+   * Parses the next record into the record, counting the records the
+   * parser's filters rejected on the way to it.  The parser must be a
+   * RecordParser.
+   */
+  private boolean parseNext(CsvRecord record) throws IOException {
+    try {
+      return ((RecordParser) parser).parseNext(br, record);
+    } finally {
+      countRejected();
+    }
+  }
+
+  /**
+   * Adds the records the filters rejected in the parser's last parseNext to
+   * the records read, so that they are numbered and checkpointed like the
+   * ones returned.  Called even if the parse throws, as the rejected records
+   * come before the one in error.
+   */
+  private void countRejected() {
+    if (parser instanceof RecordParser) {
+      recordNumber += ((RecordParser) parser).rejected();
+    }
+  }
+
+  private IllegalArgumentException withRecordNumber(IllegalArgumentException re) {
+    // we append the record number that caused the exception
+    IllegalArgumentException nre = new IllegalArgumentException(re.getMessage() + ": " + recordNumber + ".");
+    nre.setStackTrace(re.getStackTrace());
+    return nre;
+  }
+
 
   /**
    * Closes the underlying reader.
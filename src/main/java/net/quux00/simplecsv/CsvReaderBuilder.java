@@ -1,11 +1,27 @@
 package net.quux00.simplecsv;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
 
 public class CsvReaderBuilder {
   final Reader reader;
+  final InputStream inputStream;
+  final ReadableByteChannel channel;
+  final File file;
   int skipLines = CsvReader.DEFAULT_SKIP_LINES;
   CsvParser parser = null;
+  CsvCheckpoint checkpoint = null;
+  // the options of the default parser, if any are set
+  CsvParserBuilder defaultParser = null;
 
   /**
    * Sets the reader to an underlying Csv source
@@ -17,6 +33,62 @@ public class CsvReaderBuilder {
       throw new IllegalArgumentException("Reader may not be null");
     }
     this.reader = reader;
+    this.inputStream = null;
+    this.channel = null;
+    this.file = null;
+  }
+
+  /**
+   * Sets a UTF-8 encoded InputStream as the underlying Csv source.
+   * If the parser is a Utf8CsvParser, it will parse the bytes directly,
+   * otherwise they are decoded with an InputStreamReader.
+   *
+   * @param inputStream the UTF-8 encoded stream to an underlying Csv source.
+   */
+  public CsvReaderBuilder(final InputStream inputStream) {
+    if (inputStream == null) {
+      throw new IllegalArgumentException("InputStream may not be null");
+    }
+    this.reader = null;
+    this.inputStream = inputStream;
+    this.channel = null;
+    this.file = null;
+  }
+
+  /**
+   * Sets a UTF-8 encoded ReadableByteChannel as the underlying Csv source.
+   * If the parser is a Utf8CsvParser, it will parse the bytes directly,
+   * otherwise they are decoded with a channel Reader.
+   *
+   * @param channel the UTF-8 encoded channel to an underlying Csv source.
+   */
+  public CsvReaderBuilder(final ReadableByteChannel channel) {
+    if (channel == null) {
+      throw new IllegalArgumentException("Channel may not be null");
+    }
+    this.reader = null;
+    this.inputStream = null;
+    this.channel = channel;
+    this.file = null;
+  }
+
+  /**
+   * Sets a UTF-8 encoded file as the underlying Csv source.  The file is
+   * read through memory-mapped regions instead of a Reader, so it can be
+   * served directly from the OS page cache.  If the parser is a Utf8CsvParser,
+   * it will parse the mapped bytes, otherwise they are decoded straight from
+   * the mapped regions.  The file is opened on the first read.
+   *
+   * @param file the UTF-8 encoded file to read
+   */
+  public CsvReaderBuilder(final File file) {
+    if (file == null) {
+      throw new IllegalArgumentException("File may not be null");
+    }
+    this.reader = null;
+    this.inputStream = null;
+    this.channel = null;
+    this.file = file;
   }
 
   /**
@@ -30,6 +102,22 @@ public class CsvReaderBuilder {
   }
 
 
+  /**
+   * Starts reading at a checkpoint returned by {@link CsvReader#checkpoint()}
+   * of an earlier reader of the same source, without reading the input
+   * before it again where the source can seek: a File, or an InputStream or
+   * ReadableByteChannel reading a file.  Other sources are read up to the
+   * checkpoint and the input discarded.  Records are numbered, and lines
+   * skipped, as if reading had started at the beginning of the source.
+   *
+   * @param checkpoint where to resume
+   */
+  public CsvReaderBuilder resumeAt(final CsvCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+    return this;
+  }
+
+
   /**
    * Sets the parser to use to parse the input
    *
@@ -41,13 +129,155 @@ public class CsvReaderBuilder {
   }
 
 
+  /**
+   * Only materializes the given columns, by zero-based index, with the
+   * default parser.  See {@link CsvParserBuilder#columns(int...)}.
+   *
+   * @param indexes the columns to read
+   */
+  public CsvReaderBuilder columns(int... indexes) {
+    defaultParser().columns(indexes);
+    return this;
+  }
+
+  /**
+   * Only materializes the columns with the given header names, with the
+   * default parser.  See {@link CsvParserBuilder#columns(String...)}.
+   *
+   * @param names the columns to read
+   */
+  public CsvReaderBuilder columns(String... names) {
+    defaultParser().columns(names);
+    return this;
+  }
+
+  /**
+   * Only reads the records whose field in the given column is accepted by
+   * the filter, with the default parser.
+   * See {@link CsvParserBuilder#filter(int, FieldFilter)}.
+   *
+   * @param column the zero-based index of the column to filter on
+   * @param filter the filter its fields must pass
+   */
+  public CsvReaderBuilder filter(int column, FieldFilter filter) {
+    defaultParser().filter(column, filter);
+    return this;
+  }
+
+  /**
+   * Shares one String instance among the equal fields of the given columns,
+   * with the default parser.  See {@link CsvParserBuilder#deduplicate(int...)}.
+   *
+   * @param columns the zero-based indexes of the columns to deduplicate
+   */
+  public CsvReaderBuilder deduplicate(int... columns) {
+    defaultParser().deduplicate(columns);
+    return this;
+  }
+
+  private CsvParserBuilder defaultParser() {
+    if (defaultParser == null) {
+      defaultParser = new CsvParserBuilder();
+    }
+    return defaultParser;
+  }
+
+
   /**
    * Constructs CsvReader
+   *
+   * @throws IllegalStateException if resuming past the header with columns
+   *         projected by name, or if the source can't be read up to the checkpoint
    */
   public CsvReader build() {
-    if (parser == null) {
-      parser = new SimpleCsvParser();
+    if (parser != null && defaultParser != null) {
+      throw new IllegalStateException("The columns, filters and deduplication of a given parser must be set on its CsvParserBuilder");
+    }
+    // a new default parser for each reader; the builder's own settings stay as they are
+    CsvParser csvParser = (parser != null ? parser : defaultParser().build());
+    try {
+      if (checkpoint == null) {
+        // a caller's BufferedReader is read as it is
+        return new CsvReader(reader != null ? reader : sourceReader(0, csvParser), skipLines, csvParser);
+      }
+      BlockReader source = sourceReader(checkpoint.getOffset(), csvParser);
+      source.base = checkpoint.getOffset();
+      int skip = (int) Math.max(0, skipLines - checkpoint.getRecords());
+      return new CsvReader(source, skip, csvParser, checkpoint);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return a reader of the source for the parser, at the given offset in it
+   */
+  BlockReader sourceReader(long offset, CsvParser parser) throws IOException {
+    if (reader != null) {
+      skipFully(reader, offset);
+      return (reader instanceof BlockReader ? (BlockReader) reader : new CharBlockReader(reader));
+    }
+    if (file != null) {
+      MappedFile mapped = new MappedFile(file, offset, -1, MappedFile.DEFAULT_REGION_SIZE);
+      return (parser instanceof Utf8CsvParser ?
+          new ByteBlockReader(mapped) : new CharBlockReader(mapped.newReader(), BlockReader.DEFAULT_BLOCK_SIZE, true));
+    }
+    if (inputStream != null) {
+      skipFully(inputStream, offset);
+    } else if (channel instanceof FileChannel) {
+      FileChannel fc = (FileChannel) channel;
+      fc.position(fc.position() + offset);
+    } else {
+      skipFully(channel, offset);
+    }
+    if (parser instanceof Utf8CsvParser) {
+      return (inputStream != null ?
+          new ByteBlockReader(inputStream) : new ByteBlockReader(channel));
+    }
+    Reader decoded = (inputStream != null ?
+        new InputStreamReader(inputStream, ByteBlockReader.UTF8) :
+        Channels.newReader(channel, ByteBlockReader.UTF8.newDecoder().
+            onMalformedInput(CodingErrorAction.REPLACE).
+            onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+    return new CharBlockReader(decoded, BlockReader.DEFAULT_BLOCK_SIZE, true);
+  }
+
+  private static void skipFully(Reader reader, long n) throws IOException {
+    while (n > 0) {
+      long skipped = reader.skip(n);
+      if (skipped <= 0) {
+        if (reader.read() < 0) {
+          throw new EOFException("The source ends before the checkpoint");
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  private static void skipFully(InputStream in, long n) throws IOException {
+    while (n > 0) {
+      long skipped = in.skip(n);
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          throw new EOFException("The source ends before the checkpoint");
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  private static void skipFully(ReadableByteChannel channel, long n) throws IOException {
+    ByteBuffer discard = ByteBuffer.allocate((int) Math.min(n, BlockReader.DEFAULT_BLOCK_SIZE));
+    while (n > 0) {
+      discard.clear();
+      discard.limit((int) Math.min(n, discard.capacity()));
+      int read = channel.read(discard);
+      if (read < 0) {
+        throw new EOFException("The source ends before the checkpoint");
+      }
+      n -= read;
     }
-    return new CsvReader(reader, skipLines, parser);
   }
 }
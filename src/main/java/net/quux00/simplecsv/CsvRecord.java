@@ -0,0 +1,300 @@
+package net.quux00.simplecsv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mutable record for allocation-free reading loops: pass the same CsvRecord
+ * to {@link CsvReader#readNext(CsvRecord)} for every record and the parser
+ * clears and refills it.
+ *
+ * The fields are stored back to back in one char buffer, and are exposed as
+ * CharSequence slices of it.  The buffer and the field objects grow to fit the
+ * widest record read and are then reused, so a steady-state reading loop
+ * creates no garbage.  A field obtained from {@link #get(int)} always shows the
+ * current contents of the record; call toString() on it (or use
+ * {@link #getString(int)}) to keep its value after the record is refilled.
+ *
+ * NotThreadSafe
+ */
+public class CsvRecord {
+  // package-private for CsvBatch to copy records from
+  char[] buf = new char[SimpleCsvParser.INITIAL_READ_SIZE];
+  int length = 0;
+  // field i is buf[starts[i], starts[i+1])
+  int[] starts = new int[16];
+  private Field[] fields = new Field[0];
+  int size = 0;
+
+  public CsvRecord() {}
+
+  /**
+   * @return number of fields in the record
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the field as a slice of the record's buffer.  It is only valid
+   * until the record is next cleared or refilled.
+   *
+   * @param index index of the field
+   * @return the field's chars
+   */
+  public CharSequence get(int index) {
+    checkIndex(index);
+    if (index >= fields.length) {
+      Field[] grown = new Field[Math.max(size, fields.length * 2)];
+      System.arraycopy(fields, 0, grown, 0, fields.length);
+      fields = grown;
+    }
+    if (fields[index] == null) {
+      fields[index] = new Field(index);
+    }
+    return fields[index];
+  }
+
+  /**
+   * @param index index of the field
+   * @return a copy of the field as a String, which stays valid
+   */
+  public String getString(int index) {
+    checkIndex(index);
+    return new String(buf, starts[index], starts[index + 1] - starts[index]);
+  }
+
+  /**
+   * Parses the field as an int, straight from the record's buffer.
+   *
+   * @param index index of the field
+   * @return the field's value, as Integer.parseInt would read it
+   * @throws NumberFormatException if the field is not an int
+   */
+  public int getInt(int index) {
+    checkIndex(index);
+    return FieldValues.parseInt(buf, starts[index], starts[index + 1]);
+  }
+
+  /**
+   * Parses the field as a long, straight from the record's buffer.
+   *
+   * @param index index of the field
+   * @return the field's value, as Long.parseLong would read it
+   * @throws NumberFormatException if the field is not a long
+   */
+  public long getLong(int index) {
+    checkIndex(index);
+    return FieldValues.parseLong(buf, starts[index], starts[index + 1]);
+  }
+
+  /**
+   * Parses the field as a double.  Plain decimals of up to 15 significant
+   * digits are read straight from the record's buffer; anything else is read
+   * by Double.parseDouble.  Either way the result is correctly rounded.
+   *
+   * @param index index of the field
+   * @return the field's value, as Double.parseDouble would read it
+   * @throws NumberFormatException if the field is not a double
+   */
+  public double getDouble(int index) {
+    checkIndex(index);
+    return FieldValues.parseDouble(buf, starts[index], starts[index + 1]);
+  }
+
+  /**
+   * @param index index of the field
+   * @return whether the field is "true", ignoring case, as Boolean.parseBoolean would read it
+   */
+  public boolean getBoolean(int index) {
+    checkIndex(index);
+    return FieldValues.parseBoolean(buf, starts[index], starts[index + 1]);
+  }
+
+  /**
+   * Parses the field as an ISO-8601 date, yyyy-MM-dd, straight from the
+   * record's buffer.  On Java 8 and later, LocalDate.ofEpochDay turns the
+   * result into a LocalDate.
+   *
+   * @param index index of the field
+   * @return the number of days from 1970-01-01 to the date
+   * @throws IllegalArgumentException if the field is not a valid yyyy-MM-dd date
+   */
+  public long getEpochDay(int index) {
+    checkIndex(index);
+    return FieldValues.parseEpochDay(buf, starts[index], starts[index + 1]);
+  }
+
+  /**
+   * @return a copy of all the fields, as CsvReader.readNext() would have returned
+   */
+  public List<String> toList() {
+    List<String> toks = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      toks.add(getString(i));
+    }
+    return toks;
+  }
+
+  @Override
+  public String toString() {
+    return toList().toString();
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CsvRecord)) {
+      return false;
+    }
+    CsvRecord other = (CsvRecord) obj;
+    if (size != other.size || length != other.length) {
+      return false;
+    }
+    for (int i = 1; i <= size; i++) {
+      if (starts[i] != other.starts[i]) {
+        return false;
+      }
+    }
+    for (int i = 0; i < length; i++) {
+      if (buf[i] != other.buf[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = size;
+    for (int i = 0; i < length; i++) {
+      h = 31 * h + buf[i];
+    }
+    return h;
+  }
+
+  /**
+   * Removes all the fields, keeping the storage for reuse.
+   */
+  public void clear() {
+    length = 0;
+    size = 0;
+  }
+
+  /**
+   * Appends a copy of the chars as a new last field.
+   *
+   * @param field chars of the field to add
+   */
+  public void add(CharSequence field) {
+    if (field instanceof String) {
+      add((String) field);
+    } else {
+      int len = field.length();
+      ensureCapacity(len);
+      for (int i = 0; i < len; i++) {
+        buf[length++] = field.charAt(i);
+      }
+      size++;
+      starts[size] = length;
+    }
+  }
+
+  /* ---[ used by the parsers ]--- */
+
+  void add(StringBuilder sb, int from, int to) {
+    int len = to - from;
+    ensureCapacity(len);
+    sb.getChars(from, to, buf, length);
+    length += len;
+    size++;
+    starts[size] = length;
+  }
+
+  void add(char[] chars, int from, int to) {
+    int len = to - from;
+    ensureCapacity(len);
+    System.arraycopy(chars, from, buf, length, len);
+    length += len;
+    size++;
+    starts[size] = length;
+  }
+
+  /**
+   * Adds bytes[from, to), which must all be ASCII, as chars.
+   */
+  void add(byte[] ascii, int from, int to) {
+    int len = to - from;
+    ensureCapacity(len);
+    for (int i = from; i < to; i++) {
+      buf[length++] = (char) ascii[i];
+    }
+    size++;
+    starts[size] = length;
+  }
+
+  void add(String s) {
+    int len = s.length();
+    ensureCapacity(len);
+    s.getChars(0, len, buf, length);
+    length += len;
+    size++;
+    starts[size] = length;
+  }
+
+  private void ensureCapacity(int len) {
+    if (length + len > buf.length) {
+      char[] grown = new char[Math.max(length + len, buf.length * 2)];
+      System.arraycopy(buf, 0, grown, 0, length);
+      buf = grown;
+    }
+    if (size + 2 > starts.length) {
+      int[] grown = new int[starts.length * 2];
+      System.arraycopy(starts, 0, grown, 0, size + 1);
+      starts = grown;
+    }
+  }
+
+  /**
+   * The chars of one field.  Field objects are reused from record to record,
+   * and always read the current state of the record.
+   */
+  final class Field implements CharSequence {
+    private final int index;
+
+    Field(int index) {
+      this.index = index;
+    }
+
+    public int length() {
+      return starts[index + 1] - starts[index];
+    }
+
+    public char charAt(int i) {
+      if (i < 0 || i >= length()) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Length: " + length());
+      }
+      return buf[starts[index] + i];
+    }
+
+    public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > length() || start > end) {
+        throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", Length: " + length());
+      }
+      return new String(buf, starts[index] + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return new String(buf, starts[index], length());
+    }
+  }
+}
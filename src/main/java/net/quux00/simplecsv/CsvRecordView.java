@@ -0,0 +1,14 @@
+package net.quux00.simplecsv;
+
+/**
+ * The CsvRecord owned by a CsvReader and returned by
+ * {@link CsvReader#readNextView()}.  The same view is refilled for every
+ * record, so it and every CharSequence obtained from it are only valid until
+ * the next call to readNextView.  Call toString() on a field (or use
+ * {@link #getString(int)}) to keep its value beyond that.
+ *
+ * NotThreadSafe - owned by the CsvReader that fills it.
+ */
+public final class CsvRecordView extends CsvRecord {
+  CsvRecordView() {}
+}
@@ -0,0 +1,352 @@
+package net.quux00.simplecsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counts the records of a CSV source and checks its structure without
+ * parsing any field.  Only the quote, escape, separator and line ending part
+ * of the parser's state machine is run, over runs of plain chars skipped with
+ * the CharClasses tables (and the Vector API when it is available), so a scan
+ * allocates nothing per record and runs close to the speed of reading the
+ * input.  It reports:
+ *
+ * <ul>
+ * <li>the number of records, as the CsvReader would return them</li>
+ * <li>the fewest and most columns in a record and the number of records with
+ *     each column count (an empty line is a record of one empty column)</li>
+ * <li>the record number (from 1) and offset of the first quote that is
+ *     never closed</li>
+ * </ul>
+ *
+ * The dialect is the one the CsvParserBuilder builds: with the multi-line
+ * parser a record ends at a line ending outside of quotes, so quoted fields
+ * may span lines, and doubled RFC4180 quotes just toggle the quote state out
+ * and back in.  Otherwise every line ending ends a record and a quote left
+ * open at the end of a line is unbalanced.  Unbalanced quotes are reported
+ * even when the parser is set to allow them.  Projections and filters do
+ * not change the scan.
+ *
+ * Immutable and so ThreadSafe: each scan has its own state.
+ */
+public final class CsvScanner {
+  private final CharClasses classes;
+  private final boolean strictQuotes;
+  private final boolean multiLine;
+  private final char separator;
+  private final char quotechar;
+  private final char escapechar;
+
+  public CsvScanner(CsvParserBuilder builder) {
+    classes = new CharClasses(builder.separator, builder.quoteChar, builder.escapeChar);
+    strictQuotes = builder.strictQuotes;
+    multiLine = (builder.build() instanceof MultiLineCsvParser);
+    separator = builder.separator;
+    quotechar = builder.quoteChar;
+    escapechar = builder.escapeChar;
+  }
+
+  /**
+   * Scans all the chars of the reader.  Offsets are char offsets.
+   * The reader is not closed.
+   */
+  public Summary scan(Reader reader) throws IOException {
+    final Scan scan = new Scan(0);
+    final char[] buf = new char[BlockReader.DEFAULT_BLOCK_SIZE];
+    long offset = 0;
+    int n;
+    while ((n = reader.read(buf, 0, buf.length)) >= 0) {
+      int i = 0;
+      while (i < n) {
+        // without multi-line, a line ending ends the record in quotes too
+        int end = classes.skipPlain(buf, i, n, scan.inQuotes && multiLine);
+        if (end > i) {
+          scan.plain(offset + i);
+        }
+        if (end >= n) {
+          break;
+        }
+        scan.structural(classes.classOf(buf[end]), offset + end);
+        i = end + 1;
+      }
+      offset += n;
+    }
+    return scan.finish();
+  }
+
+  /**
+   * Scans all the bytes of a UTF-8 encoded stream, without decoding them.
+   * Offsets are byte offsets.  The stream is not closed.
+   *
+   * @throws UnsupportedOperationException if the separator, quote or escape char is not ASCII
+   */
+  public Summary scan(InputStream in) throws IOException {
+    return scan(in, 0);
+  }
+
+  /**
+   * Scans the bytes of a UTF-8 encoded stream, also recording the offset of
+   * the first byte of every interval-th record (from record 0) if interval
+   * is positive.  See {@link Summary#recordStarts}.
+   */
+  Summary scan(InputStream in, int interval) throws IOException {
+    CharClasses.requireAscii(separator, quotechar, escapechar);
+    final Scan scan = new Scan(interval);
+    final byte[] buf = new byte[BlockReader.DEFAULT_BLOCK_SIZE];
+    long offset = 0;
+    int n;
+    while ((n = in.read(buf, 0, buf.length)) >= 0) {
+      int i = 0;
+      while (i < n) {
+        int end = classes.skipPlain(buf, i, n, scan.inQuotes && multiLine);
+        if (end > i) {
+          scan.plain(offset + i);
+        }
+        if (end >= n) {
+          break;
+        }
+        // skipPlain stops at the bytes of multi-byte sequences, which are REGULAR
+        scan.structural(classes.classOf(buf[end]), offset + end);
+        i = end + 1;
+      }
+      offset += n;
+    }
+    return scan.finish();
+  }
+
+  /**
+   * The state of one scan.  Mirrors the quote and escape state changes of
+   * the parsers; see SimpleCsvParser.skipField.
+   */
+  private final class Scan {
+    boolean inQuotes = false;
+    boolean inEscape = false;
+    boolean inRecord = false;  // a char of the current record was seen
+    boolean afterCR = false;   // the last char was a CR ending a line, so an LF is part of it
+    int columns = 1;           // of the current record, so far
+    long quoteOffset = -1;     // of the quote that opened the current quoted field
+    boolean begun = false;     // the start of the current record was seen
+
+    long records = 0;
+    long[] histogram = new long[16];  // number of records by column count
+    long unbalancedRecord = -1;
+    long unbalancedOffset = -1;
+
+    // offsets of the starts of every interval-th record, if interval > 0
+    final int interval;
+    long[] starts = new long[16];
+    int numStarts = 0;
+
+    Scan(int interval) {
+      this.interval = interval;
+    }
+
+    private void begin(long offset) {
+      if (begun) {
+        return;
+      }
+      begun = true;
+      if (interval > 0 && records % interval == 0) {
+        if (numStarts == starts.length) {
+          long[] grown = new long[starts.length * 2];
+          System.arraycopy(starts, 0, grown, 0, numStarts);
+          starts = grown;
+        }
+        starts[numStarts++] = offset;
+      }
+    }
+
+    void plain(long offset) {
+      begin(offset);
+      plain();
+    }
+
+    void plain() {
+      inRecord = true;
+      afterCR = false;
+      if (!strictQuotes || inQuotes) {
+        // a regular char ends any escape
+        inEscape = false;
+      }
+    }
+
+    void structural(byte charClass, long offset) {
+      if (charClass == CharClasses.LF && afterCR) {
+        afterCR = false;
+        return;
+      }
+      afterCR = false;
+      begin(offset);
+
+      switch (charClass) {
+        case CharClasses.REGULAR:
+          plain();
+          break;
+
+        case CharClasses.QUOTE:
+          inRecord = true;
+          if (!inEscape) {
+            inQuotes = !inQuotes;
+            if (inQuotes) {
+              quoteOffset = offset;
+            }
+          }
+          inEscape = false;
+          break;
+
+        case CharClasses.ESCAPE:
+          inRecord = true;
+          inEscape = !inEscape;
+          break;
+
+        case CharClasses.SEPARATOR:
+          inRecord = true;
+          if (!inQuotes) {
+            columns++;
+          }
+          inEscape = false;
+          break;
+
+        case CharClasses.CR:
+          if (multiLine) {
+            // only an LF ends a multi-line record; a lone CR is dropped from
+            // the field, but is otherwise a regular char
+            plain();
+            break;
+          }
+          endRecord();
+          afterCR = true;
+          break;
+
+        default:
+          // LF, which in quotes only reaches here without multi-line
+          endRecord();
+      }
+    }
+
+    private void endRecord() {
+      if (inQuotes) {
+        unbalanced();
+      }
+      int count = columns;
+      if (count >= histogram.length) {
+        long[] grown = new long[Math.max(count + 1, histogram.length * 2)];
+        System.arraycopy(histogram, 0, grown, 0, histogram.length);
+        histogram = grown;
+      }
+      histogram[count]++;
+      records++;
+      inQuotes = inEscape = inRecord = begun = false;
+      columns = 1;
+    }
+
+    private void unbalanced() {
+      if (unbalancedRecord < 0) {
+        unbalancedRecord = records + 1;
+        unbalancedOffset = quoteOffset;
+      }
+    }
+
+    Summary finish() {
+      if (inRecord) {
+        endRecord();
+      }
+      return new Summary(this);
+    }
+  }
+
+  /**
+   * What a scan found.
+   */
+  public static final class Summary {
+    private final long records;
+    private final SortedMap<Integer, Long> columnCounts;
+    private final long unbalancedRecord;
+    private final long unbalancedOffset;
+    // see recordStarts
+    private final long[] starts;
+
+    private Summary(Scan scan) {
+      records = scan.records;
+      SortedMap<Integer, Long> counts = new TreeMap<Integer, Long>();
+      for (int i = 0; i < scan.histogram.length; i++) {
+        if (scan.histogram[i] > 0) {
+          counts.put(i, scan.histogram[i]);
+        }
+      }
+      columnCounts = Collections.unmodifiableSortedMap(counts);
+      unbalancedRecord = scan.unbalancedRecord;
+      unbalancedOffset = scan.unbalancedOffset;
+      starts = new long[scan.numStarts];
+      System.arraycopy(scan.starts, 0, starts, 0, starts.length);
+    }
+
+    /**
+     * @return offsets of the first char (or byte) of records 0, interval,
+     *         2 * interval ... if the scan was given an interval
+     */
+    long[] recordStarts() {
+      return starts;
+    }
+
+    /**
+     * @return number of records
+     */
+    public long getRecordCount() {
+      return records;
+    }
+
+    /**
+     * @return fewest columns in a record, or 0 if there are no records
+     */
+    public int getMinColumns() {
+      return (columnCounts.isEmpty() ? 0 : columnCounts.firstKey());
+    }
+
+    /**
+     * @return most columns in a record, or 0 if there are no records
+     */
+    public int getMaxColumns() {
+      return (columnCounts.isEmpty() ? 0 : columnCounts.lastKey());
+    }
+
+    /**
+     * @return number of records with each column count, by column count
+     */
+    public SortedMap<Integer, Long> getColumnCounts() {
+      return columnCounts;
+    }
+
+    /**
+     * @return whether every quote is closed
+     */
+    public boolean isBalanced() {
+      return unbalancedRecord < 0;
+    }
+
+    /**
+     * @return number, from 1, of the first record with a quote that is never
+     *         closed, or -1 if there is none
+     */
+    public long getUnbalancedRecord() {
+      return unbalancedRecord;
+    }
+
+    /**
+     * @return offset of the first quote that is never closed, or -1 if there is none
+     */
+    public long getUnbalancedOffset() {
+      return unbalancedOffset;
+    }
+
+    @Override
+    public String toString() {
+      return "records: " + records + ", column counts: " + columnCounts +
+          (isBalanced() ? "" : ", unbalanced quote at offset " + unbalancedOffset + " of record " + unbalancedRecord);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package net.quux00.simplecsv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The typed columns a {@link CsvColumnReader} reads into a CsvColumnBatch,
+ * each given by header name or by zero-based index in the record:
+ *
+ * <pre>
+ * CsvSchema schema = new CsvSchema().
+ *     column("id", CsvSchema.Type.LONG).
+ *     column("price", CsvSchema.Type.DOUBLE).
+ *     column("city", CsvSchema.Type.STRING);
+ * </pre>
+ *
+ * Columns by name are resolved against the first record read, which is the
+ * header.  The columns of a batch are in the order they were added here.
+ */
+public final class CsvSchema {
+
+  /**
+   * How the fields of a column are stored in a CsvColumnBatch.
+   */
+  public enum Type {
+    /** int[], as Integer.parseInt reads them */
+    INT,
+    /** long[], as Long.parseLong reads them */
+    LONG,
+    /** double[], as Double.parseDouble reads them */
+    DOUBLE,
+    /** int[] codes into a dictionary of the batch's distinct values */
+    STRING,
+    /** int[] of days since 1970-01-01, from yyyy-MM-dd */
+    DATE
+  }
+
+  private final List<String> names = new ArrayList<String>();
+  private final List<Integer> indexes = new ArrayList<Integer>();
+  private final List<Type> types = new ArrayList<Type>();
+
+  public CsvSchema() {}
+
+  /**
+   * Adds a column found by its name in the header.
+   */
+  public CsvSchema column(String name, Type type) {
+    if (name == null) {
+      throw new IllegalArgumentException("Column name may not be null");
+    }
+    return add(name, -1, type);
+  }
+
+  /**
+   * Adds a column found by its zero-based index in the record.
+   */
+  public CsvSchema column(int index, Type type) {
+    if (index < 0) {
+      throw new IllegalArgumentException("Column index may not be negative: " + index);
+    }
+    return add(null, index, type);
+  }
+
+  private CsvSchema add(String name, int index, Type type) {
+    if (type == null) {
+      throw new IllegalArgumentException("Column type may not be null");
+    }
+    names.add(name);
+    indexes.add(index);
+    types.add(type);
+    return this;
+  }
+
+  /**
+   * @return number of columns
+   */
+  public int size() {
+    return types.size();
+  }
+
+  /**
+   * @return the column's header name, or null if it is given by index
+   */
+  public String getName(int column) {
+    return names.get(column);
+  }
+
+  public Type getType(int column) {
+    return types.get(column);
+  }
+
+  /* ---[ used by the CsvColumnReader ]--- */
+
+  /**
+   * @return whether any column is given by name
+   */
+  boolean needsHeader() {
+    for (String name : names) {
+      if (name != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param header the header, or null if no column is given by name
+   * @return the index in the record of each column
+   * @throws IllegalArgumentException if a name is not in the header
+   */
+  int[] resolve(List<String> header) {
+    int[] fields = new int[types.size()];
+    for (int i = 0; i < fields.length; i++) {
+      String name = names.get(i);
+      fields[i] = (name == null ? indexes.get(i) : header.indexOf(name));
+      if (fields[i] < 0) {
+        throw new IllegalArgumentException("Column " + name + " not found in the header");
+      }
+    }
+    return fields;
+  }
+
+  /**
+   * @return a readable name for the column, for error messages
+   */
+  String describe(int column) {
+    String name = names.get(column);
+    return (name != null ? name : "#" + indexes.get(column));
+  }
+}
@@ -0,0 +1,220 @@
+package net.quux00.simplecsv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * A byte range of a UTF-8 encoded CSV file that starts and ends at record
+ * boundaries, and that can be split again in two at the record boundary
+ * nearest its middle.  Splitting works like java.util.Spliterator.trySplit,
+ * so a Spliterator over a CsvSplit gives a stream of a file's records that
+ * really runs in parallel, but nothing here needs Java 8: on older Javas the
+ * splits can be handed to an ExecutorService just as well.
+ *
+ * With the SimpleCsvParser dialect every line ending ends a record, so a
+ * split only looks at the bytes after its middle.  With the multi-line
+ * parser, whether a line ending ends a record depends on the quote state
+ * before it, so a split scans for record boundaries from its start to its
+ * middle, running just the quote and escape part of the parser's state
+ * machine over the bytes (see Utf8CsvParser.skipNext).
+ *
+ * The separator, quote and escape chars must be ASCII.
+ *
+ * NotThreadSafe - but the two halves of a split are independent and can be
+ * handed to different threads.
+ */
+public final class CsvSplit {
+  /**
+   * The smallest split, in bytes, that trySplit splits by default.
+   */
+  public static final long DEFAULT_MIN_SIZE = 1024 * 1024;
+
+  private final File file;
+  private final CsvParserBuilder builder;
+  private final boolean multiLine;
+  // finds the record boundaries of the multi-line dialect in the bytes
+  private final Utf8CsvParser boundaries;
+  private final long minSize;
+  // the header, read first when the columns are projected by name
+  private final List<String> header;
+
+  private long start;
+  private final long end;
+
+  private CsvSplit(CsvSplit parent, long start, long end) {
+    this(parent.file, parent.builder, parent.multiLine, parent.boundaries, parent.minSize, parent.header, start, end);
+  }
+
+  private CsvSplit(File file, CsvParserBuilder builder, boolean multiLine, Utf8CsvParser boundaries,
+      long minSize, List<String> header, long start, long end) {
+    this.file = file;
+    this.builder = builder;
+    this.multiLine = multiLine;
+    this.boundaries = boundaries;
+    this.minSize = minSize;
+    this.header = header;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return a split of the whole file that splits down to DEFAULT_MIN_SIZE bytes
+   */
+  public static CsvSplit of(File file, CsvParserBuilder builder) throws IOException {
+    return of(file, builder, 0, DEFAULT_MIN_SIZE);
+  }
+
+  /**
+   * @param file      the UTF-8 encoded file to split
+   * @param builder   builds the parser for each split
+   * @param skipLines the number of records at the top of the file to leave out
+   * @param minSize   the smallest split, in bytes, that trySplit splits
+   * @return a split of the whole file, but for the skipped records
+   */
+  public static CsvSplit of(File file, CsvParserBuilder builder, int skipLines, long minSize) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("File may not be null");
+    }
+    if (minSize <= 0) {
+      throw new IllegalArgumentException("minSize must be greater than zero");
+    }
+    CharClasses.requireAscii(builder.separator, builder.quoteChar, builder.escapeChar);
+    boolean multiLine = (builder.build() instanceof MultiLineCsvParser);
+    Utf8CsvParser boundaries = (multiLine ? new Utf8CsvParser(builder.separator, builder.quoteChar,
+        builder.escapeChar, builder.strictQuotes, false, true, false, true, false, false) : null);
+    CsvSplit split = new CsvSplit(file, builder, multiLine, boundaries, minSize, readHeader(file, builder),
+        0, file.length());
+    for (int i = 0; i < skipLines && split.start < split.end; i++) {
+      split.start = (multiLine ? split.recordEndAfter(split.start + 1) : split.lineEndAfter(split.start));
+    }
+    return split;
+  }
+
+  /**
+   * When the columns are projected by name, reads the header for every
+   * split's parser to resolve the names against.
+   */
+  private static List<String> readHeader(File file, CsvParserBuilder builder) throws IOException {
+    CsvParser parser = builder.build();
+    Projection projection = Projection.of(parser);
+    if (projection == null || projection.isResolved()) {
+      return null;
+    }
+    // the projection is not resolved yet, so the header is parsed in full
+    MappedFile mapped = new MappedFile(file);
+    Reader source = (parser instanceof Utf8CsvParser ? new ByteBlockReader(mapped) : new CharBlockReader(mapped.newReader()));
+    try {
+      return parser.parseNext(source);
+    } finally {
+      source.close();
+    }
+  }
+
+  /**
+   * Splits off the first part of this split, up to the record boundary
+   * nearest its middle, and keeps the rest.
+   *
+   * @return the first part or null if this split is smaller than twice the
+   *         minimum size or is a single record
+   */
+  public CsvSplit trySplit() throws IOException {
+    if (end - start < 2 * minSize) {
+      return null;
+    }
+    long middle = start + (end - start) / 2;
+    long boundary = (multiLine ? recordEndAfter(middle) : lineEndAfter(middle));
+    if (boundary >= end) {
+      return null;
+    }
+    CsvSplit first = new CsvSplit(this, start, boundary);
+    start = boundary;
+    return first;
+  }
+
+  /**
+   * @return the offset of the first record boundary at or after target, or
+   *         end if there is none, found by skipping records from start
+   */
+  private long recordEndAfter(long target) throws IOException {
+    ByteBlockReader bbr = new ByteBlockReader(new MappedFile(file, start, end, MappedFile.DEFAULT_REGION_SIZE));
+    bbr.base = start;
+    try {
+      while (bbr.position() < target && boundaries.skipNext(bbr)) {
+        // skipped a record
+      }
+      return bbr.position();
+    } finally {
+      bbr.close();
+    }
+  }
+
+  /**
+   * @return the offset after the first line ending at or after from (a CRLF
+   *         is one line ending), or end if there is none
+   */
+  private long lineEndAfter(long from) throws IOException {
+    ByteBlockReader bbr = new ByteBlockReader(new MappedFile(file, from, end, MappedFile.DEFAULT_REGION_SIZE));
+    bbr.base = from;
+    try {
+      while (bbr.pos < bbr.limit || bbr.fill()) {
+        byte b = bbr.buf[bbr.pos++];
+        if (b == '\n') {
+          return bbr.position();
+        }
+        if (b == '\r') {
+          bbr.skipLF = true;
+          return bbr.position();
+        }
+      }
+      return end;
+    } finally {
+      bbr.close();
+    }
+  }
+
+  /**
+   * @return offset in the file of the first byte of this split
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * @return offset in the file of the byte after this split
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * @return number of bytes in this split
+   */
+  public long getLength() {
+    return end - start;
+  }
+
+  /**
+   * Opens a reader of the records of this split, with a new parser from the
+   * CsvParserBuilder.  Its checkpoints are offsets in the file, and its
+   * record numbers count from the start of the split.
+   */
+  public CsvReader open() {
+    CsvParser parser = builder.build();
+    Projection projection = Projection.of(parser);
+    if (projection != null && header != null) {
+      projection.resolve(header);
+    }
+    MappedFile mapped = new MappedFile(file, start, end, MappedFile.DEFAULT_REGION_SIZE);
+    BlockReader source = (parser instanceof Utf8CsvParser ? new ByteBlockReader(mapped) :
+        new CharBlockReader(mapped.newReader(), BlockReader.DEFAULT_BLOCK_SIZE, true));
+    source.base = start;
+    return new CsvReader(source, 0, parser);
+  }
+
+  @Override
+  public String toString() {
+    return file + " [" + start + ", " + end + ")";
+  }
+}
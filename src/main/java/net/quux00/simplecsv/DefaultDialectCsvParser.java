@@ -0,0 +1,127 @@
+package net.quux00.simplecsv;
+
+import java.util.List;
+
+/**
+ * A SimpleCsvParser specialized for the default options: no strictQuotes,
+ * trimWhitespace, retainOuterQuotes or alwaysQuoteOutput, escape chars
+ * retained, both a quote char and an escape char defined, and no projection,
+ * filters or deduplicated columns.  Any separator, quote and escape chars may
+ * be used.
+ *
+ * The generic parser checks most of the options for every char or token.
+ * Here none of them are in the loop, which just skips over runs of regular
+ * chars with the CharClasses table and only stops at the separator, quote and
+ * escape chars.  Runs of regular chars are appended in bulk, and a field that
+ * has no quote or escape chars in it is made straight from the line's chars
+ * without the StringBuilder.
+ *
+ * The CsvParserBuilder returns this parser whenever the options allow it.
+ * It produces exactly the same tokens as the SimpleCsvParser.
+ *
+ * NotThreadSafe - only use one CsvParser per thread
+ */
+final class DefaultDialectCsvParser extends SimpleCsvParser {
+
+  DefaultDialectCsvParser(final char separator, final char quotechar, final char escapechar,
+      final boolean allowedUnbalancedQuotes) {
+    super(separator, quotechar, escapechar, false, false, allowedUnbalancedQuotes, false, true, false);
+    if (quotechar == ParserUtil.NULL_CHARACTER || escapechar == ParserUtil.NULL_CHARACTER) {
+      throw new UnsupportedOperationException("The quote and escape characters must be defined!");
+    }
+  }
+
+  /**
+   * @return whether the builder's options are the ones this parser is specialized for
+   */
+  static boolean supports(CsvParserBuilder builder) {
+    return !builder.strictQuotes && !builder.trimWhitespace && !builder.retainOuterQuotes &&
+        builder.retainEscapeChars && !builder.alwaysQuoteOutput &&
+        builder.quoteChar != ParserUtil.NULL_CHARACTER && builder.escapeChar != ParserUtil.NULL_CHARACTER &&
+        builder.projection == null && builder.filters == null && builder.deduplicated == null;
+  }
+
+  /**
+   * The SimpleCsvParser state machine with the options fixed.  The chars of
+   * the current token not yet copied into sb are buf[run, i).  Quote and escape
+   * chars are retained, so they are appended along with the run before them.
+   */
+  @Override
+  void parse0(char[] buf, int from, int to, List<String> toks, CsvRecord record) {
+    final CharClasses classes = this.classes;
+    boolean inQuotes = false;
+    boolean inEscape = false;
+    int run = from;
+    sb.setLength(0);
+
+    int i = from;
+    while (true) {
+      int end = classes.skipPlain(buf, i, to, inQuotes);
+      if (end > i) {
+        // a regular char ends any escape
+        inEscape = false;
+        i = end;
+      }
+      if (i >= to) {
+        break;
+      }
+
+      switch (classes.classOf(buf[i])) {
+        case CharClasses.QUOTE:
+          sb.append(buf, run, i + 1 - run);
+          run = i + 1;
+          if (!inEscape) {
+            inQuotes = !inQuotes;
+          }
+          inEscape = false;
+          break;
+
+        case CharClasses.ESCAPE:
+          sb.append(buf, run, i + 1 - run);
+          run = i + 1;
+          inEscape = !inEscape;
+          break;
+
+        case CharClasses.SEPARATOR:
+          // only stopped at outside of quotes
+          endOfToken(buf, run, i, toks, record);
+          run = i + 1;
+          inEscape = false;
+          break;
+
+        default:
+          // a CR or LF is a regular char within a line
+          inEscape = false;
+      }
+      i++;
+    }
+
+    // done parsing the line
+    if (inQuotes && !allowedUnbalancedQuotes) {
+      throw new IllegalArgumentException("Un-terminated quoted field at end of CSV line");
+    }
+    endOfToken(buf, run, to, toks, record);
+    width = (record == null ? toks.size() : record.size());
+  }
+
+  private void endOfToken(char[] buf, int run, int end, List<String> toks, CsvRecord record) {
+    if (sb.length() == 0) {
+      // no quotes or escapes, so the token is just the run
+      if (record == null) {
+        toks.add(new String(buf, run, end - run));
+      } else {
+        record.add(buf, run, end);
+      }
+      return;
+    }
+
+    sb.append(buf, run, end - run);
+    ParserUtil.pluckOuterQuotes(sb, 0, sb.length() - 1, quotechar);
+    if (record == null) {
+      toks.add(sb.toString());
+    } else {
+      record.add(sb, 0, sb.length());
+    }
+    sb.setLength(0);
+  }
+}
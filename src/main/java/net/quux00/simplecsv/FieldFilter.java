@@ -0,0 +1,19 @@
+package net.quux00.simplecsv;
+
+/**
+ * A condition on the value of one column, set with CsvParserBuilder.filter.
+ * The parser tests a field as soon as it is parsed, and abandons a record
+ * whose field is not accepted by scanning straight to the next record
+ * without parsing the rest of it.  See {@link FieldFilters} for the common
+ * conditions.
+ *
+ * Implementations must be ThreadSafe, as they are shared by all the threads
+ * using a MultiLineCsvParser.
+ */
+public interface FieldFilter {
+  /**
+   * @param field the parsed value of the field, only valid during the call
+   * @return whether the record with this field should be read
+   */
+  boolean accept(CharSequence field);
+}
@@ -0,0 +1,98 @@
+package net.quux00.simplecsv;
+
+/**
+ * Factory methods for the common FieldFilters.  They all compare the field
+ * in place, without making a String of it.
+ */
+public final class FieldFilters {
+  private FieldFilters() {}
+
+  /**
+   * @return a filter accepting the fields equal to the value
+   */
+  public static FieldFilter equalTo(final String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("value may not be null");
+    }
+    return new FieldFilter() {
+      public boolean accept(CharSequence field) {
+        return field.length() == value.length() && startsWith(field, value);
+      }
+    };
+  }
+
+  /**
+   * @return a filter accepting the fields that start with the prefix
+   */
+  public static FieldFilter startsWith(final String prefix) {
+    if (prefix == null) {
+      throw new IllegalArgumentException("prefix may not be null");
+    }
+    return new FieldFilter() {
+      public boolean accept(CharSequence field) {
+        return field.length() >= prefix.length() && startsWith(field, prefix);
+      }
+    };
+  }
+
+  /**
+   * @return a filter accepting the fields holding a number between min and
+   *         max, inclusive.  Fields that are not numbers are not accepted.
+   */
+  public static FieldFilter between(final double min, final double max) {
+    return new FieldFilter() {
+      public boolean accept(CharSequence field) {
+        double d = toNumber(field);
+        return d >= min && d <= max;
+      }
+    };
+  }
+
+  /**
+   * @return a filter accepting the fields that both filters accept
+   */
+  static FieldFilter both(final FieldFilter first, final FieldFilter second) {
+    return new FieldFilter() {
+      public boolean accept(CharSequence field) {
+        return first.accept(field) && second.accept(field);
+      }
+    };
+  }
+
+  private static boolean startsWith(CharSequence field, String prefix) {
+    for (int i = 0; i < prefix.length(); i++) {
+      if (field.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number in the field, or NaN if it is not a number
+   */
+  static double toNumber(CharSequence field) {
+    int len = field.length();
+    int i = (len > 0 && (field.charAt(0) == '-' || field.charAt(0) == '+') ? 1 : 0);
+    if (len > i && len - i <= 18) {
+      // plain integers are by far the most common, so don't make a String of them
+      long n = 0;
+      int j = i;
+      for (; j < len; j++) {
+        char c = field.charAt(j);
+        if (c < '0' || c > '9') {
+          break;
+        }
+        n = n * 10 + (c - '0');
+      }
+      if (j == len) {
+        return (field.charAt(0) == '-' ? -n : n);
+      }
+    }
+    try {
+      return Double.parseDouble(field.toString());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+}
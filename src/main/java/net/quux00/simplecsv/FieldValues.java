@@ -0,0 +1,201 @@
+package net.quux00.simplecsv;
+
+/**
+ * Parses typed values straight out of a range of a char[], for the typed
+ * accessors of the records, without making a String of the field first.
+ * The numbers are read as their java.lang counterparts read them, except
+ * that only ASCII digits are digits, and anything else is a
+ * NumberFormatException.
+ */
+final class FieldValues {
+  private FieldValues() {}
+
+  // the powers of ten that are exact doubles
+  private static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  // the largest integer all smaller ones of which are exact doubles
+  private static final long MAX_EXACT = 1L << 53;
+
+  /**
+   * Same as Integer.parseInt on buf[from, to), for ASCII digits.
+   */
+  static int parseInt(char[] buf, int from, int to) {
+    long n = parseLong(buf, from, to);
+    if (n < Integer.MIN_VALUE || n > Integer.MAX_VALUE) {
+      throw invalid(buf, from, to);
+    }
+    return (int) n;
+  }
+
+  /**
+   * Same as Long.parseLong on buf[from, to), for ASCII digits.
+   */
+  static long parseLong(char[] buf, int from, int to) {
+    int i = from;
+    boolean negative = false;
+    if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+      negative = (buf[i] == '-');
+      i++;
+    }
+    if (i >= to) {
+      throw invalid(buf, from, to);
+    }
+    // accumulate negatively, as Long.MIN_VALUE has no positive counterpart
+    final long limit = (negative ? Long.MIN_VALUE : -Long.MAX_VALUE);
+    final long multmin = limit / 10;
+    long result = 0;
+    for (; i < to; i++) {
+      int digit = buf[i] - '0';
+      if (digit < 0 || digit > 9 || result < multmin) {
+        throw invalid(buf, from, to);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw invalid(buf, from, to);
+      }
+      result -= digit;
+    }
+    return (negative ? result : -result);
+  }
+
+  /**
+   * Same as Double.parseDouble on buf[from, to).  A plain decimal with at
+   * most 15 significant digits and a small enough exponent is converted with
+   * a single multiplication or division by an exact power of ten, which is
+   * correctly rounded (Clinger's fast path).  Anything else is handed to
+   * Double.parseDouble.
+   */
+  static double parseDouble(char[] buf, int from, int to) {
+    int i = from;
+    boolean negative = false;
+    if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+      negative = (buf[i] == '-');
+      i++;
+    }
+
+    long mantissa = 0;
+    int significant = 0;
+    int exp10 = 0;
+    int digits = 0;
+    boolean fraction = false;
+    for (; i < to; i++) {
+      char c = buf[i];
+      if (c >= '0' && c <= '9') {
+        digits++;
+        if (mantissa != 0 || c != '0') {
+          significant++;
+          mantissa = mantissa * 10 + (c - '0');
+          if (significant > 15) {
+            return slowParseDouble(buf, from, to);
+          }
+        }
+        if (fraction) {
+          exp10--;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0) {
+      return slowParseDouble(buf, from, to);
+    }
+
+    if (i < to && (buf[i] == 'e' || buf[i] == 'E')) {
+      i++;
+      boolean negativeExp = false;
+      if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+        negativeExp = (buf[i] == '-');
+        i++;
+      }
+      int exp = 0;
+      int expDigits = 0;
+      for (; i < to && buf[i] >= '0' && buf[i] <= '9' && expDigits < 4; i++, expDigits++) {
+        exp = exp * 10 + (buf[i] - '0');
+      }
+      if (expDigits == 0 || expDigits == 4) {
+        return slowParseDouble(buf, from, to);
+      }
+      exp10 += (negativeExp ? -exp : exp);
+    }
+    if (i < to || mantissa >= MAX_EXACT || exp10 < -22 || exp10 > 22) {
+      // trailing chars (such as a 'd' suffix or whitespace) or out of the fast path's range
+      return slowParseDouble(buf, from, to);
+    }
+
+    double value = (exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10]);
+    return (negative ? -value : value);
+  }
+
+  private static double slowParseDouble(char[] buf, int from, int to) {
+    return Double.parseDouble(new String(buf, from, to - from));
+  }
+
+  /**
+   * Same as Boolean.parseBoolean on buf[from, to): true if the chars are
+   * "true", ignoring case, and false otherwise.
+   */
+  static boolean parseBoolean(char[] buf, int from, int to) {
+    return to - from == 4 &&
+        (buf[from] | 0x20) == 't' && (buf[from + 1] | 0x20) == 'r' &&
+        (buf[from + 2] | 0x20) == 'u' && (buf[from + 3] | 0x20) == 'e';
+  }
+
+  /**
+   * Parses an ISO-8601 date, yyyy-MM-dd, in buf[from, to).
+   *
+   * @return the number of days since 1970-01-01
+   * @throws IllegalArgumentException if it is not a valid date in that format
+   */
+  static long parseEpochDay(char[] buf, int from, int to) {
+    if (to - from != 10 || buf[from + 4] != '-' || buf[from + 7] != '-') {
+      throw invalidDate(buf, from, to);
+    }
+    int year = digits(buf, from, from + 4);
+    int month = digits(buf, from + 5, from + 7);
+    int day = digits(buf, from + 8, from + 10);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      throw invalidDate(buf, from, to);
+    }
+    // days from civil, counting years from March so the leap day is last
+    int y = (month <= 2 ? year - 1 : year);
+    // floor division: y is -1 in January and February of year 0
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  // the value of the digits in buf[from, to), or -1 if there is a non-digit
+  private static int digits(char[] buf, int from, int to) {
+    int n = 0;
+    for (int i = from; i < to; i++) {
+      int digit = buf[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      n = n * 10 + digit;
+    }
+    return n;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    if (month == 2) {
+      boolean leap = (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0));
+      return (leap ? 29 : 28);
+    }
+    return (month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31);
+  }
+
+  private static NumberFormatException invalid(char[] buf, int from, int to) {
+    return new NumberFormatException("For input string: \"" + new String(buf, from, to - from) + "\"");
+  }
+
+  private static IllegalArgumentException invalidDate(char[] buf, int from, int to) {
+    return new IllegalArgumentException("Not an ISO-8601 date (yyyy-MM-dd): \"" + new String(buf, from, to - from) + "\"");
+  }
+}
@@ -0,0 +1,281 @@
+package net.quux00.simplecsv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The record returned by {@link CsvReader#readNextLazy()}.  Rather than
+ * making a token of every field, the SimpleCsvParser only indexes where each
+ * field starts and ends in the line's chars, which it leaves in place.  A
+ * field with no quote or escape chars that the options would not trim is
+ * just a slice of the line.  Any other field is decoded (outer quotes
+ * plucked, escapes handled and whitespace trimmed, as the options say) the
+ * first time it is asked for.  Fields that are never asked for only cost the
+ * scan for their boundaries.
+ *
+ * Like the CsvRecordView, the record is owned by the CsvReader and refilled
+ * for every record, so it and its fields are only valid until the next read.
+ * With a parser other than the SimpleCsvParser the fields are decoded up front.
+ *
+ * NotThreadSafe - owned by the CsvReader that fills it.
+ */
+public final class LazyCsvRecord {
+  // flags of a field in the index
+  static final int AS_IS = 0;
+  static final int NEEDS_DECODING = 1;
+
+  private SimpleCsvParser parser;
+  private char[] buf;
+  // field i is buf[index[3i], index[3i+1]) with flags index[3i+2]
+  private int[] index = new int[3 * 16];
+  private int size = 0;
+  // the fields decoded so far, by index
+  private String[] decoded = new String[16];
+  private Field[] fields = new Field[0];
+  // decoded fields are copied here for the typed accessors
+  private char[] scratch = new char[32];
+
+  LazyCsvRecord() {}
+
+  /**
+   * @return number of fields in the record
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the field, decoding it if it needs to be.  A field that is a
+   * slice of the line is only valid until the next read.
+   *
+   * @param i index of the field
+   * @return the field's chars
+   */
+  public CharSequence get(int i) {
+    checkIndex(i);
+    if (decoded[i] != null) {
+      return decoded[i];
+    }
+    if (index[3 * i + 2] == NEEDS_DECODING) {
+      return decode(i);
+    }
+    if (i >= fields.length) {
+      Field[] grown = new Field[Math.max(size, fields.length * 2)];
+      System.arraycopy(fields, 0, grown, 0, fields.length);
+      fields = grown;
+    }
+    if (fields[i] == null) {
+      fields[i] = new Field(i);
+    }
+    return fields[i];
+  }
+
+  /**
+   * @param i index of the field
+   * @return the field as a String, which stays valid
+   */
+  public String getString(int i) {
+    checkIndex(i);
+    if (decoded[i] != null) {
+      return decoded[i];
+    }
+    if (index[3 * i + 2] == NEEDS_DECODING) {
+      return decode(i);
+    }
+    return new String(buf, index[3 * i], index[3 * i + 1] - index[3 * i]);
+  }
+
+  /**
+   * Parses the field as an int.  A field that is a slice of the line is
+   * parsed in place, without decoding it to a String.
+   *
+   * @param i index of the field
+   * @return the field's value, as Integer.parseInt would read it
+   * @throws NumberFormatException if the field is not an int
+   */
+  public int getInt(int i) {
+    if (isSlice(i)) {
+      return FieldValues.parseInt(buf, index[3 * i], index[3 * i + 1]);
+    }
+    String s = getString(i);
+    return FieldValues.parseInt(copy(s), 0, s.length());
+  }
+
+  /**
+   * Parses the field as a long, in place if it is a slice of the line.
+   *
+   * @param i index of the field
+   * @return the field's value, as Long.parseLong would read it
+   * @throws NumberFormatException if the field is not a long
+   */
+  public long getLong(int i) {
+    if (isSlice(i)) {
+      return FieldValues.parseLong(buf, index[3 * i], index[3 * i + 1]);
+    }
+    String s = getString(i);
+    return FieldValues.parseLong(copy(s), 0, s.length());
+  }
+
+  /**
+   * Parses the field as a double, in place if it is a slice of the line.
+   * See {@link CsvRecord#getDouble(int)}.
+   *
+   * @param i index of the field
+   * @return the field's value, as Double.parseDouble would read it
+   * @throws NumberFormatException if the field is not a double
+   */
+  public double getDouble(int i) {
+    if (isSlice(i)) {
+      return FieldValues.parseDouble(buf, index[3 * i], index[3 * i + 1]);
+    }
+    String s = getString(i);
+    return FieldValues.parseDouble(copy(s), 0, s.length());
+  }
+
+  /**
+   * @param i index of the field
+   * @return whether the field is "true", ignoring case, as Boolean.parseBoolean would read it
+   */
+  public boolean getBoolean(int i) {
+    if (isSlice(i)) {
+      return FieldValues.parseBoolean(buf, index[3 * i], index[3 * i + 1]);
+    }
+    String s = getString(i);
+    return FieldValues.parseBoolean(copy(s), 0, s.length());
+  }
+
+  /**
+   * Parses the field as an ISO-8601 date, yyyy-MM-dd, in place if it is a
+   * slice of the line.  See {@link CsvRecord#getEpochDay(int)}.
+   *
+   * @param i index of the field
+   * @return the number of days from 1970-01-01 to the date
+   * @throws IllegalArgumentException if the field is not a valid yyyy-MM-dd date
+   */
+  public long getEpochDay(int i) {
+    if (isSlice(i)) {
+      return FieldValues.parseEpochDay(buf, index[3 * i], index[3 * i + 1]);
+    }
+    String s = getString(i);
+    return FieldValues.parseEpochDay(copy(s), 0, s.length());
+  }
+
+  /**
+   * @return all the fields, as CsvReader.readNext() would have returned them
+   */
+  public List<String> toList() {
+    List<String> toks = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      toks.add(getString(i));
+    }
+    return toks;
+  }
+
+  @Override
+  public String toString() {
+    return toList().toString();
+  }
+
+  private String decode(int i) {
+    decoded[i] = parser.decode(buf, index[3 * i], index[3 * i + 1]);
+    return decoded[i];
+  }
+
+  private boolean isSlice(int i) {
+    checkIndex(i);
+    return decoded[i] == null && index[3 * i + 2] == AS_IS;
+  }
+
+  private char[] copy(String s) {
+    if (s.length() > scratch.length) {
+      scratch = new char[Math.max(s.length(), scratch.length * 2)];
+    }
+    s.getChars(0, s.length(), scratch, 0);
+    return scratch;
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+
+  /* ---[ used by the CsvReader and parser ]--- */
+
+  /**
+   * Clears the record for the fields of a line in buf, to be decoded by the parser.
+   */
+  void reset(SimpleCsvParser parser, char[] buf) {
+    for (int i = 0; i < size; i++) {
+      decoded[i] = null;
+    }
+    this.parser = parser;
+    this.buf = buf;
+    size = 0;
+  }
+
+  void add(int start, int end, boolean asIs) {
+    ensureCapacity();
+    index[3 * size] = start;
+    index[3 * size + 1] = end;
+    index[3 * size + 2] = (asIs ? AS_IS : NEEDS_DECODING);
+    size++;
+  }
+
+  /**
+   * Adds a field that was already decoded by a parser that doesn't index.
+   */
+  void add(String tok) {
+    ensureCapacity();
+    index[3 * size + 2] = NEEDS_DECODING;
+    decoded[size++] = tok;
+  }
+
+  private void ensureCapacity() {
+    if (3 * (size + 1) > index.length) {
+      int[] grown = new int[index.length * 2];
+      System.arraycopy(index, 0, grown, 0, 3 * size);
+      index = grown;
+    }
+    if (size + 1 > decoded.length) {
+      String[] grown = new String[decoded.length * 2];
+      System.arraycopy(decoded, 0, grown, 0, size);
+      decoded = grown;
+    }
+  }
+
+  /**
+   * A field that is a slice of the line.  Field objects are reused from
+   * record to record, and always read the current state of the record.
+   */
+  final class Field implements CharSequence {
+    private final int i;
+
+    Field(int i) {
+      this.i = i;
+    }
+
+    public int length() {
+      return index[3 * i + 1] - index[3 * i];
+    }
+
+    public char charAt(int pos) {
+      if (pos < 0 || pos >= length()) {
+        throw new IndexOutOfBoundsException("Index: " + pos + ", Length: " + length());
+      }
+      return buf[index[3 * i] + pos];
+    }
+
+    public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > length() || start > end) {
+        throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", Length: " + length());
+      }
+      return new String(buf, index[3 * i] + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return new String(buf, index[3 * i], length());
+    }
+  }
+}
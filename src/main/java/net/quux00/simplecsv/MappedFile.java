@@ -0,0 +1,194 @@
+package net.quux00.simplecsv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A UTF-8 encoded file read through memory-mapped regions rather than read()
+ * calls, so repeatedly read files are served straight from the OS page cache.
+ *
+ * The file is mapped in sliding regions, so files larger than 2 GB can be
+ * read.  When a region is nearly used up, the next one is mapped starting at
+ * the first unconsumed byte, so a multi-byte char never straddles two regions.
+ * Records that straddle regions are handled by the block readers, which keep
+ * the partial record in their window across refills.
+ *
+ * As a ReadableByteChannel it is the byte source for the Utf8CsvParser; its
+ * {@link #newReader()} decodes directly from the mapped regions for the char
+ * based parsers.  The file is not opened until the first read.
+ *
+ * NotThreadSafe - like the CsvReader that owns it, use one per thread.
+ */
+final class MappedFile implements ReadableByteChannel {
+  static final long DEFAULT_REGION_SIZE = 64L * 1024 * 1024;
+  // longest UTF-8 sequence, and so the most bytes a decoder may need to see at once
+  static final int MAX_SEQUENCE_LENGTH = 4;
+
+  private final File file;
+  private final long regionSize;
+  private final long start;
+  private final long end;
+  private RandomAccessFile raf;
+  private FileChannel channel;
+  private long size;
+  private boolean closed = false;
+
+  // the current region, positioned at the next unconsumed byte
+  private MappedByteBuffer region;
+  private long regionStart = 0;
+
+  MappedFile(File file) {
+    this(file, DEFAULT_REGION_SIZE);
+  }
+
+  MappedFile(File file, long regionSize) {
+    this(file, 0, -1, regionSize);
+  }
+
+  /**
+   * Reads only bytes [start, end) of the file.
+   *
+   * @param end end of the range or -1 to read to the end of the file
+   */
+  MappedFile(File file, long start, long end, long regionSize) {
+    if (file == null) {
+      throw new IllegalArgumentException("File may not be null");
+    }
+    if (regionSize < MAX_SEQUENCE_LENGTH) {
+      throw new IllegalArgumentException("Region size must be at least " + MAX_SEQUENCE_LENGTH);
+    }
+    this.file = file;
+    this.regionSize = regionSize;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Returns the current region, first mapping the next one if fewer than
+   * MAX_SEQUENCE_LENGTH bytes are left in it and the file has more.
+   *
+   * @return the current region or null at EOF
+   */
+  private ByteBuffer region() throws IOException {
+    if (closed) {
+      throw new IOException("File closed");
+    }
+    if (channel == null) {
+      raf = new RandomAccessFile(file, "r");
+      channel = raf.getChannel();
+      size = (end < 0 ? channel.size() : Math.min(end, channel.size()));
+    }
+    if (region == null || region.remaining() < MAX_SEQUENCE_LENGTH) {
+      long next = (region == null ? start : regionStart + region.position());
+      if (region != null && next + region.remaining() >= size) {
+        // already mapped to EOF
+        return (region.hasRemaining() ? region : null);
+      }
+      if (next >= size) {
+        return null;
+      }
+      regionStart = next;
+      region = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(regionSize, size - next));
+    }
+    return region;
+  }
+
+  public int read(ByteBuffer dst) throws IOException {
+    ByteBuffer src = region();
+    if (src == null) {
+      return -1;
+    }
+    int n = Math.min(dst.remaining(), src.remaining());
+    if (n == src.remaining()) {
+      dst.put(src);
+    } else {
+      int oldLimit = src.limit();
+      src.limit(src.position() + n);
+      dst.put(src);
+      src.limit(oldLimit);
+    }
+    return n;
+  }
+
+  /**
+   * @return a Reader that decodes the file as UTF-8 straight from the mapped
+   *         regions, without copying the bytes first.  Malformed input is
+   *         replaced with U+FFFD, as an InputStreamReader would do.
+   */
+  Reader newReader() {
+    final CharsetDecoder decoder = ByteBlockReader.UTF8.newDecoder().
+        onMalformedInput(CodingErrorAction.REPLACE).
+        onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    return new Reader() {
+      private boolean flushed = false;
+      // low surrogate left over when a read only had room for the high one
+      private final CharBuffer pending = CharBuffer.allocate(2);
+
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        if (pending.position() > 0) {
+          pending.flip();
+          out.put(pending.get());
+          pending.clear();
+          return 1;
+        }
+        while (out.position() == off && !flushed) {
+          ByteBuffer in = region();
+          if (in == null) {
+            // EOF - let the decoder report any bytes left dangling at the end
+            decoder.decode(ByteBuffer.allocate(0), out, true);
+            if (decoder.flush(out).isUnderflow()) {
+              flushed = true;
+            }
+          } else {
+            CoderResult cr = decoder.decode(in, out, false);
+            if (cr.isOverflow() && out.position() == off) {
+              // no room for both chars of a surrogate pair
+              decoder.decode(in, pending, false);
+              pending.flip();
+              out.put(pending.get());
+              pending.compact();
+            } else if (cr.isUnderflow() && in.hasRemaining() && out.position() == off) {
+              // an incomplete sequence at the end of the file
+              decoder.decode(in, out, true);
+            }
+          }
+        }
+        int n = out.position() - off;
+        return (n == 0 ? -1 : n);
+      }
+
+      @Override
+      public void close() throws IOException {
+        MappedFile.this.close();
+      }
+    };
+  }
+
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  public void close() throws IOException {
+    closed = true;
+    region = null;
+    if (raf != null) {
+      raf.close();
+    }
+  }
+}
@@ -33,8 +33,11 @@ import java.util.List;
  * - turn on alwaysAllowDoubleEscapedQuotes (follows RFC4180 for allowing quotes to be escaped with quotes)
  *
  * This parser is ThreadSafe - Use the same CsvParser in as many threads as you want.
+ * Its scratch buffers are held per thread, and when reading through a CsvReader
+ * the parser scans the reader's block-buffered char[] window directly, so all
+ * mutable state belongs to either the calling thread or its Reader.
  */
-public class MultiLineCsvParser implements CsvParser {
+public class MultiLineCsvParser implements CsvParser, RecordParser {
 
   final char separator;
   final char quotechar;
@@ -46,11 +49,25 @@ public class MultiLineCsvParser implements CsvParser {
   final boolean retainEscapeChars;        // if true, leaves escape chars in; if false removes them
   final boolean alwaysQuoteOutput;        // if true, put quote around around all outgoing tokens
   final boolean rfc4180quotes;  // if true, allows quotes to exist within a quoted field as long as they are doubled
+  final CharClasses classes;
+  Projection projection;        // the columns to materialize, or null for all of them
+  FieldFilter[] filters;        // the filters on the columns by index, or null
+  boolean[] deduplicated;       // the columns whose Strings are deduplicated by index, or null
 
   static final int INITIAL_READ_SIZE = 128;
 
   private static final boolean debug = false;
 
+  // per-thread scratch structures, reused across records to keep the parser thread safe
+  final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      Scratch scr = new Scratch();
+      scr.state.caches = StringCache.forColumns(deduplicated);
+      return scr;
+    }
+  };
+
   public MultiLineCsvParser() {
     separator = ParserUtil.DEFAULT_SEPARATOR;
     quotechar = ParserUtil.DEFAULT_QUOTE_CHAR;
@@ -62,6 +79,7 @@ public class MultiLineCsvParser implements CsvParser {
     retainEscapeChars = ParserUtil.DEFAULT_RETAIN_ESCAPE_CHARS;
     alwaysQuoteOutput = ParserUtil.DEFAULT_ALWAYS_QUOTE_OUTPUT;
     rfc4180quotes = ParserUtil.DEFAULT_ALLOW_RFC4180_DOUBLED_ESCAPED_QUOTES;
+    classes = new CharClasses(separator, quotechar, escapechar);
   }
 
   /**
@@ -96,6 +114,7 @@ public class MultiLineCsvParser implements CsvParser {
     this.rfc4180quotes = allowsDoubledEscapedQuotes;
 
     checkInvariants();
+    classes = new CharClasses(separator, quotechar, escapechar);
   }
 
   private void checkInvariants() {
@@ -115,6 +134,9 @@ public class MultiLineCsvParser implements CsvParser {
 
     boolean inQuotes = false;
     boolean inEscape = false;
+    int column = 0;  // index of the current token
+    boolean rejected = false;  // a field was not accepted by its filter
+    StringCache[] caches;      // this thread's caches of the deduplicated columns, or null
 
     public void quoteFound() {
       if (!inEscape) {
@@ -131,7 +153,22 @@ public class MultiLineCsvParser implements CsvParser {
     }
 
     public void reset() {
-      inQuotes = inEscape = false;
+      inQuotes = inEscape = rejected = false;
+      column = 0;
+    }
+  }
+
+  // mutable buffers used while parsing a single record
+  static final class Scratch {
+    final StringBuilder sb = new StringBuilder(INITIAL_READ_SIZE);
+    final State state = new State();
+    int width = 10;  // number of tokens in the last record, used to size the next token list
+    int rejected = 0;  // number of records the filters rejected in the last parseNext
+
+    State reset() {
+      sb.setLength(0);
+      state.reset();
+      return state;
     }
   }
 
@@ -142,7 +179,8 @@ public class MultiLineCsvParser implements CsvParser {
    * "real" or part of a quoted string.
    * 
    * @param s String to parser
-   * @return parsed tokens from the delimited string as List<String>
+   * @return parsed tokens from the delimited string as List<String>, or null
+   *         if the filters don't accept it
    */
   @Override
   public List<String> parse(String s) {
@@ -150,7 +188,8 @@ public class MultiLineCsvParser implements CsvParser {
       return Collections.emptyList();
     }
     try {
-      return parseNext(new StringReader(s));
+      // size the block to hold the whole string so it is read in one fill
+      return parseNext(new CharBlockReader(new StringReader(s), s.length() + 1));
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
@@ -162,21 +201,160 @@ public class MultiLineCsvParser implements CsvParser {
    * returned will contain them and the parser will continue to look for the
    * real record ending. 
    *
+   * When given the block-buffered reader used by the CsvReader, the parser scans
+   * its char[] window in bulk, refilling it as needed, rather than calling 
+   * Reader.read() once per character.
+   *
+   * If filters are set, the records they don't accept are skipped.
+   *
    * @param reader the Reader get our data from
    * @return parsed tokens as List of Strings
    * @throws java.io.IOException
    */
   public List<String> parseNext(Reader reader) throws IOException {
+    final List<String> toks = new ArrayList<String>(scratch.get().width);
+    return (parseAccepted(reader, toks, null) ? toks : null);
+  }
+
+  /**
+   * Same as {@link #parseNext(Reader)}, but the tokens are copied into the
+   * reusable CsvRecord rather than into new Strings.
+   *
+   * @param reader the Reader get our data from
+   * @param record the record to parse into, replacing its previous contents
+   * @return false if there are no more records
+   * @throws java.io.IOException
+   */
+  public boolean parseNext(Reader reader, CsvRecord record) throws IOException {
+    record.clear();
+    return parseAccepted(reader, null, record);
+  }
+
+  /**
+   * Moves the reader past the next record without making tokens of it.
+   * Over the CharBlockReader the CsvReader uses, only the quote and escape
+   * part of the state machine runs, over runs of plain chars skipped with
+   * the CharClasses tables, to find the line ending that ends the record.
+   * A quoted field left open at the end of the input is still an error
+   * unless unbalanced quotes are allowed.
+   *
+   * @param reader the Reader to get our data from
+   * @return false if there are no more records
+   */
+  public boolean skipNext(Reader reader) throws IOException {
+    if (!(reader instanceof CharBlockReader)) {
+      return parseRecord(reader, new ArrayList<String>(), null);
+    }
+    CharBlockReader cbr = (CharBlockReader) reader;
+    if (cbr.pos >= cbr.limit && !cbr.fill()) {
+      return false;
+    }
+    boolean inQuotes = false;
+    boolean inEscape = false;
+    while (true) {
+      final char[] buf = cbr.buf;
+      final int limit = cbr.limit;
+      int i = cbr.pos;
+      while (i < limit) {
+        int end = classes.skipPlain(buf, i, limit, inQuotes);
+        if (end > i && (!strictQuotes || inQuotes)) {
+          // a regular char ends any escape
+          inEscape = false;
+        }
+        if (end >= limit) {
+          break;
+        }
+        switch (classes.classOf(buf[end])) {
+          case CharClasses.QUOTE:
+            // a doubled RFC4180 quote toggles out and back in
+            if (!inEscape) {
+              inQuotes = !inQuotes;
+            }
+            inEscape = false;
+            break;
+
+          case CharClasses.ESCAPE:
+            inEscape = !inEscape;
+            break;
+
+          case CharClasses.LF:
+            // only stopped at outside of quotes
+            cbr.pos = end + 1;
+            return true;
+
+          case CharClasses.SEPARATOR:
+            inEscape = false;
+            break;
+
+          default:
+            // a CR is a regular char; the LF of a CRLF ends the record
+            if (!strictQuotes || inQuotes) {
+              inEscape = false;
+            }
+        }
+        i = end + 1;
+      }
+      cbr.pos = limit;
+      if (!cbr.fill()) {
+        if (inQuotes && !allowedUnbalancedQuotes) {
+          throw new IllegalArgumentException("Un-terminated quoted field at end of CSV record");
+        }
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @return number of records the filters rejected in this thread's last parseNext
+   */
+  public int rejected() {
+    return scratch.get().rejected;
+  }
+
+  /**
+   * Parses records until one is accepted by the filters.
+   *
+   * @return false if there are no more records
+   */
+  private boolean parseAccepted(Reader reader, List<String> toks, CsvRecord record) throws IOException {
+    final Scratch scr = scratch.get();
+    scr.rejected = 0;
+    if (filters == null) {
+      return parseRecord(reader, toks, record);
+    }
+    while (parseRecord(reader, toks, record)) {
+      if (accepted(scr.state)) {
+        return true;
+      }
+      scr.rejected++;
+      if (record == null) {
+        toks.clear();
+      } else {
+        record.clear();
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses the next record into the record, or into toks if the record is null.
+   *
+   * @return false if there are no more records
+   */
+  boolean parseRecord(Reader reader, List<String> toks, CsvRecord record) throws IOException {
+    if (reader instanceof CharBlockReader) {
+      return parseBlock((CharBlockReader) reader, toks, record);
+    }
 
     // check eof first
     int r = reader.read();
     if (r == -1) {
-      return null;
+      return false;
     }
 
-    final StringBuilder sb = new StringBuilder(INITIAL_READ_SIZE);
-    final List<String> toks = new ArrayList<String>();
-    final State state = new State();
+    final Scratch scr = scratch.get();
+    final StringBuilder sb = scr.sb;
+    final State state = scr.reset();
 
     decide:
       while (r != -1) {
@@ -207,7 +385,7 @@ public class MultiLineCsvParser implements CsvParser {
         } else if (!state.inQuotes) {
           
           if(r == separator) {
-            toks.add(handleEndOfToken(state, sb));
+            endOfToken(state, sb, toks, record);
           
           } else if (r == '\n') {
             // END OF RECORD
@@ -237,8 +415,209 @@ public class MultiLineCsvParser implements CsvParser {
       throw new IllegalArgumentException("Un-terminated quoted field at end of CSV record");
     }
 
-    toks.add(handleEndOfToken(state, sb));
-    return toks;
+    endOfToken(state, sb, toks, record);
+    scr.width = (record == null ? toks.size() : record.size());
+    return true;
+  }
+
+  /**
+   * Same state machine as the per-character loop in parseNext, but reading
+   * straight out of the CharBlockReader's window.  The window is only refilled
+   * when exhausted (including for one char of lookahead after a CR or a quote),
+   * and the quote/escape State lives across refills, so records and quoted
+   * fields may straddle block boundaries.
+   */
+  private boolean parseBlock(CharBlockReader cbr, List<String> toks, CsvRecord record) throws IOException {
+    // check eof first
+    if (cbr.pos >= cbr.limit && !cbr.fill()) {
+      return false;
+    }
+
+    final Scratch scr = scratch.get();
+    final StringBuilder sb = scr.sb;
+    final State state = scr.reset();
+    // trim() leaves a field with no quotes or escapes as is with these options
+    final boolean plainAsIs = !strictQuotes && !trimWhiteSpace && !alwaysQuoteOutput;
+
+    char[] buf = cbr.buf;
+    int i = cbr.pos;
+    int limit = cbr.limit;
+    i = startOfToken(buf, i, limit, plainAsIs, state, sb, toks, record);
+
+    decide:
+      while (true) {
+        if (i >= limit) {
+          // a refill compacts the window, so always re-read the indexes
+          cbr.pos = i;
+          boolean more = cbr.fill();
+          buf = cbr.buf;
+          i = cbr.pos;
+          limit = cbr.limit;
+          if (!more) {
+            break decide;
+          }
+        }
+        char c = buf[i++];
+        byte charClass = classes.classOf(c);
+
+        if (charClass == CharClasses.QUOTE) {
+          if (rfc4180quotes && !state.inEscape && state.inQuotes) {
+            // look ahead one char for a doubled quote
+            if (i >= limit) {
+              cbr.pos = i;
+              cbr.fill();
+              buf = cbr.buf;
+              i = cbr.pos;
+              limit = cbr.limit;
+            }
+            if (i < limit && isQuoteChar(buf[i])) {
+              sb.append(buf[i++]);
+            } else {
+              handleQuote(state, sb);
+            }
+          } else {
+            handleQuote(state, sb);
+          }
+        } else if (charClass == CharClasses.ESCAPE) {
+          handleEscape(state, sb);
+
+        } else if (!state.inQuotes && charClass != CharClasses.REGULAR) {
+
+          if (charClass == CharClasses.SEPARATOR) {
+            endOfToken(state, sb, toks, record);
+            i = startOfToken(buf, i, limit, plainAsIs, state, sb, toks, record);
+
+          } else if (charClass == CharClasses.LF) {
+            // END OF RECORD
+            break decide;
+
+          } else {
+            // look ahead one char for the LF of a CRLF
+            if (i >= limit) {
+              cbr.pos = i;
+              cbr.fill();
+              buf = cbr.buf;
+              i = cbr.pos;
+              limit = cbr.limit;
+            }
+            if (i < limit && buf[i] == '\n') {
+              // END OF RECORD
+              i++;
+              break decide;
+            } else {
+              handleRegular(state, sb, '\r');
+            }
+          }
+        } else {
+          handleRegular(state, sb, c);
+          // the chars up to the next special one can be handled all at once:
+          // the escape, if any, only applied to c
+          int end = classes.skipPlain(buf, i, limit, state.inQuotes);
+          if (!strictQuotes || state.inQuotes) {
+            sb.append(buf, i, end - i);
+          }
+          i = end;
+        }
+      }
+    cbr.pos = i;
+
+    // done parsing the line
+    if (state.inQuotes && !allowedUnbalancedQuotes) {
+      throw new IllegalArgumentException("Un-terminated quoted field at end of CSV record");
+    }
+
+    endOfToken(state, sb, toks, record);
+    scr.width = (record == null ? toks.size() : record.size());
+    return true;
+  }
+
+
+  /**
+   * Called at the start of each token.  Skips over the fields that are not
+   * projected or filtered and the rest of a rejected record and, while
+   * plainAsIs, takes projected fields without quote or escape
+   * chars up to a separator straight from buf rather than char by char
+   * through sb.  The plain start of the first field that is neither is
+   * appended to sb.  A field that reaches the end of the window is left to
+   * parseBlock to finish once the window is refilled.
+   *
+   * @return index of the first char after the skipped and plain fields
+   */
+  private int startOfToken(char[] buf, int i, int limit, boolean plainAsIs,
+      State state, StringBuilder sb, List<String> toks, CsvRecord record) {
+    while (true) {
+      if (!wanted(state)) {
+        int end = skipField(state, buf, i, limit);
+        if (end >= limit || classes.classOf(buf[end]) != CharClasses.SEPARATOR) {
+          // the end of the record or of the window
+          return end;
+        }
+        state.column++;
+        i = end + 1;
+
+      } else if (plainAsIs && (projection == null || projection.includes(state.column))) {
+        int end = classes.skipPlain(buf, i, limit, false);
+        if (end < limit && classes.classOf(buf[end]) == CharClasses.SEPARATOR) {
+          if (record == null) {
+            StringCache cache = cacheOf(state);
+            toks.add(cache == null ? new String(buf, i, end - i) : cache.get(buf, i, end));
+          } else {
+            record.add(buf, i, end);
+          }
+          filterLast(state, toks, record);
+          state.column++;
+          i = end + 1;
+        } else {
+          sb.append(buf, i, end - i);
+          return end;
+        }
+
+      } else {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Runs the quote and escape part of the state machine over a field that is
+   * not projected, which is all it takes to find where the field ends.  A
+   * doubled RFC4180 quote toggles the quote state twice, leaving it as is.
+   *
+   * @return index of the separator, CR or LF outside of quotes that ends the
+   *         field, or limit
+   */
+  private int skipField(State state, char[] buf, int i, int limit) {
+    while (true) {
+      int end = classes.skipPlain(buf, i, limit, state.inQuotes);
+      if (end > i && (!strictQuotes || state.inQuotes)) {
+        // a regular char ends any escape
+        state.escapeFound(false);
+      }
+      if (end >= limit) {
+        return limit;
+      }
+
+      switch (classes.classOf(buf[end])) {
+        case CharClasses.QUOTE:
+          state.quoteFound();
+          state.escapeFound(false);
+          break;
+
+        case CharClasses.ESCAPE:
+          state.escapeFound(true);
+          break;
+
+        case CharClasses.SEPARATOR:
+          // only stopped at outside of quotes
+          state.escapeFound(false);
+          return end;
+
+        default:
+          // a CR or LF outside of quotes: whether it ends the record is up to parseBlock
+          return end;
+      }
+      i = end + 1;
+    }
   }
 
 
@@ -257,14 +636,88 @@ public class MultiLineCsvParser implements CsvParser {
     return c == quotechar && quotechar != ParserUtil.NULL_CHARACTER;
   }
 
-  String handleEndOfToken(State state, StringBuilder sb) {
+  void endOfToken(State state, StringBuilder sb, List<String> toks, CsvRecord record) {
+    if (!state.rejected && (projection == null || projection.includes(state.column))) {
+      String tok = handleEndOfToken(state, sb, record);
+      if (record == null) {
+        toks.add(tok);
+      }
+      filterLast(state, toks, record);
+    } else if (!state.rejected && filterOf(state.column) != null) {
+      // not projected, only parsed to be filtered
+      if (!filterOf(state.column).accept(handleEndOfToken(state, sb, null))) {
+        state.rejected = true;
+      }
+    } else {
+      // a field that is not projected or of a rejected record: drop whatever of it was parsed
+      state.escapeFound(false);
+      sb.setLength(0);
+    }
+    state.column++;
+  }
+
+  /**
+   * @return whether the current field is parsed, rather than only skipped over
+   */
+  boolean wanted(State state) {
+    return !state.rejected &&
+        (projection == null || projection.includes(state.column) || filterOf(state.column) != null);
+  }
+
+  /**
+   * @return the cache of the current column if it is deduplicated, or null
+   */
+  StringCache cacheOf(State state) {
+    final StringCache[] caches = state.caches;
+    return (caches == null || state.column >= caches.length ? null : caches[state.column]);
+  }
+
+  /**
+   * @return the filter on the column, or null
+   */
+  private FieldFilter filterOf(int column) {
+    if (filters == null || column >= filters.length || (projection != null && !projection.isResolved())) {
+      return null;
+    }
+    return filters[column];
+  }
+
+  /**
+   * @return whether the filters accept the record just parsed.  A record
+   *         without a filtered column is not accepted.
+   */
+  boolean accepted(State state) {
+    if (state.rejected) {
+      return false;
+    }
+    for (int col = state.column; filters != null && col < filters.length; col++) {
+      if (filterOf(col) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rejects the record if the token just added for the current column is not
+   * accepted by the column's filter.
+   */
+  void filterLast(State state, List<String> toks, CsvRecord record) {
+    FieldFilter filter = filterOf(state.column);
+    if (filter != null &&
+        !filter.accept(record == null ? toks.get(toks.size() - 1) : record.get(record.size() - 1))) {
+      state.rejected = true;
+    }
+  }
+
+  String handleEndOfToken(State state, StringBuilder sb, CsvRecord record) {
     // in strictQuotes mode you don't know when to add the last seen
     // quote until the token is done; if the buffer has any characters
     // then you know a first quote was seen, so add the closing quote
     if (strictQuotes && sb.length() > 0) {
       sb.append(quotechar);
     }
-    String tok = trim(sb);
+    String tok = trim(sb, record, cacheOf(state));
     state.escapeFound(false);
     sb.setLength(0);
     return tok;
@@ -345,6 +798,15 @@ public class MultiLineCsvParser implements CsvParser {
   }
 
   String trim(StringBuilder sb) {
+    return trim(sb, null, null);
+  }
+
+  /**
+   * Trims the token in sb as the options require.  If record is not null the
+   * token is added to it rather than returned as a new String, and if cache
+   * is not null the String is the cached one for the token's chars.
+   */
+  String trim(StringBuilder sb, CsvRecord record, StringCache cache) {
     int left = 0;
     int right = sb.length() - 1;
 
@@ -354,7 +816,12 @@ public class MultiLineCsvParser implements CsvParser {
         left = indexes[0];
         right = indexes[1];
       }
-      return ParserUtil.ensureQuoted(sb, left, right, quotechar);
+      String tok = ParserUtil.ensureQuoted(sb, left, right, quotechar);
+      if (record != null) {
+        record.add(tok);
+        return null;
+      }
+      return (cache == null ? tok : cache.get(tok, 0, tok.length()));
 
     } else {
       if (!retainOuterQuotes) {
@@ -381,7 +848,11 @@ public class MultiLineCsvParser implements CsvParser {
         left = indexes[0];
         right = indexes[1];
       }
-      return sb.substring(left, right + 1);
+      if (record != null) {
+        record.add(sb, left, right + 1);
+        return null;
+      }
+      return (cache == null ? sb.substring(left, right + 1) : cache.get(sb, left, right + 1));
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,437 @@
+package net.quux00.simplecsv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads a single large UTF-8 encoded CSV file with all cores.
+ *
+ * The file is split into byte ranges (chunks) and the record boundary near
+ * each split point is found by scanning forward for the first line ending.
+ * With the SimpleCsvParser dialect every line ending ends a record, so only
+ * a few bytes after the split need to be looked at.
+ *
+ * With the multi-line dialect, whether a newline ends a record depends on the
+ * quote state, which depends on everything before it.  So each chunk is first
+ * scanned speculatively from every possible starting state (in or out of
+ * quotes, and in or out of an escape if there is an escape char), recording
+ * the first record boundary and the state at the end of the chunk for each.
+ * The scans run in parallel.  Then, starting from the known state at the top
+ * of the file, the scans are chained together in order to pick the right
+ * speculation for each chunk.
+ *
+ * The resolved ranges are then parsed on a thread pool, each with its own
+ * parser from the CsvParserBuilder, and the records are handed back through
+ * readNext() either in file order or in whichever order the chunks finish.
+ * Only a bounded number of chunks are in flight at once.
+ *
+ * The separator, quote and escape chars must be ASCII.
+ *
+ * NotThreadSafe - readNext should be called from one thread.
+ */
+public class ParallelCsvReader implements Closeable {
+  public static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+  // a chunk is mapped with one byte to look ahead after a CR, and a mapping
+  // is indexed with an int
+  public static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE - 1;
+
+  // scan states, as an index into the speculative results
+  static final int IN_QUOTES = 1;
+  static final int IN_ESCAPE = 2;
+
+  private final File file;
+  private final CsvParserBuilder parserBuilder;
+  private final boolean multiLine;
+  // the header, read first when the columns are projected by name
+  private List<String> header;
+  private final boolean ordered;
+  private final long chunkSize;
+  private final int maxInFlight;
+  private final ExecutorService executor;
+  private final CompletionService<List<List<String>>> completion;
+
+  // chunk scanning - started on the first read
+  private RandomAccessFile raf;
+  private FileChannel channel;
+  private long size;
+  private int numChunks;
+  private List<Future<ChunkScan>> scans;
+
+  // range resolution: the next range starts at rangeStart (-1 when all ranges
+  // are handed out) and state is the true scan state at the start of chunkIdx
+  private long rangeStart = 0;
+  private int chunkIdx;
+  private int state;
+
+  // parsing
+  private final LinkedList<Future<List<List<String>>>> pending = new LinkedList<Future<List<List<String>>>>();
+  private int inFlight = 0;
+  private Iterator<List<String>> current = Collections.<List<String>>emptyList().iterator();
+
+  /**
+   * Constructs a ParallelCsvReader that uses one thread per core and returns
+   * the records in file order.
+   *
+   * @param file          the UTF-8 encoded file to read
+   * @param parserBuilder builds the parser for each chunk
+   */
+  public ParallelCsvReader(File file, CsvParserBuilder parserBuilder) {
+    this(file, parserBuilder, Runtime.getRuntime().availableProcessors(), true);
+  }
+
+  /**
+   * @param file          the UTF-8 encoded file to read
+   * @param parserBuilder builds the parser for each chunk
+   * @param threads       number of threads to parse with
+   * @param ordered       if true, records are returned in file order,
+   *                      otherwise chunk by chunk as they are parsed
+   */
+  public ParallelCsvReader(File file, CsvParserBuilder parserBuilder, int threads, boolean ordered) {
+    this(file, parserBuilder, threads, ordered, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param file          the UTF-8 encoded file to read
+   * @param parserBuilder builds the parser for each chunk
+   * @param threads       number of threads to parse with
+   * @param ordered       if true, records are returned in file order,
+   *                      otherwise chunk by chunk as they are parsed
+   * @param chunkSize     number of bytes to split the file into for each thread to parse,
+   *                      at most MAX_CHUNK_SIZE
+   */
+  public ParallelCsvReader(File file, CsvParserBuilder parserBuilder, int threads, boolean ordered, long chunkSize) {
+    if (file == null) {
+      throw new IllegalArgumentException("File may not be null");
+    }
+    if (threads <= 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException("threads and chunkSize must be greater than zero");
+    }
+    if (chunkSize > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException("chunkSize may not be greater than " + MAX_CHUNK_SIZE);
+    }
+    CharClasses.requireAscii(parserBuilder.separator, parserBuilder.quoteChar, parserBuilder.escapeChar);
+    this.file = file;
+    this.parserBuilder = parserBuilder;
+    this.multiLine = (parserBuilder.build() instanceof MultiLineCsvParser);
+    this.ordered = ordered;
+    this.chunkSize = chunkSize;
+    this.maxInFlight = threads * 2;
+    this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "simplecsv-parallel");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    this.completion = (ordered ? null : new ExecutorCompletionService<List<List<String>>>(executor));
+  }
+
+  /**
+   * Reads the entire file into a List with each element being a
+   * List<String> of tokens.
+   *
+   * @return a List of List<String>, with each List<String> representing a record
+   * @throws IOException if bad things happen during the read
+   */
+  public List<List<String>> readAll() throws IOException {
+    List<List<String>> allElements = new ArrayList<List<String>>();
+    List<String> next;
+    while ((next = readNext()) != null) {
+      allElements.add(next);
+    }
+    return allElements;
+  }
+
+  /**
+   * Returns the next record, in file order unless this reader was constructed
+   * unordered.
+   *
+   * @return the next record or null if there are no more
+   * @throws IOException if bad things happen during the read
+   */
+  public List<String> readNext() throws IOException {
+    while (!current.hasNext()) {
+      List<List<String>> records = nextChunk();
+      if (records == null) {
+        return null;
+      }
+      current = records.iterator();
+    }
+    return current.next();
+  }
+
+  private List<List<String>> nextChunk() throws IOException {
+    if (scans == null) {
+      startScans();
+    }
+    long[] range;
+    while (inFlight < maxInFlight && (range = nextRange()) != null) {
+      if (ordered) {
+        // not through the completion service, whose queue would keep every parsed chunk
+        pending.add(executor.submit(new ParseTask(range[0], range[1])));
+      } else {
+        completion.submit(new ParseTask(range[0], range[1]));
+      }
+      inFlight++;
+    }
+    if (inFlight == 0) {
+      return null;
+    }
+    inFlight--;
+    try {
+      return (ordered ? pending.removeFirst() : completion.take()).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a chunk to be parsed");
+    } catch (ExecutionException e) {
+      throw rethrow(e);
+    }
+  }
+
+  private void startScans() throws IOException {
+    readHeader();
+    raf = new RandomAccessFile(file, "r");
+    channel = raf.getChannel();
+    size = channel.size();
+    numChunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+    scans = new ArrayList<Future<ChunkScan>>(numChunks);
+    submitScans(1);
+
+    // the top of the file is a record boundary and out of quotes
+    chunkIdx = 0;
+    state = 0;
+    resolve();
+  }
+
+  /**
+   * When the columns are projected by name, reads the header for every
+   * chunk's parser to resolve the names against.
+   */
+  private void readHeader() throws IOException {
+    CsvParser parser = parserBuilder.build();
+    Projection projection = Projection.of(parser);
+    if (projection == null || projection.isResolved()) {
+      return;
+    }
+    // the projection is not resolved yet, so the header is parsed in full
+    MappedFile mapped = new MappedFile(file);
+    Reader source = (parser instanceof Utf8CsvParser ? new ByteBlockReader(mapped) : new CharBlockReader(mapped.newReader()));
+    try {
+      header = parser.parseNext(source);
+    } finally {
+      source.close();
+    }
+  }
+
+  private void submitScans(int upToChunk) {
+    for (int i = scans.size(); i < Math.min(upToChunk, numChunks); i++) {
+      long from = i * chunkSize;
+      scans.add(executor.submit(new ScanTask(from, Math.min(from + chunkSize, size))));
+    }
+  }
+
+  /**
+   * Chains the scan of the next chunk onto the true state at its start.
+   *
+   * @return the first record boundary in the chunk or -1 if there is none
+   */
+  private long resolve() throws IOException {
+    // keep the scans ahead of the parsing
+    submitScans(chunkIdx + maxInFlight + 1);
+    try {
+      ChunkScan scan = scans.get(chunkIdx).get();
+      scans.set(chunkIdx, null);
+      chunkIdx++;
+      long boundary = scan.firstBoundary[state];
+      state = scan.endState[state];
+      return boundary;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a chunk to be scanned");
+    } catch (ExecutionException e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Resolves the byte range of the next run of whole records.  The range
+   * starting at rangeStart ends at the first record boundary found in a
+   * later chunk, so a chunk without any boundary (e.g., all inside one long
+   * quoted field) is folded into the previous range.
+   *
+   * @return {start, end} or null if the whole file has been handed out
+   */
+  private long[] nextRange() throws IOException {
+    if (rangeStart < 0) {
+      return null;
+    }
+    while (chunkIdx < numChunks) {
+      long boundary = resolve();
+      if (boundary >= 0 && boundary < size) {
+        long[] range = {rangeStart, boundary};
+        rangeStart = boundary;
+        return range;
+      }
+    }
+    long[] range = {rangeStart, size};
+    rangeStart = -1;
+    return (range[0] < range[1] ? range : null);
+  }
+
+  private IOException rethrow(ExecutionException e) throws IOException {
+    Throwable cause = e.getCause();
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IOException(cause.toString());
+  }
+
+  /**
+   * Stops the parsing threads and closes the file.
+   */
+  public void close() throws IOException {
+    executor.shutdownNow();
+    if (raf != null) {
+      raf.close();
+    }
+  }
+
+
+  /* --------------------------------- */
+  /* ---[ internal helper classes ]--- */
+  /* --------------------------------- */
+
+  /**
+   * Speculative scan results, indexed by the state assumed at the start of the chunk.
+   */
+  static final class ChunkScan {
+    final long[] firstBoundary = {-1, -1, -1, -1};
+    final int[] endState = new int[4];
+  }
+
+  /**
+   * Runs just the quote/escape/newline part of the parser's state machine over
+   * a chunk.  With the simple dialect, the first line ending is all that is needed.
+   */
+  final class ScanTask implements Callable<ChunkScan> {
+    final long from;
+    final long to;
+
+    ScanTask(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public ChunkScan call() throws IOException {
+      ChunkScan scan = new ChunkScan();
+      // map one extra byte to look ahead after a CR
+      MappedByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(to + 1, size) - from);
+      int n = (int) (to - from);
+
+      if (!multiLine) {
+        for (int i = 0; i < n; i++) {
+          byte b = bb.get(i);
+          if (b == '\n' || (b == '\r' && (i + 1 >= bb.limit() || bb.get(i + 1) != '\n'))) {
+            scan.firstBoundary[0] = from + i + 1;
+            break;
+          }
+        }
+        return scan;
+      }
+
+      int hypotheses = (parserBuilder.escapeChar == ParserUtil.NULL_CHARACTER ? 2 : 4);
+      for (int h = 0; h < hypotheses; h++) {
+        scanMultiLine(bb, n, h, scan);
+      }
+      return scan;
+    }
+
+    // mirrors the state changes of MultiLineCsvParser.parseNext
+    private void scanMultiLine(MappedByteBuffer bb, int n, int startState, ChunkScan scan) {
+      final char quotechar = parserBuilder.quoteChar;
+      final char escapechar = parserBuilder.escapeChar;
+      final char separator = parserBuilder.separator;
+      final boolean strictQuotes = parserBuilder.strictQuotes;
+      boolean inQuotes = (startState & IN_QUOTES) != 0;
+      boolean inEscape = (startState & IN_ESCAPE) != 0;
+      long first = -1;
+
+      for (int i = 0; i < n; i++) {
+        byte b = bb.get(i);
+        if (b == quotechar && quotechar != ParserUtil.NULL_CHARACTER) {
+          // RFC4180 doubled quotes toggle out and back in, so need no special case
+          if (!inEscape) {
+            inQuotes = !inQuotes;
+          }
+          inEscape = false;
+        } else if (b == escapechar && escapechar != ParserUtil.NULL_CHARACTER) {
+          inEscape = !inEscape;
+        } else if (inQuotes) {
+          inEscape = false;
+        } else if (b == '\n') {
+          if (first < 0) {
+            first = from + i + 1;
+          }
+          inEscape = false;
+        } else if (b == '\r' && i + 1 < bb.limit() && bb.get(i + 1) == '\n') {
+          // part of a CRLF - the LF ends the record
+        } else if (b == separator || !strictQuotes) {
+          inEscape = false;
+        }
+      }
+      scan.firstBoundary[startState] = first;
+      scan.endState[startState] = (inQuotes ? IN_QUOTES : 0) | (inEscape ? IN_ESCAPE : 0);
+    }
+  }
+
+  /**
+   * Parses all the records in a resolved range with a new parser.
+   */
+  final class ParseTask implements Callable<List<List<String>>> {
+    final long from;
+    final long to;
+
+    ParseTask(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public List<List<String>> call() throws IOException {
+      CsvParser parser = parserBuilder.build();
+      Projection projection = Projection.of(parser);
+      if (projection != null && header != null) {
+        projection.resolve(header);
+      }
+      MappedFile mapped = new MappedFile(file, from, to, MappedFile.DEFAULT_REGION_SIZE);
+      Reader source = (parser instanceof Utf8CsvParser ? new ByteBlockReader(mapped) : mapped.newReader());
+      CsvReader reader = new CsvReader(source, parser);
+      try {
+        return reader.readAll();
+      } finally {
+        reader.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,419 @@
+package net.quux00.simplecsv;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads a CSV stream with its I/O and its parsing overlapped: one thread
+ * reads the source (decoding, and decompressing if the stream does, as it
+ * goes) in large blocks, cuts each block at its last record boundary and
+ * hands it to a pool of parse workers, and readNext returns the records in
+ * the order of the source.  Unlike the ParallelCsvReader, the source does
+ * not have to be a file: any Reader or InputStream will do.
+ *
+ * Record boundaries are found by the reading thread as it goes, so the
+ * quote state it needs with the multi-line parser is always known: only
+ * the quote and escape part of the parser's state machine is run over the
+ * block, over runs of plain chars skipped with the CharClasses tables.
+ * With the SimpleCsvParser dialect every line ending is a boundary.
+ *
+ * The parsed blocks are handed back through a bounded ring of futures, in
+ * source order, so the reading thread waits when the caller falls behind
+ * and at most (ring size + 1) blocks are held in memory.
+ *
+ * On Java 21 and later the reading thread and the workers are virtual
+ * threads; otherwise they are daemon platform threads, with as many
+ * workers as asked for.
+ *
+ * NotThreadSafe - readNext should be called from one thread.
+ */
+public class PipelinedCsvReader implements Closeable {
+  public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+  private static final Method NEW_VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+  // the end of the input, as a future in the ring
+  private static final List<List<String>> END = Collections.emptyList();
+
+  private final Reader source;
+  private final CsvParserBuilder parserBuilder;
+  private final CharClasses classes;
+  private final boolean strictQuotes;
+  private final boolean multiLine;
+  private final int blockSize;
+  private final ExecutorService workers;
+  private final ExecutorService io;
+  private final BlockingQueue<Future<List<List<String>>>> ring;
+
+  // the header, read first when the columns are projected by name
+  private volatile List<String> header;
+  private boolean started = false;
+  private boolean done = false;
+  private Iterator<List<String>> current = Collections.<List<String>>emptyList().iterator();
+
+  /**
+   * Constructs a PipelinedCsvReader of a UTF-8 encoded stream with one
+   * worker per core.
+   */
+  public PipelinedCsvReader(InputStream in, CsvParserBuilder parserBuilder) {
+    this(new InputStreamReader(in, ByteBlockReader.UTF8), parserBuilder);
+  }
+
+  /**
+   * Constructs a PipelinedCsvReader with one worker per core.
+   */
+  public PipelinedCsvReader(Reader reader, CsvParserBuilder parserBuilder) {
+    this(reader, parserBuilder, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param reader        the source to read
+   * @param parserBuilder builds the parser for each block
+   * @param threads       number of workers to parse with, on platform threads,
+   *                      and the number of blocks parsed ahead is twice that
+   * @param blockSize     number of chars to read before cutting a block
+   */
+  public PipelinedCsvReader(Reader reader, CsvParserBuilder parserBuilder, int threads, int blockSize) {
+    if (reader == null) {
+      throw new IllegalArgumentException("Reader may not be null");
+    }
+    if (threads <= 0 || blockSize <= 0) {
+      throw new IllegalArgumentException("threads and blockSize must be greater than zero");
+    }
+    this.source = reader;
+    this.parserBuilder = parserBuilder;
+    this.classes = new CharClasses(parserBuilder.separator, parserBuilder.quoteChar, parserBuilder.escapeChar);
+    this.strictQuotes = parserBuilder.strictQuotes;
+    this.multiLine = (parserBuilder.build() instanceof MultiLineCsvParser);
+    this.blockSize = blockSize;
+    this.ring = new ArrayBlockingQueue<Future<List<List<String>>>>(threads * 2);
+    ExecutorService virtual = newVirtualExecutor();
+    if (virtual != null) {
+      this.workers = virtual;
+      this.io = virtual;
+    } else {
+      this.workers = Executors.newFixedThreadPool(threads, daemonThreads("simplecsv-pipeline-parse"));
+      this.io = Executors.newSingleThreadExecutor(daemonThreads("simplecsv-pipeline-io"));
+    }
+  }
+
+  private static ThreadFactory daemonThreads(final String name) {
+    return new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+
+  private static Method findVirtualExecutor() {
+    try {
+      Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      // make sure virtual threads are really there (not a preview) before relying on them
+      ((ExecutorService) m.invoke(null)).shutdown();
+      return m;
+    } catch (Exception e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  private static ExecutorService newVirtualExecutor() {
+    if (NEW_VIRTUAL_EXECUTOR == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the entire input into a List with each element being a
+   * List<String> of tokens.
+   *
+   * @return a List of List<String>, with each List<String> representing a record
+   * @throws IOException if bad things happen during the read
+   */
+  public List<List<String>> readAll() throws IOException {
+    List<List<String>> allElements = new java.util.ArrayList<List<String>>();
+    List<String> next;
+    while ((next = readNext()) != null) {
+      allElements.add(next);
+    }
+    return allElements;
+  }
+
+  /**
+   * Returns the next record, in source order.
+   *
+   * @return the next record or null if there are no more
+   * @throws IOException if bad things happen during the read
+   */
+  public List<String> readNext() throws IOException {
+    while (!current.hasNext()) {
+      List<List<String>> records = nextBlock();
+      if (records == null) {
+        return null;
+      }
+      current = records.iterator();
+    }
+    return current.next();
+  }
+
+  private List<List<String>> nextBlock() throws IOException {
+    if (done) {
+      return null;
+    }
+    if (!started) {
+      started = true;
+      io.execute(new Reading());
+    }
+    try {
+      List<List<String>> records = ring.take().get();
+      if (records == END) {
+        finish();
+        return null;
+      }
+      return records;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a block to be parsed");
+    } catch (ExecutionException e) {
+      finish();
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Lets the threads go once the end of the input or an error is taken from
+   * the ring, as nothing more will be read or parsed.  After an error the
+   * reading thread may still be waiting for room in the ring, and blocks
+   * after the failed one may still be parsing, so they are interrupted.
+   */
+  private void finish() {
+    done = true;
+    io.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  /**
+   * @return true once the reading and parsing threads have been let go
+   */
+  boolean isFinished() {
+    return io.isShutdown() && workers.isShutdown();
+  }
+
+  private IOException rethrow(ExecutionException e) throws IOException {
+    Throwable cause = e.getCause();
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IOException(cause.toString());
+  }
+
+  /**
+   * Closes the source, and stops the reading and parsing threads if the
+   * input was not read to the end.
+   */
+  public void close() throws IOException {
+    io.shutdownNow();
+    workers.shutdownNow();
+    source.close();
+  }
+
+
+  /* --------------------------------- */
+  /* ---[ internal helper classes ]--- */
+  /* --------------------------------- */
+
+  /**
+   * The reading thread: reads blocks, finds their last record boundary and
+   * puts a parse of the whole records in the ring.  The chars after the
+   * boundary are carried over into the next block.
+   */
+  final class Reading implements Runnable {
+    private char[] buf = new char[blockSize];
+    private int len = 0;
+    // chars of buf[0, len) scanned for boundaries so far, and the state after them
+    private int scanned = 0;
+    private boolean inQuotes = false;
+    private boolean inEscape = false;
+    // end of the last whole record in buf[0, scanned)
+    private int boundary = 0;
+
+    public void run() {
+      try {
+        int n;
+        while ((n = source.read(buf, len, buf.length - len)) >= 0) {
+          len += n;
+          scan();
+          if (len == buf.length) {
+            if (boundary == 0) {
+              // no record ends in the block yet
+              buf = Arrays.copyOf(buf, buf.length * 2);
+            } else {
+              cut(boundary);
+            }
+          }
+        }
+        if (len > 0) {
+          cut(len);
+        }
+        end(null);
+      } catch (InterruptedException e) {
+        // closed
+      } catch (Exception e) {
+        try {
+          end(e);
+        } catch (InterruptedException ie) {
+          // closed
+        }
+      }
+    }
+
+    /**
+     * Hands buf[0, end) to a worker and moves the rest to the start of buf.
+     */
+    private void cut(int end) throws IOException, InterruptedException {
+      char[] block = Arrays.copyOf(buf, end);
+      if (header == null && needsHeader()) {
+        header = parserBuilder.build().parseNext(new CharBlockReader(new CharArrayReader(block)));
+      }
+      ring.put(workers.submit(new Parsing(block)));
+      System.arraycopy(buf, end, buf, 0, len - end);
+      len -= end;
+      scanned -= end;
+      boundary = 0;
+    }
+
+    private boolean needsHeader() {
+      Projection projection = Projection.of(parserBuilder.build());
+      return projection != null && !projection.isResolved();
+    }
+
+    private void end(final Exception e) throws InterruptedException {
+      FutureTask<List<List<String>>> last = new FutureTask<List<List<String>>>(new Callable<List<List<String>>>() {
+        public List<List<String>> call() throws Exception {
+          if (e != null) {
+            throw e;
+          }
+          return END;
+        }
+      });
+      last.run();
+      ring.put(last);
+    }
+
+    /**
+     * Scans buf[scanned, len) for record boundaries.  Mirrors the state
+     * changes of MultiLineCsvParser.skipNext; without multi-line every line
+     * ending is a boundary, with a CRLF as one.
+     */
+    private void scan() {
+      int i = scanned;
+      if (!multiLine) {
+        for (; i < len; i++) {
+          char c = buf[i];
+          if (c == '\n') {
+            boundary = i + 1;
+          } else if (c == '\r') {
+            if (i + 1 == len) {
+              // the next char decides whether it is a CRLF
+              break;
+            }
+            if (buf[i + 1] != '\n') {
+              boundary = i + 1;
+            }
+          }
+        }
+        scanned = i;
+        return;
+      }
+
+      while (i < len) {
+        int end = classes.skipPlain(buf, i, len, inQuotes);
+        if (end > i && (!strictQuotes || inQuotes)) {
+          inEscape = false;
+        }
+        if (end >= len) {
+          break;
+        }
+        switch (classes.classOf(buf[end])) {
+          case CharClasses.QUOTE:
+            if (!inEscape) {
+              inQuotes = !inQuotes;
+            }
+            inEscape = false;
+            break;
+
+          case CharClasses.ESCAPE:
+            inEscape = !inEscape;
+            break;
+
+          case CharClasses.LF:
+            // only stopped at outside of quotes
+            boundary = end + 1;
+            inEscape = false;
+            break;
+
+          case CharClasses.SEPARATOR:
+            inEscape = false;
+            break;
+
+          default:
+            if (!strictQuotes || inQuotes) {
+              inEscape = false;
+            }
+        }
+        i = end + 1;
+      }
+      scanned = len;
+    }
+  }
+
+  /**
+   * Parses all the records of a block with a new parser.
+   */
+  final class Parsing implements Callable<List<List<String>>> {
+    private final char[] block;
+
+    Parsing(char[] block) {
+      this.block = block;
+    }
+
+    public List<List<String>> call() throws IOException {
+      CsvParser parser = parserBuilder.build();
+      Projection projection = Projection.of(parser);
+      if (projection != null && header != null) {
+        projection.resolve(header);
+      }
+      return new CsvReader(new CharArrayReader(block), parser).readAll();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package net.quux00.simplecsv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The columns a parser materializes, set with CsvParserBuilder.columns.
+ * The parser still finds where every field ends, but fields that are not
+ * projected are only scanned for the quote and escape chars that decide
+ * that: their chars are never copied, unescaped or trimmed and no String is
+ * made for them.  The projected fields are returned in column order.
+ *
+ * Columns selected by header name are resolved by the CsvReader against the
+ * first record it reads (after any skipped lines), which is the header.
+ * Until then the parser returns every column.
+ */
+final class Projection {
+  private final String[] names;
+  // whether each column is projected, by index; null until the names are resolved
+  private volatile boolean[] selected;
+
+  Projection(int[] columns) {
+    if (columns == null || columns.length == 0) {
+      throw new IllegalArgumentException("At least one column must be projected");
+    }
+    int last = -1;
+    for (int col : columns) {
+      if (col < 0) {
+        throw new IllegalArgumentException("Column index may not be negative: " + col);
+      }
+      last = Math.max(last, col);
+    }
+    boolean[] sel = new boolean[last + 1];
+    for (int col : columns) {
+      sel[col] = true;
+    }
+    this.names = null;
+    this.selected = sel;
+  }
+
+  Projection(String[] names) {
+    if (names == null || names.length == 0) {
+      throw new IllegalArgumentException("At least one column must be projected");
+    }
+    for (String name : names) {
+      if (name == null) {
+        throw new IllegalArgumentException("Column name may not be null");
+      }
+    }
+    this.names = names.clone();
+    this.selected = null;
+  }
+
+  /**
+   * @return the projection of the parser, or null if it parses every column
+   */
+  static Projection of(CsvParser parser) {
+    if (parser instanceof SimpleCsvParser) {
+      return ((SimpleCsvParser) parser).projection;
+    } else if (parser instanceof MultiLineCsvParser) {
+      return ((MultiLineCsvParser) parser).projection;
+    }
+    return null;
+  }
+
+  /**
+   * @return a projection for another parser: the same one when it is by
+   *         index, or a new unresolved one when it is by name
+   */
+  Projection copy() {
+    return (names == null ? this : new Projection(names));
+  }
+
+  boolean isResolved() {
+    return selected != null;
+  }
+
+  /**
+   * Resolves the column names against the header.  Does nothing if the
+   * projection is already resolved.
+   *
+   * @throws IllegalArgumentException if a name is not in the header
+   */
+  void resolve(List<String> header) {
+    if (selected != null) {
+      return;
+    }
+    int[] columns = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      columns[i] = header.indexOf(names[i]);
+      if (columns[i] < 0) {
+        throw new IllegalArgumentException("Column " + names[i] + " not found in the header");
+      }
+    }
+    selected = new Projection(columns).selected;
+  }
+
+  /**
+   * @return whether the column is projected.  Every column is until the names are resolved.
+   */
+  boolean includes(int column) {
+    final boolean[] sel = selected;
+    return sel == null || (column < sel.length && sel[column]);
+  }
+
+  /**
+   * @return the index of the last projected column
+   */
+  int lastColumn() {
+    final boolean[] sel = selected;
+    return (sel == null ? Integer.MAX_VALUE : sel.length - 1);
+  }
+
+  /**
+   * @return the projected fields of a record that was parsed in full
+   */
+  List<String> select(List<String> fields) {
+    List<String> projected = new ArrayList<String>();
+    for (int i = 0; i < fields.size(); i++) {
+      if (includes(i)) {
+        projected.add(fields.get(i));
+      }
+    }
+    return projected;
+  }
+}
@@ -0,0 +1,40 @@
+package net.quux00.simplecsv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A CsvParser that can parse a record into a reusable CsvRecord instead
+ * of a new List of new Strings, and skip a record without parsing it.  The
+ * CsvReader falls back to copying the parsed List into the record, and to
+ * parsing the records it skips, for parsers that don't implement it.
+ */
+interface RecordParser {
+  /**
+   * Parses the next record into the given record, replacing its contents.
+   *
+   * @param reader the Reader to get our data from
+   * @param record the record to parse into
+   * @return false if there are no more records
+   */
+  boolean parseNext(Reader reader, CsvRecord record) throws IOException;
+
+  /**
+   * Moves the reader past the next record without making tokens of it.
+   * Only the part of the state machine that finds where the record ends is
+   * run.  The filters are not applied, but a skipped record with an
+   * unterminated quoted field is an error, as it is when parsed, unless
+   * unbalanced quotes are allowed.
+   *
+   * @param reader the Reader to get our data from
+   * @return false if there are no more records
+   */
+  boolean skipNext(Reader reader) throws IOException;
+
+  /**
+   * @return number of records the filters rejected in the last parseNext
+   *         (on this thread, for a thread-safe parser), which were skipped
+   *         before the record it returned or the error it threw
+   */
+  int rejected();
+}
@@ -28,7 +28,7 @@ import java.util.List;
  * 
  * NotThreadSafe - only use one CsvParser per thread
  */
-public class SimpleCsvParser implements CsvParser {
+public class SimpleCsvParser implements CsvParser, RecordParser {
   static final int INITIAL_READ_SIZE = 128;
 
   final char separator;
@@ -40,11 +40,18 @@ public class SimpleCsvParser implements CsvParser {
   final boolean retainOuterQuotes;        // if true, outer quote chars are retained
   final boolean retainEscapeChars;        // if true, leaves escape chars in; if false removes them
   final boolean alwaysQuoteOutput;        // if true, put quote around around all outgoing tokens
+  final CharClasses classes;
+  Projection projection;                  // the columns to materialize, or null for all of them
+  FieldFilter[] filters;                  // the filters on the columns by index, or null
+  StringCache[] caches;                   // the caches of the deduplicated columns by index, or null
   
   // used in parse()
   final State state = new State();
   final StringBuilder sb = new StringBuilder(INITIAL_READ_SIZE);
-  final List<String> toks = new ArrayList<String>();
+  int width = 10;  // number of tokens in the last line, used to size the next token list
+  int rejected = 0;  // number of lines the filters rejected in the last parseNext
+  // holds the chars of a String handed to parse() so it can use the char[] lexer
+  char[] chars = new char[INITIAL_READ_SIZE];
     
   public SimpleCsvParser() {
     separator = ParserUtil.DEFAULT_SEPARATOR;
@@ -56,6 +63,7 @@ public class SimpleCsvParser implements CsvParser {
     retainOuterQuotes = ParserUtil.DEFAULT_RETAIN_OUTER_QUOTES;
     retainEscapeChars = ParserUtil.DEFAULT_RETAIN_ESCAPE_CHARS;
     alwaysQuoteOutput = ParserUtil.DEFAULT_ALWAYS_QUOTE_OUTPUT;
+    classes = new CharClasses(separator, quotechar, escapechar);
   }
 
   /**
@@ -84,6 +92,7 @@ public class SimpleCsvParser implements CsvParser {
     this.alwaysQuoteOutput = alwaysQuoteOutput;
     
     checkInvariants();
+    classes = new CharClasses(separator, quotechar, escapechar);
   }
   
   private void checkInvariants() {
@@ -102,6 +111,8 @@ public class SimpleCsvParser implements CsvParser {
   static final class State {
     boolean inQuotes = false;
     boolean inEscape = false;
+    int column = 0;  // index of the current token
+    boolean rejected = false;  // a field was not accepted by its filter
     
     public void quoteFound() {
       if (!inEscape) {
@@ -118,7 +129,8 @@ public class SimpleCsvParser implements CsvParser {
     }
 
     public void reset() {
-      inQuotes = inEscape = false;
+      inQuotes = inEscape = rejected = false;
+      column = 0;
     }
   }
 
@@ -130,13 +142,138 @@ public class SimpleCsvParser implements CsvParser {
    * If you are using the CsvParser directly (not through a CsvReader) then it is better
    * to use the {@link #parse(String)} method instead.
    * 
-   * This method is used by the CsvReader. If the Reader passed in is not a BufferedReader
-   * a BufferedReader is constructed to wrap the reader.
+   * This method is used by the CsvReader, which hands it a block-buffered reader
+   * whose internal char[] window is tokenized directly, without creating an 
+   * intermediate String for the line. For any other Reader, if it is not a 
+   * BufferedReader a BufferedReader is constructed to wrap the reader.
+   * 
+   * If filters are set, the lines they don't accept are skipped.
    * 
    * @param Reader ideally should be a BufferedReader, but not required
    * @return parsed tokens as List<String>
    */
   public List<String> parseNext(Reader reader) throws IOException {
+    List<String> toks = new ArrayList<String>(width);
+    return (parseNext0(reader, toks, null, null) ? toks : null);
+  }
+
+  /**
+   * Same as {@link #parseNext(Reader)}, but the tokens are copied into the
+   * reusable CsvRecord rather than into new Strings.
+   * 
+   * @param Reader ideally should be a BufferedReader, but not required
+   * @param record the record to parse into, replacing its previous contents
+   * @return false if there are no more lines
+   */
+  public boolean parseNext(Reader reader, CsvRecord record) throws IOException {
+    record.clear();
+    return parseNext0(reader, null, record, null);
+  }
+
+  /**
+   * Same as {@link #parseNext(Reader)}, but only finds where the fields of
+   * the line are.  A field with quote or escape chars in it, or one the
+   * options would trim, is only made into a token when it is first asked
+   * for.  The record refers to the line's chars where they are, so it is
+   * only valid until this parser next parses a line.
+   *
+   * @param reader the Reader to get our data from
+   * @param lazy the record to index the line into, replacing its previous contents
+   * @return false if there are no more lines
+   */
+  boolean parseNext(Reader reader, LazyCsvRecord lazy) throws IOException {
+    return parseNext0(reader, null, null, lazy);
+  }
+
+  /**
+   * Moves the reader past the next line without parsing it.  With the
+   * CharBlockReader the CsvReader uses, that is finding the line ending and,
+   * unless unbalanced quotes are allowed, checking the quotes of the line.
+   *
+   * @param reader the Reader to get our data from
+   * @return false if there are no more lines
+   */
+  public boolean skipNext(Reader reader) throws IOException {
+    if (reader instanceof CharBlockReader) {
+      CharBlockReader cbr = (CharBlockReader) reader;
+      int end = cbr.findLineEnd();
+      if (end < 0) {
+        return false;
+      }
+      if (!allowedUnbalancedQuotes) {
+        checkQuotes(cbr.buf, cbr.pos, end);
+      }
+      cbr.consumeLine(end);
+      return true;
+    }
+    BufferedReader br = (reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader));
+    String line = br.readLine();
+    if (line == null) {
+      return false;
+    }
+    if (!allowedUnbalancedQuotes) {
+      checkQuotes(line.toCharArray(), 0, line.length());
+    }
+    return true;
+  }
+
+  /**
+   * Runs the quote and escape part of the state machine over the line held
+   * in buf[from, to), field by field, as skipNext does not parse it.
+   */
+  private void checkQuotes(char[] buf, int from, int to) {
+    state.reset();
+    int i = skipField(buf, from, to);
+    while (i < to) {
+      i = skipField(buf, i + 1, to);
+    }
+    if (state.inQuotes) {
+      throw new IllegalArgumentException("Un-terminated quoted field at end of CSV line");
+    }
+  }
+
+  private boolean parseNext0(Reader reader, List<String> toks, CsvRecord record, LazyCsvRecord lazy) throws IOException {
+    rejected = 0;
+    while (parseLine(reader, toks, record, lazy)) {
+      if (accepted()) {
+        return true;
+      }
+      // not accepted by the filters - on to the next line
+      rejected++;
+      if (record != null) {
+        record.clear();
+      } else if (toks != null) {
+        toks.clear();
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return number of lines the filters rejected in the last parseNext
+   */
+  public int rejected() {
+    return rejected;
+  }
+
+  private boolean parseLine(Reader reader, List<String> toks, CsvRecord record, LazyCsvRecord lazy) throws IOException {
+    if (reader instanceof CharBlockReader) {
+      CharBlockReader cbr = (CharBlockReader) reader;
+      int end = cbr.findLineEnd();
+      if (end < 0) {
+        return false;
+      }
+      int start = cbr.pos;
+      // consuming only moves the window position, so the chars remain in place
+      cbr.consumeLine(end);
+      if (lazy != null) {
+        index0(cbr.buf, start, end, lazy);
+      } else {
+        parse0(cbr.buf, start, end, toks, record);
+      }
+      return true;
+    }
+
     String line = null;
     BufferedReader br = null;
     if (reader instanceof BufferedReader) {
@@ -147,7 +284,15 @@ public class SimpleCsvParser implements CsvParser {
       line = br.readLine();
       br.close();
     }
-    return parse0(line);
+    if (line == null) {
+      return false;
+    }
+    if (lazy != null) {
+      index0(charsOf(line), 0, line.length(), lazy);
+    } else {
+      parse0(charsOf(line), 0, line.length(), toks, record);
+    }
+    return true;
   }
 
   /**
@@ -157,40 +302,54 @@ public class SimpleCsvParser implements CsvParser {
    * (that is, when not using the CsvReader).
    * 
    * @param ln Single line of text to parse
-   * @return parsed tokens as List<String>
+   * @return parsed tokens as List<String>, or null if the filters don't accept the line
    */
   @Override
   public List<String> parse(String ln) {
     if (ln == null || ln.isEmpty()) {
       return Collections.emptyList();
     }
-    return parse0(ln);
+    List<String> toks = new ArrayList<String>(width);
+    parse0(charsOf(ln), 0, ln.length(), toks, null);
+    return (accepted() ? toks : null);
   }
 
   
-  private List<String> parse0(String ln) {
-    if (ln == null) { 
-      return null; 
+  /**
+   * @return the chars of the line, copied into the reused chars buffer
+   */
+  private char[] charsOf(String ln) {
+    int len = ln.length();
+    if (chars.length < len) {
+      chars = new char[Math.max(len, chars.length * 2)];
     }
-    
+    ln.getChars(0, len, chars, 0);
+    return chars;
+  }
+
+  /**
+   * Parses the chars of a single line held in buf[from, to) into the record,
+   * or into toks if the record is null.
+   */
+  void parse0(char[] buf, int from, int to, List<String> toks, CsvRecord record) {
     state.reset();
     sb.setLength(0);
-    toks.clear();
+    // trim() leaves a field with no quotes or escapes as is with these options
+    final boolean plainAsIs = !strictQuotes && !trimWhiteSpace && !alwaysQuoteOutput;
     
-    for (int i = 0; i < ln.length(); i++) {
-      char c = ln.charAt(i);
-      
-      if (isQuoteChar(c)) {
-        handleQuote(sb);
-      
-      } else if (isEscapeChar(c)) {
-        handleEscape(sb);
-      
-      } else if (c == separator && !state.inQuotes) {
-        toks.add( handleEndOfToken(sb) );
-        
-      } else {
-        handleRegular(sb, c);
+    int i = startOfToken(buf, from, to, plainAsIs, toks, record);
+    for (; i < to; i++) {
+      switch (classes.classOf(buf[i])) {
+        case CharClasses.SEPARATOR:
+          if (!state.inQuotes) {
+            endOfToken(toks, record);
+            i = startOfToken(buf, i + 1, to, plainAsIs, toks, record) - 1;
+            break;
+          }
+          // fall through - a separator in quotes is a regular char
+
+        default:
+          i = handleChars(buf, i, to);
       }
     }
     
@@ -198,11 +357,105 @@ public class SimpleCsvParser implements CsvParser {
     if (state.inQuotes && !allowedUnbalancedQuotes) {
       throw new IllegalArgumentException("Un-terminated quoted field at end of CSV line");
     }
-    toks.add( handleEndOfToken(sb) );
+    endOfToken(toks, record);
+    width = (record == null ? toks.size() : record.size());
+  }
+
+  /**
+   * Handles buf[i], which is not a separator outside of quotes, and the run of
+   * regular chars after it.
+   *
+   * @return index of the last char handled
+   */
+  private int handleChars(char[] buf, int i, int to) {
+    char c = buf[i];
+    switch (classes.classOf(c)) {
+      case CharClasses.QUOTE:
+        handleQuote(sb);
+        return i;
+
+      case CharClasses.ESCAPE:
+        handleEscape(sb);
+        return i;
+
+      default:
+        handleRegular(sb, c);
+        // the chars up to the next special one can be handled all at once:
+        // the escape, if any, only applied to c
+        int end = classes.skipPlain(buf, i + 1, to, state.inQuotes);
+        if (!strictQuotes || state.inQuotes) {
+          sb.append(buf, i + 1, end - (i + 1));
+        }
+        return end - 1;
+    }
+  }
+
+  /**
+   * Indexes where the fields of the line held in buf[from, to) are, for
+   * parseNext(Reader, LazyCsvRecord).  The fields are found with the same
+   * scan that skips over the fields that are not projected.
+   */
+  void index0(char[] buf, int from, int to, LazyCsvRecord lazy) {
+    state.reset();
+    sb.setLength(0);
+    lazy.reset(this, buf);
+    // trim() leaves a field with no quotes or escapes as is with these options
+    final boolean plainAsIs = !strictQuotes && !trimWhiteSpace && !alwaysQuoteOutput;
 
-    List<String> returnList = new ArrayList<String>(toks.size());
-    returnList.addAll(toks);
-    return returnList;
+    int column = 0;
+    for (int i = from; ; i++) {
+      if (projection != null && column > projection.lastColumn() &&
+          (filters == null || column >= filters.length)) {
+        // nothing more is wanted from this line
+        break;
+      }
+      int end = classes.skipPlain(buf, i, to, false);
+      boolean plain = (end >= to || classes.classOf(buf[end]) == CharClasses.SEPARATOR);
+      if (!plain) {
+        end = skipField(buf, end, to);
+        if (state.inQuotes && !allowedUnbalancedQuotes) {
+          throw new IllegalArgumentException("Un-terminated quoted field at end of CSV line");
+        }
+      }
+      boolean asIs = plain && plainAsIs;
+
+      if (projection == null || projection.includes(column)) {
+        lazy.add(i, end, asIs);
+        FieldFilter filter = filterOf(column);
+        if (filter != null && !filter.accept(lazy.get(lazy.size() - 1))) {
+          state.rejected = true;
+          break;
+        }
+      } else if (filterOf(column) != null) {
+        // not projected, only decoded to be filtered
+        if (!filterOf(column).accept(asIs ? new String(buf, i, end - i) : decode(buf, i, end))) {
+          state.rejected = true;
+          break;
+        }
+      }
+      column++;
+      if (end >= to) {
+        break;
+      }
+      i = end;
+    }
+    // for accepted()
+    state.column = column;
+  }
+
+  /**
+   * Decodes the field held in buf[from, to), found by index0, into the token
+   * parse0 would have made of it.
+   */
+  String decode(char[] buf, int from, int to) {
+    state.reset();
+    // not a column of the line, so the token is not deduplicated
+    state.column = -1;
+    sb.setLength(0);
+    for (int i = from; i < to; i++) {
+      i = handleChars(buf, i, to);
+    }
+    return handleEndOfToken(sb, null);
   }  
 
   
@@ -222,14 +475,177 @@ public class SimpleCsvParser implements CsvParser {
     return c == quotechar && quotechar != ParserUtil.NULL_CHARACTER;
   }
   
-  String handleEndOfToken(StringBuilder sb) {
+  /**
+   * Called at the start of each token.  Skips over the fields that are not
+   * projected or filtered and the rest of a rejected record and, while
+   * plainAsIs, takes projected fields without quote or escape
+   * chars up to a separator straight from buf rather than char by char
+   * through sb.  The plain start of the first field that is neither is
+   * appended to sb.
+   *
+   * @return index of the first char after the skipped and plain fields
+   */
+  private int startOfToken(char[] buf, int i, int to, boolean plainAsIs, List<String> toks, CsvRecord record) {
+    while (true) {
+      if (state.rejected) {
+        // the rest of a line the filters don't accept is not looked at
+        return to;
+
+      } else if (projection != null && !projection.includes(state.column)) {
+        if (filterOf(state.column) != null) {
+          // parsed to be filtered
+          return i;
+        }
+        if (state.column > projection.lastColumn() && (filters == null || state.column >= filters.length)) {
+          // nothing more is wanted from this line
+          return to;
+        }
+        i = skipField(buf, i, to);
+        if (i >= to) {
+          return to;
+        }
+        state.column++;
+        i++;
+
+      } else if (plainAsIs) {
+        int end = classes.skipPlain(buf, i, to, false);
+        if (end < to && classes.classOf(buf[end]) == CharClasses.SEPARATOR) {
+          if (record == null) {
+            StringCache cache = cacheOf(state.column);
+            toks.add(cache == null ? new String(buf, i, end - i) : cache.get(buf, i, end));
+          } else {
+            record.add(buf, i, end);
+          }
+          filterLast(toks, record);
+          state.column++;
+          i = end + 1;
+        } else {
+          sb.append(buf, i, end - i);
+          return end;
+        }
+
+      } else {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Runs the quote and escape part of the state machine over a field that is
+   * not projected, which is all it takes to find where the field ends.
+   *
+   * @return index of the separator that ends the field, or to
+   */
+  private int skipField(char[] buf, int i, int to) {
+    while (true) {
+      int end = classes.skipPlain(buf, i, to, state.inQuotes);
+      if (end > i && (!strictQuotes || state.inQuotes)) {
+        // a regular char ends any escape
+        state.escapeFound(false);
+      }
+      if (end >= to) {
+        return to;
+      }
+
+      switch (classes.classOf(buf[end])) {
+        case CharClasses.QUOTE:
+          state.quoteFound();
+          state.escapeFound(false);
+          break;
+
+        case CharClasses.ESCAPE:
+          state.escapeFound(true);
+          break;
+
+        case CharClasses.SEPARATOR:
+          // only stopped at outside of quotes
+          state.escapeFound(false);
+          return end;
+
+        default:
+          // a CR or LF is a regular char within a line
+          if (!strictQuotes || state.inQuotes) {
+            state.escapeFound(false);
+          }
+      }
+      i = end + 1;
+    }
+  }
+
+  private void endOfToken(List<String> toks, CsvRecord record) {
+    if (!state.rejected && (projection == null || projection.includes(state.column))) {
+      String tok = handleEndOfToken(sb, record);
+      if (record == null) {
+        toks.add(tok);
+      }
+      filterLast(toks, record);
+    } else if (!state.rejected && filterOf(state.column) != null) {
+      // not projected, only parsed to be filtered
+      if (!filterOf(state.column).accept(handleEndOfToken(sb, null))) {
+        state.rejected = true;
+      }
+    } else {
+      // a field that is not projected or of a rejected line: drop whatever of it was parsed
+      state.escapeFound(false);
+      sb.setLength(0);
+    }
+    state.column++;
+  }
+
+
+  /**
+   * @return the cache of the column if it is deduplicated, or null
+   */
+  private StringCache cacheOf(int column) {
+    return (caches == null || column < 0 || column >= caches.length ? null : caches[column]);
+  }
+
+  /**
+   * @return the filter on the column, or null
+   */
+  private FieldFilter filterOf(int column) {
+    if (filters == null || column >= filters.length || (projection != null && !projection.isResolved())) {
+      return null;
+    }
+    return filters[column];
+  }
+
+  /**
+   * @return whether the filters accept the line just parsed.  A line without
+   *         a filtered column is not accepted.
+   */
+  private boolean accepted() {
+    if (state.rejected) {
+      return false;
+    }
+    for (int col = state.column; filters != null && col < filters.length; col++) {
+      if (filterOf(col) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rejects the line if the token just added for the current column is not
+   * accepted by the column's filter.
+   */
+  private void filterLast(List<String> toks, CsvRecord record) {
+    FieldFilter filter = filterOf(state.column);
+    if (filter != null &&
+        !filter.accept(record == null ? toks.get(toks.size() - 1) : record.get(record.size() - 1))) {
+      state.rejected = true;
+    }
+  }
+
+  String handleEndOfToken(StringBuilder sb, CsvRecord record) {
     // in strictQuotes mode you don't know when to add the last seen
     // quote until the token is done; if the buffer has any characters
     // then you know a first quote was seen, so add the closing quote
     if (strictQuotes && sb.length() > 0) {
       sb.append(quotechar);
     }
-    String tok = trim(sb);
+    String tok = trim(sb, record);
     state.escapeFound(false);
     sb.setLength(0);
     return tok;
@@ -310,6 +726,14 @@ public class SimpleCsvParser implements CsvParser {
   }
   
   String trim(StringBuilder sb) {
+    return trim(sb, null);
+  }
+
+  /**
+   * Trims the token in sb as the options require.  If record is not null the
+   * token is added to it rather than returned as a new String.
+   */
+  String trim(StringBuilder sb, CsvRecord record) {
     int left = 0;
     int right = sb.length() - 1;
     
@@ -319,7 +743,13 @@ public class SimpleCsvParser implements CsvParser {
         left = indexes[0];
         right = indexes[1];
       } 
-      return ParserUtil.ensureQuoted(sb, left, right, quotechar);
+      String tok = ParserUtil.ensureQuoted(sb, left, right, quotechar);
+      if (record != null) {
+        record.add(tok);
+        return null;
+      }
+      StringCache cache = cacheOf(state.column);
+      return (cache == null ? tok : cache.get(tok, 0, tok.length()));
       
     } else { 
       if (!retainOuterQuotes) {
@@ -347,7 +777,12 @@ public class SimpleCsvParser implements CsvParser {
         left = indexes[0];
         right = indexes[1];      
       }
-      return sb.substring(left, right+1);
+      if (record != null) {
+        record.add(sb, left, right+1);
+        return null;
+      }
+      StringCache cache = cacheOf(state.column);
+      return (cache == null ? sb.substring(left, right+1) : cache.get(sb, left, right+1));
     }
   }
 }
@@ -0,0 +1,127 @@
+package net.quux00.simplecsv;
+
+/**
+ * Canonical Strings for the fields of one column, set with
+ * CsvParserBuilder.deduplicate.  A field that equals one seen recently in the
+ * column is returned as that same String instance, found by the hash of its
+ * chars without allocating.  Low-cardinality columns (country, status,
+ * currency) then hold a handful of Strings however many records are read.
+ *
+ * The table is bounded: it has SLOTS slots, a field hashes to a window of
+ * WAYS slots, and when its window is full a new value evicts one of them in
+ * turn.  A high-cardinality column so only costs hashing and an occasional
+ * compare per field.  Fields longer than MAX_LENGTH chars are not cached.
+ *
+ * NotThreadSafe - owned by the parser (or parser thread) that fills it.
+ */
+final class StringCache {
+  static final int SLOTS = 1024;
+  static final int WAYS = 4;
+  static final int MAX_LENGTH = 64;
+  private static final int MASK = SLOTS - 1;
+
+  private final String[] values = new String[SLOTS];
+  private final int[] hashes = new int[SLOTS];
+  private int victim = 0;  // which slot of a full window is evicted next
+
+  /**
+   * @return a String equal to buf[from, to), the cached one if there is one
+   */
+  String get(char[] buf, int from, int to) {
+    int len = to - from;
+    if (len > MAX_LENGTH) {
+      return new String(buf, from, len);
+    }
+    int h = 0;
+    for (int i = from; i < to; i++) {
+      h = 31 * h + buf[i];
+    }
+    int slot = slotOf(h);
+    for (int w = 0; w < WAYS; w++) {
+      int s = (slot + w) & MASK;
+      String v = values[s];
+      if (v == null) {
+        return put(s, h, new String(buf, from, len));
+      }
+      if (hashes[s] == h && v.length() == len && equals(v, buf, from)) {
+        return v;
+      }
+    }
+    return put(evict(slot), h, new String(buf, from, len));
+  }
+
+  /**
+   * @return a String equal to chars.subSequence(from, to), the cached one if there is one
+   */
+  String get(CharSequence chars, int from, int to) {
+    int len = to - from;
+    if (len > MAX_LENGTH) {
+      return chars.subSequence(from, to).toString();
+    }
+    int h = 0;
+    for (int i = from; i < to; i++) {
+      h = 31 * h + chars.charAt(i);
+    }
+    int slot = slotOf(h);
+    for (int w = 0; w < WAYS; w++) {
+      int s = (slot + w) & MASK;
+      String v = values[s];
+      if (v == null) {
+        return put(s, h, chars.subSequence(from, to).toString());
+      }
+      if (hashes[s] == h && v.length() == len && equals(v, chars, from)) {
+        return v;
+      }
+    }
+    return put(evict(slot), h, chars.subSequence(from, to).toString());
+  }
+
+  private static int slotOf(int h) {
+    return (h ^ (h >>> 16)) & MASK;
+  }
+
+  private int evict(int slot) {
+    return (slot + (victim++ & (WAYS - 1))) & MASK;
+  }
+
+  private String put(int s, int h, String v) {
+    values[s] = v;
+    hashes[s] = h;
+    return v;
+  }
+
+  private static boolean equals(String v, char[] buf, int from) {
+    for (int i = 0; i < v.length(); i++) {
+      if (v.charAt(i) != buf[from + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equals(String v, CharSequence chars, int from) {
+    for (int i = 0; i < v.length(); i++) {
+      if (v.charAt(i) != chars.charAt(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return a cache for each column flagged in deduplicated, by index, or
+   *         null if deduplicated is null
+   */
+  static StringCache[] forColumns(boolean[] deduplicated) {
+    if (deduplicated == null) {
+      return null;
+    }
+    StringCache[] caches = new StringCache[deduplicated.length];
+    for (int i = 0; i < caches.length; i++) {
+      if (deduplicated[i]) {
+        caches[i] = new StringCache();
+      }
+    }
+    return caches;
+  }
+}
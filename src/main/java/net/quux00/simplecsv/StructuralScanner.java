@@ -0,0 +1,89 @@
+package net.quux00.simplecsv;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Finds the next structural char (separator, quote, escape, CR or LF) many
+ * chars at a time, for the CharClasses skipPlain methods to use ahead of their
+ * char-by-char table lookups.
+ *
+ * The only implementation is VectorStructuralScanner, which uses the JDK
+ * Vector API (jdk.incubator.vector) and so is compiled from src/main/java17
+ * into the multi-release part of the jar by the vector-api build profile.
+ * It is loaded reflectively and only used when it can be: on a Java 6 to 16
+ * JVM, without the multi-release classes, or when the JVM was not started
+ * with --add-modules jdk.incubator.vector, {@link #newInstance} returns null
+ * and the parsers use the scalar table alone.  Setting the system property
+ * simplecsv.vector=false also turns it off.
+ *
+ * Implementations must be immutable, as the CharClasses that own them are
+ * shared by all the threads using a MultiLineCsvParser.
+ */
+abstract class StructuralScanner {
+  static final String VECTOR_SCANNER_CLASS = "net.quux00.simplecsv.VectorStructuralScanner";
+
+  private static final Constructor<?> VECTOR_SCANNER = findVectorScanner();
+
+  /**
+   * Skips whole blocks of chars that have no structural char in them.
+   * Inside quotes, only the quote and escape chars are structural.
+   *
+   * @return index of the first structural char in buf[from, to), or the index
+   *         of the first char of the last partial block, which the caller then
+   *         has to check itself
+   */
+  abstract int skipPlain(char[] buf, int from, int to, boolean inQuotes);
+
+  /**
+   * Same as skipPlain for chars, over UTF-8 bytes.  The bytes of multi-byte
+   * sequences (b < 0) are structural here, since they have to be decoded.
+   */
+  abstract int skipPlain(byte[] buf, int from, int to, boolean inQuotes);
+
+  /**
+   * @param separator  the separator char, which is always defined
+   * @param quotechar  the quote char or NULL_CHARACTER
+   * @param escapechar the escape char or NULL_CHARACTER
+   * @return a vectorized scanner or null if the Vector API can't be used
+   */
+  static StructuralScanner newInstance(char separator, char quotechar, char escapechar) {
+    if (VECTOR_SCANNER == null) {
+      return null;
+    }
+    // stand in a defined char for an undefined one, so NUL chars don't match
+    // (an undefined quote char means there is never an "inside quotes")
+    if (quotechar == ParserUtil.NULL_CHARACTER) {
+      quotechar = separator;
+    }
+    if (escapechar == ParserUtil.NULL_CHARACTER) {
+      escapechar = quotechar;
+    }
+    try {
+      return (StructuralScanner) VECTOR_SCANNER.newInstance(separator, quotechar, escapechar);
+    } catch (Exception e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  private static Constructor<?> findVectorScanner() {
+    if ("false".equalsIgnoreCase(System.getProperty("simplecsv.vector"))) {
+      return null;
+    }
+    try {
+      Constructor<?> ctor = Class.forName(VECTOR_SCANNER_CLASS).
+          getDeclaredConstructor(char.class, char.class, char.class);
+      ctor.setAccessible(true);
+      // make sure the Vector API module is really there before relying on it
+      ctor.newInstance(',', '"', '\\');
+      return ctor;
+    } catch (Exception e) {
+      // not on the classpath, or a pre-17 JVM ignoring the multi-release classes
+      return null;
+    } catch (LinkageError e) {
+      // the jdk.incubator.vector module was not added to the JVM
+      return null;
+    }
+  }
+}
@@ -0,0 +1,441 @@
+package net.quux00.simplecsv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A MultiLineCsvParser that works directly on UTF-8 encoded bytes.
+ *
+ * The separator, quote and escape chars must all be ASCII, as are CR and LF.
+ * In UTF-8 every byte of a multi-byte sequence is >= 0x80, so none of them
+ * can be mistaken for one of these structural chars.  The parser therefore
+ * runs the usual state machine on the raw bytes: ASCII bytes are taken as
+ * chars as-is (no charset decoding at all), and only the multi-byte sequences
+ * inside field contents are decoded.
+ *
+ * Records follow the MultiLineCsvParser rules (LF or CRLF outside of quotes
+ * ends the record, RFC4180 quoted quotes are optionally supported) and all of
+ * its options apply.
+ *
+ * Use it with a CsvReader built from an InputStream or ReadableByteChannel by
+ * the CsvReaderBuilder, or standalone with {@link #parse(byte[], int, int)} or
+ * {@link #parseNext(ByteBuffer)}. Given any other Reader, or a String, it
+ * behaves exactly like the MultiLineCsvParser.
+ *
+ * This parser is ThreadSafe - Use the same CsvParser in as many threads as you want.
+ */
+public class Utf8CsvParser extends MultiLineCsvParser {
+  // decodes ASCII bytes one to one, with no validation or replacement to do
+  private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+  public Utf8CsvParser() {
+    super();
+  }
+
+  /**
+   * Constructor with all options settable. Unless you want the default
+   * behavior, use the Builder to set the options you want.
+   *
+   * @param separator single ASCII char that separates values in the list
+   * @param quotechar single ASCII char that is used to quote values
+   * @param escapechar single ASCII char that is used to escape values
+   * @param strictQuotes only accept values if they are between quote characters
+   * @param trimWhiteSpace trims leading and trailing whitespace of each token
+   * before it is returned
+   * @param allowedUnbalancedQuotes
+   * @param retainOuterQuotes
+   * @param retainEscapeChars
+   * @param alwaysQuoteOutput
+   * @param allowsDoubledEscapedQuotes
+   */
+  public Utf8CsvParser(final char separator, final char quotechar, final char escapechar,
+      final boolean strictQuotes, final boolean trimWhiteSpace, final boolean allowedUnbalancedQuotes,
+      final boolean retainOuterQuotes, final boolean retainEscapeChars,
+      final boolean alwaysQuoteOutput, final boolean allowsDoubledEscapedQuotes) {
+    super(separator, quotechar, escapechar, strictQuotes, trimWhiteSpace, allowedUnbalancedQuotes,
+        retainOuterQuotes, retainEscapeChars, alwaysQuoteOutput, allowsDoubledEscapedQuotes);
+
+    CharClasses.requireAscii(separator, quotechar, escapechar);
+  }
+
+  /**
+   * Parses the next record from the reader.  If the reader is the byte-level
+   * reader created by the CsvReaderBuilder for an InputStream or
+   * ReadableByteChannel, the record is parsed directly from its bytes.
+   */
+  @Override
+  boolean parseRecord(Reader reader, List<String> toks, CsvRecord record) throws IOException {
+    if (reader instanceof ByteBlockReader) {
+      return parseBytes((ByteBlockReader) reader, toks, record);
+    }
+    return super.parseRecord(reader, toks, record);
+  }
+
+  /**
+   * Moves the reader past the next record.  If the reader is the byte-level
+   * reader created by the CsvReaderBuilder, the record boundary is found
+   * directly in its bytes, which are never decoded.
+   */
+  @Override
+  public boolean skipNext(Reader reader) throws IOException {
+    if (!(reader instanceof ByteBlockReader)) {
+      return super.skipNext(reader);
+    }
+    ByteBlockReader bbr = (ByteBlockReader) reader;
+    if (bbr.pos >= bbr.limit && !bbr.fill()) {
+      return false;
+    }
+    boolean inQuotes = false;
+    boolean inEscape = false;
+    while (true) {
+      final byte[] buf = bbr.buf;
+      final int limit = bbr.limit;
+      int i = bbr.pos;
+      while (i < limit) {
+        int end = classes.skipPlain(buf, i, limit, inQuotes);
+        if (end > i && (!strictQuotes || inQuotes)) {
+          inEscape = false;
+        }
+        if (end >= limit) {
+          break;
+        }
+        switch (classes.classOf(buf[end])) {
+          case CharClasses.QUOTE:
+            if (!inEscape) {
+              inQuotes = !inQuotes;
+            }
+            inEscape = false;
+            break;
+
+          case CharClasses.ESCAPE:
+            inEscape = !inEscape;
+            break;
+
+          case CharClasses.LF:
+            bbr.pos = end + 1;
+            return true;
+
+          case CharClasses.SEPARATOR:
+            inEscape = false;
+            break;
+
+          default:
+            // a CR, or a byte of a multi-byte sequence
+            if (!strictQuotes || inQuotes) {
+              inEscape = false;
+            }
+        }
+        i = end + 1;
+      }
+      bbr.pos = limit;
+      if (!bbr.fill()) {
+        if (inQuotes && !allowedUnbalancedQuotes) {
+          throw new IllegalArgumentException("Un-terminated quoted field at end of CSV record");
+        }
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Parses the first record in bytes[offset, offset + length), which must be
+   * UTF-8 encoded.  The array is not copied or modified.
+   *
+   * @param bytes UTF-8 encoded bytes to parse
+   * @param offset index of the first byte to parse
+   * @param length number of bytes that may be parsed
+   * @return parsed tokens as List of Strings, or null if the filters don't accept the record
+   */
+  public List<String> parse(byte[] bytes, int offset, int length) {
+    if (bytes == null || length == 0) {
+      return Collections.emptyList();
+    }
+    List<String> toks = new ArrayList<String>(scratch.get().width);
+    try {
+      parseBytes(new ByteBlockReader(bytes, offset, length), toks, null);
+      return (accepted(scratch.get().state) ? toks : null);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Parses the next record from the remaining bytes of the UTF-8 encoded
+   * buffer and advances its position past the record.  A buffer that is not
+   * backed by an accessible array has its remaining bytes copied first.
+   * If filters are set, the records they don't accept are skipped.
+   *
+   * @param buffer UTF-8 encoded bytes to parse
+   * @return parsed tokens as List of Strings or null if the buffer has no remaining bytes
+   */
+  public List<String> parseNext(ByteBuffer buffer) {
+    ByteBlockReader bbr;
+    if (buffer.hasArray()) {
+      bbr = new ByteBlockReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    } else {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      bbr = new ByteBlockReader(bytes, 0, bytes.length);
+    }
+    int start = bbr.pos;
+    List<String> toks = new ArrayList<String>(scratch.get().width);
+    try {
+      boolean found;
+      while ((found = parseBytes(bbr, toks, null)) && !accepted(scratch.get().state)) {
+        toks.clear();
+      }
+      buffer.position(buffer.position() + (bbr.pos - start));
+      return (found ? toks : null);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * The MultiLineCsvParser block state machine, run over bytes.  Non-ASCII
+   * bytes can only be part of field contents, so they go straight to
+   * the decoder and then to handleRegular.  Fields that are not projected
+   * or filtered are skipped over by startOfToken without being decoded, and
+   * once a filter rejects the record at endOfToken, so is all the rest of it.
+   * Plain ASCII fields are taken by startOfToken straight from the bytes.
+   */
+  private boolean parseBytes(ByteBlockReader bbr, List<String> toks, CsvRecord record) throws IOException {
+    // check eof first
+    if (bbr.pos >= bbr.limit && !bbr.fill()) {
+      return false;
+    }
+
+    final Scratch scr = scratch.get();
+    final StringBuilder sb = scr.sb;
+    final State state = scr.reset();
+    // trim() leaves a field with no quotes or escapes as is with these options
+    final boolean plainAsIs = !strictQuotes && !trimWhiteSpace && !alwaysQuoteOutput;
+
+    byte[] buf = bbr.buf;
+    int i = bbr.pos;
+    int limit = bbr.limit;
+    i = startOfToken(buf, i, limit, plainAsIs, state, sb, toks, record);
+
+    decide:
+      while (true) {
+        if (i >= limit) {
+          // a refill compacts the window, so always re-read the indexes
+          bbr.pos = i;
+          boolean more = bbr.fill();
+          buf = bbr.buf;
+          i = bbr.pos;
+          limit = bbr.limit;
+          if (!more) {
+            break decide;
+          }
+          if (!wanted(state)) {
+            // go on skipping the field or rejected record the window ended
+            // in, dropping whatever of it was parsed after a lone CR
+            sb.setLength(0);
+            i = startOfToken(buf, i, limit, false, state, sb, toks, record);
+            continue decide;
+          }
+        }
+        byte b = buf[i];
+
+        if (b < 0) {
+          // lead byte of a multi-byte sequence
+          bbr.pos = i;
+          int cp = bbr.decodeSequence();
+          buf = bbr.buf;
+          i = bbr.pos;
+          limit = bbr.limit;
+          if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            char[] pair = Character.toChars(cp);
+            handleRegular(state, sb, pair[0]);
+            handleRegular(state, sb, pair[1]);
+          } else {
+            handleRegular(state, sb, (char) cp);
+          }
+          continue decide;
+        }
+        char c = (char) b;
+        byte charClass = classes.classOf(b);
+        i++;
+
+        if (charClass == CharClasses.QUOTE) {
+          if (rfc4180quotes && !state.inEscape && state.inQuotes) {
+            // look ahead one byte for a doubled quote
+            if (i >= limit) {
+              bbr.pos = i;
+              bbr.fill();
+              buf = bbr.buf;
+              i = bbr.pos;
+              limit = bbr.limit;
+            }
+            if (i < limit && isQuoteChar(buf[i])) {
+              sb.append((char) buf[i++]);
+            } else {
+              handleQuote(state, sb);
+            }
+          } else {
+            handleQuote(state, sb);
+          }
+        } else if (charClass == CharClasses.ESCAPE) {
+          handleEscape(state, sb);
+
+        } else if (!state.inQuotes && charClass != CharClasses.REGULAR) {
+
+          if (charClass == CharClasses.SEPARATOR) {
+            endOfToken(state, sb, toks, record);
+            i = startOfToken(buf, i, limit, plainAsIs, state, sb, toks, record);
+
+          } else if (charClass == CharClasses.LF) {
+            // END OF RECORD
+            break decide;
+
+          } else {
+            // look ahead one byte for the LF of a CRLF
+            if (i >= limit) {
+              bbr.pos = i;
+              bbr.fill();
+              buf = bbr.buf;
+              i = bbr.pos;
+              limit = bbr.limit;
+            }
+            if (i < limit && buf[i] == '\n') {
+              // END OF RECORD
+              i++;
+              break decide;
+            } else {
+              handleRegular(state, sb, '\r');
+            }
+          }
+        } else {
+          handleRegular(state, sb, c);
+          // the ASCII chars up to the next special one can be handled all at once
+          int end = classes.skipPlain(buf, i, limit, state.inQuotes);
+          if (!strictQuotes || state.inQuotes) {
+            for (int j = i; j < end; j++) {
+              sb.append((char) buf[j]);
+            }
+          }
+          i = end;
+        }
+      }
+    bbr.pos = i;
+
+    // done parsing the line
+    if (state.inQuotes && !allowedUnbalancedQuotes) {
+      throw new IllegalArgumentException("Un-terminated quoted field at end of CSV record");
+    }
+
+    endOfToken(state, sb, toks, record);
+    scr.width = (record == null ? toks.size() : record.size());
+    return true;
+  }
+
+  /**
+   * Called at the start of each token.  Skips over the fields that are not
+   * projected or filtered and the rest of a rejected record, straight to its
+   * line ending as skipNext does.  While plainAsIs, a projected field of
+   * only ASCII bytes up to a separator, with no quote or escape, is made
+   * into its token in one step: a String decoded from the byte range, or
+   * chars widened straight into the record.  The plain start of the first
+   * field that is neither is appended to sb.  A field that reaches the end
+   * of the window is left to parseBytes to go on with once the window is
+   * refilled.
+   *
+   * @return index of the first byte after the skipped and plain fields
+   */
+  private int startOfToken(byte[] buf, int i, int limit, boolean plainAsIs,
+      State state, StringBuilder sb, List<String> toks, CsvRecord record) {
+    while (true) {
+      if (!wanted(state)) {
+        int end = skipField(state, buf, i, limit);
+        if (end >= limit || classes.classOf(buf[end]) != CharClasses.SEPARATOR) {
+          // the end of the record or of the window
+          return end;
+        }
+        state.column++;
+        i = end + 1;
+
+      } else if (plainAsIs && (projection == null || projection.includes(state.column)) &&
+          (record != null || cacheOf(state) == null)) {
+        // skipPlain stops at the first non-ASCII byte, so buf[i, end) is ASCII
+        int end = classes.skipPlain(buf, i, limit, false);
+        if (end < limit && classes.classOf(buf[end]) == CharClasses.SEPARATOR) {
+          if (record == null) {
+            toks.add(new String(buf, i, end - i, LATIN1));
+          } else {
+            record.add(buf, i, end);
+          }
+          filterLast(state, toks, record);
+          state.column++;
+          i = end + 1;
+        } else {
+          for (int j = i; j < end; j++) {
+            sb.append((char) buf[j]);
+          }
+          return end;
+        }
+
+      } else {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Runs the quote and escape part of the state machine over a field that is
+   * not projected, as MultiLineCsvParser.skipField does over chars.  The
+   * bytes of multi-byte sequences are regular and are not decoded.
+   *
+   * @return index of the separator, CR or LF outside of quotes that ends the
+   *         field, or limit.  The fields of a rejected record don't end at
+   *         separators, only at the CR or LF that may end the record.
+   */
+  private int skipField(State state, byte[] buf, int i, int limit) {
+    while (true) {
+      int end = classes.skipPlain(buf, i, limit, state.inQuotes);
+      if (end > i && (!strictQuotes || state.inQuotes)) {
+        // a regular char ends any escape
+        state.escapeFound(false);
+      }
+      if (end >= limit) {
+        return limit;
+      }
+
+      switch (classes.classOf(buf[end])) {
+        case CharClasses.QUOTE:
+          state.quoteFound();
+          state.escapeFound(false);
+          break;
+
+        case CharClasses.ESCAPE:
+          state.escapeFound(true);
+          break;
+
+        case CharClasses.SEPARATOR:
+          // only stopped at outside of quotes
+          state.escapeFound(false);
+          if (state.rejected) {
+            break;
+          }
+          return end;
+
+        case CharClasses.CR:
+        case CharClasses.LF:
+          // outside of quotes: whether it ends the record is up to parseBytes
+          return end;
+
+        default:
+          // a byte of a multi-byte sequence
+          if (!strictQuotes || state.inQuotes) {
+            state.escapeFound(false);
+          }
+      }
+      i = end + 1;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package net.quux00.simplecsv;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A StructuralScanner using the JDK Vector API.  Each step loads one vector
+ * of chars (16 with AVX2, 32 with AVX-512) or bytes (32 or 64), compares it
+ * against every structural char at once and ORs the results into a mask of
+ * the structural positions, simdjson style.  The first set bit of the mask is
+ * the next char the parser has to handle; a mask with no bits set means the
+ * whole vector is plain field content.
+ *
+ * Compiled for Java 17 with --add-modules jdk.incubator.vector, into the
+ * multi-release part of the jar; see StructuralScanner for how it is loaded.
+ */
+final class VectorStructuralScanner extends StructuralScanner {
+  private static final VectorSpecies<Short> CHARS = ShortVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+  private final short separator;
+  private final short quotechar;
+  private final short escapechar;
+
+  VectorStructuralScanner(char separator, char quotechar, char escapechar) {
+    this.separator = (short) separator;
+    this.quotechar = (short) quotechar;
+    this.escapechar = (short) escapechar;
+  }
+
+  @Override
+  int skipPlain(char[] buf, int from, int to, boolean inQuotes) {
+    final int lanes = CHARS.length();
+    int i = from;
+    for (; i <= to - lanes; i += lanes) {
+      ShortVector v = ShortVector.fromCharArray(CHARS, buf, i);
+      VectorMask<Short> structural = v.eq(quotechar).or(v.eq(escapechar));
+      if (!inQuotes) {
+        structural = structural.or(v.eq(separator)).or(v.eq((short) '\n')).or(v.eq((short) '\r'));
+      }
+      if (structural.anyTrue()) {
+        return i + structural.firstTrue();
+      }
+    }
+    return i;
+  }
+
+  @Override
+  int skipPlain(byte[] buf, int from, int to, boolean inQuotes) {
+    final int lanes = BYTES.length();
+    // the structural chars of the Utf8CsvParser are ASCII
+    final byte quote = (byte) quotechar;
+    final byte escape = (byte) escapechar;
+    final byte sep = (byte) separator;
+    int i = from;
+    for (; i <= to - lanes; i += lanes) {
+      ByteVector v = ByteVector.fromArray(BYTES, buf, i);
+      VectorMask<Byte> structural = v.eq(quote).or(v.eq(escape)).or(v.compare(VectorOperators.LT, (byte) 0));
+      if (!inQuotes) {
+        structural = structural.or(v.eq(sep)).or(v.eq((byte) '\n')).or(v.eq((byte) '\r'));
+      }
+      if (structural.anyTrue()) {
+        return i + structural.firstTrue();
+      }
+    }
+    return i;
+  }
+}
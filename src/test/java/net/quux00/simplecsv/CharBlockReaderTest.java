@@ -0,0 +1,128 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CharBlockReaderTest {
+
+  @Test
+  public void testReadLineHandlesAllLineEndings() throws IOException {
+    CharBlockReader cbr = new CharBlockReader(new StringReader("a,b\nc,d\r\ne,f\rg,h"), 4);
+    assertEquals("a,b", cbr.readLine());
+    assertEquals("c,d", cbr.readLine());
+    assertEquals("e,f", cbr.readLine());
+    assertEquals("g,h", cbr.readLine());
+    assertNull(cbr.readLine());
+    cbr.close();
+  }
+
+  @Test
+  public void testReadLineReturnsEmptyLines() throws IOException {
+    CharBlockReader cbr = new CharBlockReader(new StringReader("\n\r\n\r"), 2);
+    assertEquals("", cbr.readLine());
+    assertEquals("", cbr.readLine());
+    assertEquals("", cbr.readLine());
+    assertNull(cbr.readLine());
+    cbr.close();
+  }
+
+  @Test
+  public void testLinesLongerThanTheBlockGrowTheWindow() throws IOException {
+    String longLine = SimpleCsvParserTest.longLine;
+    CharBlockReader cbr = new CharBlockReader(new StringReader(longLine + "\r\n" + longLine), 8);
+    assertEquals(longLine, cbr.readLine());
+    assertEquals(longLine, cbr.readLine());
+    assertNull(cbr.readLine());
+    cbr.close();
+  }
+
+  @Test
+  public void testReadAfterCRSkipsTheLF() throws IOException {
+    // the CR ends the block, so the LF is only seen on the next fill
+    CharBlockReader cbr = new CharBlockReader(new StringReader("ab\r\ncd"), 3);
+    assertEquals("ab", cbr.readLine());
+    assertEquals('c', cbr.read());
+    char[] cbuf = new char[4];
+    assertEquals(1, cbr.read(cbuf, 0, 4));
+    assertEquals('d', cbuf[0]);
+    assertEquals(-1, cbr.read());
+    cbr.close();
+  }
+
+  @Test
+  public void testSimpleParserTokenizesAcrossBlockBoundaries() throws IOException {
+    String data = "a,\"b,b\",c\r\n" + SimpleCsvParserTest.longLine + "\n,,\r\"x\"";
+    CharBlockReader cbr = new CharBlockReader(new StringReader(data), 5);
+    CsvParser parser = new SimpleCsvParser();
+
+    List<String> toks = parser.parseNext(cbr);
+    assertEquals(3, toks.size());
+    assertEquals("b,b", toks.get(1));
+
+    toks = parser.parseNext(cbr);
+    assertEquals(parser.parse(SimpleCsvParserTest.longLine), toks);
+
+    toks = parser.parseNext(cbr);
+    assertEquals(3, toks.size());
+    assertEquals("", toks.get(2));
+
+    toks = parser.parseNext(cbr);
+    assertEquals(1, toks.size());
+    assertEquals("x", toks.get(0));
+
+    assertNull(parser.parseNext(cbr));
+    cbr.close();
+  }
+
+  @Test
+  public void testMultiLineParserTokenizesAcrossBlockBoundaries() throws IOException {
+    String data = "a,\"b\r\nb\",c\r\n\"Stan \"\"The Man\"\"\",x\r" +
+        "\"\"\"\"\"\",\"test\"\n\\\"q\\\",\"a\\\"\nb\"\r\n\r\n" + SimpleCsvParserTest.longLine;
+    CsvParser[] parsers = new CsvParser[] {
+        new CsvParserBuilder().multiLine(true).build(),
+        new CsvParserBuilder().supportRfc4180QuotedQuotes(true).build(),
+        new CsvParserBuilder().supportRfc4180QuotedQuotes(true).retainEscapeChars(false).build(),
+        new CsvParserBuilder().multiLine(true).strictQuotes(true).build()
+    };
+
+    for (CsvParser parser : parsers) {
+      // the per-character path over a plain Reader is the reference
+      List<List<String>> expected = readAll(parser, new StringReader(data));
+      for (int blockSize = 1; blockSize < 24; blockSize++) {
+        List<List<String>> actual = readAll(parser, new CharBlockReader(new StringReader(data), blockSize));
+        assertEquals("block size " + blockSize, expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testMultiLineParserHandlesCRLFSplitAcrossBlocks() throws IOException {
+    CsvParser parser = new CsvParserBuilder().multiLine(true).build();
+    CharBlockReader cbr = new CharBlockReader(new StringReader("ab,c\r\nd"), 5);
+    List<String> toks = parser.parseNext(cbr);
+    assertEquals(2, toks.size());
+    assertEquals("c", toks.get(1));
+    toks = parser.parseNext(cbr);
+    assertEquals(1, toks.size());
+    assertEquals("d", toks.get(0));
+    assertNull(parser.parseNext(cbr));
+    cbr.close();
+  }
+
+  private static List<List<String>> readAll(CsvParser parser, Reader reader) throws IOException {
+    List<List<String>> records = new ArrayList<List<String>>();
+    List<String> toks;
+    while ((toks = parser.parseNext(reader)) != null) {
+      records.add(toks);
+    }
+    return records;
+  }
+}
@@ -0,0 +1,114 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CharClassesTest {
+
+  @Test
+  public void testClasses() {
+    CharClasses cc = new CharClasses(',', '"', '\\');
+    assertEquals(CharClasses.SEPARATOR, cc.classOf(','));
+    assertEquals(CharClasses.QUOTE, cc.classOf('"'));
+    assertEquals(CharClasses.ESCAPE, cc.classOf('\\'));
+    assertEquals(CharClasses.CR, cc.classOf('\r'));
+    assertEquals(CharClasses.LF, cc.classOf('\n'));
+    assertEquals(CharClasses.REGULAR, cc.classOf('a'));
+    assertEquals(CharClasses.REGULAR, cc.classOf('é'));
+    assertEquals(CharClasses.REGULAR, cc.classOf((byte) 0xC3));
+    assertEquals(CharClasses.QUOTE, cc.classOf((byte) '"'));
+  }
+
+  @Test
+  public void testUndefinedCharsHaveNoClass() {
+    CharClasses cc = new CharClasses('\t', ParserUtil.NULL_CHARACTER, ParserUtil.NULL_CHARACTER);
+    assertEquals(CharClasses.REGULAR, cc.classOf(ParserUtil.NULL_CHARACTER));
+    assertEquals(CharClasses.SEPARATOR, cc.classOf('\t'));
+    assertEquals(CharClasses.REGULAR, cc.classOf('"'));
+  }
+
+  @Test
+  public void testSkipPlain() {
+    CharClasses cc = new CharClasses(',', '"', '\\');
+    char[] chars = "abc,d\"e\rf\\g".toCharArray();
+    assertEquals(3, cc.skipPlain(chars, 0, chars.length, false));
+    assertEquals(3, cc.skipPlain(chars, 3, chars.length, false));
+    // separator and CR are regular in quotes
+    assertEquals(5, cc.skipPlain(chars, 0, chars.length, true));
+    assertEquals(9, cc.skipPlain(chars, 6, chars.length, true));
+    assertEquals(7, cc.skipPlain(chars, 6, chars.length, false));
+    assertEquals(2, cc.skipPlain(chars, 0, 2, false));
+
+    byte[] bytes = new byte[] {'a', 'b', (byte) 0xC3, (byte) 0xA9, ','};
+    assertEquals(2, cc.skipPlain(bytes, 0, bytes.length, false));
+    assertEquals(3, cc.skipPlain(new byte[] {(byte) 'a', (byte) 'b', (byte) 'c', (byte) ','}, 0, 4, false));
+  }
+
+  @Test
+  public void testSkipWordsMatchesTable() {
+    byte[] alphabet = {'a', ',', '"', '\\', '\r', '\n', '\t', 0, (byte) 0x80, (byte) 0xC3, (byte) 0xA7};
+    CharClasses[] dialects = {
+        new CharClasses(',', '"', '\\'),
+        new CharClasses('\t', ParserUtil.NULL_CHARACTER, ParserUtil.NULL_CHARACTER),
+        new CharClasses('\u00a7', '"', ParserUtil.NULL_CHARACTER)
+    };
+    Random random = new Random(3);
+
+    for (CharClasses cc : dialects) {
+      for (int n = 0; n < 2000; n++) {
+        byte[] buf = new byte[random.nextInt(100)];
+        for (int i = 0; i < buf.length; i++) {
+          buf[i] = (random.nextInt(20) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'x');
+        }
+        int from = (buf.length == 0 ? 0 : random.nextInt(buf.length));
+        for (boolean inQuotes : new boolean[] {false, true}) {
+          int expected = cc.skipBytes(buf, from, buf.length, inQuotes);
+          int words = cc.skipWords(buf, from, buf.length, inQuotes);
+          // exact within the whole words, the tail is left to the table
+          int wholeWords = from + (buf.length - from) / 8 * 8;
+          assertEquals(Math.min(expected, wholeWords), words);
+          assertEquals(expected, cc.skipPlain(buf, from, buf.length, inQuotes));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNonAsciiStructuralChars() throws IOException {
+    CharClasses cc = new CharClasses('§', '«', '\\');
+    assertEquals(CharClasses.SEPARATOR, cc.classOf('§'));
+    assertEquals(CharClasses.QUOTE, cc.classOf('«'));
+    char[] chars = "éa§b«c".toCharArray();
+    assertEquals(2, cc.skipPlain(chars, 0, chars.length, false));
+    assertEquals(4, cc.skipPlain(chars, 0, chars.length, true));
+
+    String line = "a§«b§c«§d";
+    assertEquals(Arrays.asList("a", "b§c", "d"), new CsvParserBuilder().separator('§').quoteChar('«').build().parse(line));
+    assertEquals(Arrays.asList("a", "b§c", "d"),
+        new CsvParserBuilder().separator('§').quoteChar('«').trimWhitespace(true).build().parse(line));
+    assertEquals(Arrays.asList("a", "b§c", "d"),
+        new CsvParserBuilder().separator('§').quoteChar('«').multiLine(true).build().parseNext(
+            new CharBlockReader(new StringReader(line + "\n"), 4)));
+  }
+
+  @Test
+  public void testPlainFieldsTakenFromTheLine() throws IOException {
+    String line = "aa,,b b,\"c,d\",e\\,f,ggg";
+    // not retaining outer quotes or escape chars keeps the generic parsers
+    CsvParser simple = new CsvParserBuilder().retainEscapeChars(false).build();
+    assertEquals(Arrays.asList("aa", "", "b b", "c,d", "e", "f", "ggg"), simple.parse(line));
+    CsvParser multi = new CsvParserBuilder().retainEscapeChars(false).multiLine(true).build();
+    for (int blockSize = 1; blockSize <= line.length() + 1; blockSize++) {
+      assertEquals(Arrays.asList("aa", "", "b b", "c,d", "e", "f", "ggg"),
+          multi.parseNext(new CharBlockReader(new StringReader(line + "\n"), blockSize)));
+    }
+    CsvParser retained = new CsvParserBuilder().retainOuterQuotes(true).build();
+    assertEquals(Arrays.asList("aa", "", "b b", "\"c,d\"", "e\\", "f", "ggg"), retained.parse(line));
+  }
+}
@@ -0,0 +1,98 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CsvBatchTest {
+
+  @Test
+  public void testBatchesHoldAllRecords() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'é', '\r', '\n'};
+    Random random = new Random(37);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[random.nextInt(60)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, 8);
+      if (all == null) {
+        continue;
+      }
+      int maxRecords = 1 + random.nextInt(4);
+      String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " max " + maxRecords;
+
+      CsvReader reader = new CsvReader(new CharBlockReader(new StringReader(data), 8), builder.build());
+      List<List<String>> records = new ArrayList<List<String>>();
+      CsvBatch batch;
+      while ((batch = reader.readBatch(maxRecords)) != null) {
+        assertTrue(msg, batch.size() > 0 && batch.size() <= maxRecords);
+        for (int r = 0; r < batch.size(); r++) {
+          List<String> record = batch.toList(r);
+          assertEquals(msg, record.size(), batch.width(r));
+          for (int f = 0; f < record.size(); f++) {
+            assertEquals(msg, record.get(f), batch.get(r, f).toString());
+          }
+          records.add(record);
+        }
+      }
+      assertEquals(msg, all, records);
+      assertEquals(msg, all.size(), reader.checkpoint().getRecords());
+    }
+  }
+
+  @Test
+  public void testFieldAccessors() throws IOException {
+    CsvReader reader = new CsvReader(new StringReader("id,price,day,ok\n1,2.5,2024-02-29,true\n"
+        + "9000000000,-0.125,1970-01-02,no\n"), 1, new CsvParserBuilder().build());
+    CsvBatch batch = reader.readBatch(100);
+    assertEquals(2, batch.size());
+    assertEquals(1, batch.getInt(0, 0));
+    assertEquals(9000000000L, batch.getLong(1, 0));
+    assertEquals(-0.125, batch.getDouble(1, 1), 0.0);
+    assertEquals(19782, batch.getEpochDay(0, 2));
+    assertTrue(batch.getBoolean(0, 3));
+    assertEquals("2.5", new String(batch.getBuffer(), batch.start(0, 1), batch.end(0, 1) - batch.start(0, 1)));
+    assertNull(reader.readBatch(100));
+    try {
+      batch.get(0, 4);
+      fail("Expected an IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testColumnsByName() throws IOException {
+    CsvParserBuilder builder = new CsvParserBuilder().columns("note");
+    CsvReader reader = new CsvReader(new StringReader("id,note\n1,a\n2,b\n3,c\n"), builder.build());
+    assertEquals(Arrays.asList(Arrays.asList("note"), Arrays.asList("a")), reader.readBatch(2).toLists());
+    assertEquals(Arrays.asList(Arrays.asList("b"), Arrays.asList("c")), reader.readBatch(2).toLists());
+    assertNull(reader.readBatch(2));
+  }
+
+  @Test
+  public void testParseErrorRecordNumber() throws IOException {
+    CsvReader reader = new CsvReader(new StringReader("a\nb\nc\n\"d\n"));
+    try {
+      reader.readBatch(10);
+      fail("Expected an IllegalArgumentException for the unbalanced quote");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith(": 4."));
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CsvCheckpointTest {
+
+  @Rule
+  public final TempCsvFile csv = new TempCsvFile("simplecsv-checkpoint");
+
+  // a builder for each kind of source
+  private CsvReaderBuilder source(int kind, String data) throws IOException {
+    switch (kind) {
+      case 0:
+        return new CsvReaderBuilder(new StringReader(data));
+      case 1:
+        return new CsvReaderBuilder(new ByteArrayInputStream(data.getBytes("UTF-8")));
+      case 2:
+        return new CsvReaderBuilder(new FileInputStream(csv.getFile()).getChannel());
+      case 3:
+        return new CsvReaderBuilder(Channels.newChannel(new ByteArrayInputStream(data.getBytes("UTF-8"))));
+      default:
+        return new CsvReaderBuilder(csv.getFile());
+    }
+  }
+
+  @Test
+  public void testResumeAtEveryCheckpoint() throws IOException {
+    String[] alphabet = {"a", "b", ",", "\"", "\\", " ", "é", "日", "😀", "\r", "\n"};
+    Random random = new Random(23);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 1000; n++) {
+      StringBuilder sb = new StringBuilder();
+      int len = random.nextInt(24);
+      for (int i = 0; i < len; i++) {
+        sb.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      String data = sb.toString();
+      csv.write(data);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, 8);
+      if (all == null) {
+        continue;
+      }
+      int kind = n % 5;
+      int skip = random.nextInt(2);
+      String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " source " + kind;
+
+      CsvReader reader = source(kind, data).csvParser(builder.build()).skipLines(skip).build();
+      List<CsvCheckpoint> checkpoints = new ArrayList<CsvCheckpoint>();
+      checkpoints.add(reader.checkpoint());
+      while (reader.readNext() != null) {
+        checkpoints.add(reader.checkpoint());
+      }
+      // past the skipped lines, even if there were no more records
+      CsvCheckpoint end = reader.checkpoint();
+      reader.close();
+
+      for (CsvCheckpoint checkpoint : checkpoints) {
+        int from = (int) Math.max(checkpoint.getRecords(), Math.min(skip, all.size()));
+        reader = source(kind, data).csvParser(builder.build()).skipLines(skip).resumeAt(checkpoint).build();
+        assertEquals(msg + " " + checkpoint, all.subList(from, all.size()), reader.readAll());
+        assertEquals(msg, end, reader.checkpoint());
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void testByteOffsets() throws IOException {
+    String data = "été,\"a b\"\r\n😀,x\r\n";
+    csv.write(data);
+    for (CsvParserBuilder builder : ProjectionTest.dialects()) {
+      CsvReader reader = new CsvReaderBuilder(csv.getFile()).csvParser(builder.build()).build();
+      reader.readNext();
+      assertEquals(new CsvCheckpoint(13, 1), reader.checkpoint());
+      reader.readNext();
+      assertEquals(new CsvCheckpoint(21, 2), reader.checkpoint());
+      reader.close();
+    }
+
+    // char offsets for a Reader
+    CsvReader reader = new CsvReaderBuilder(new StringReader(data)).build();
+    reader.readNext();
+    assertEquals(new CsvCheckpoint(11, 1), reader.checkpoint());
+    reader.readNext();
+    assertEquals(new CsvCheckpoint(17, 2), reader.checkpoint());
+  }
+
+  @Test
+  public void testResumeWithHeaderNames() throws IOException {
+    String data = "id,name\n1,a\n2,b\n";
+    CsvReader reader = new CsvReaderBuilder(new StringReader(data)).columns("name").build();
+    assertEquals(Arrays.asList("name"), reader.readNext());
+    CsvCheckpoint checkpoint = reader.checkpoint();
+    try {
+      new CsvReaderBuilder(new StringReader(data)).columns("name").resumeAt(checkpoint).build();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+    // unless the parser already knows the header
+    CsvParser parser = new CsvParserBuilder().columns("name").build();
+    new CsvReader(new StringReader(data), parser).readNext();
+    reader = new CsvReaderBuilder(new StringReader(data)).csvParser(parser).resumeAt(checkpoint).build();
+    assertEquals(Arrays.asList("a"), reader.readNext());
+  }
+
+  @Test
+  public void testSourceEndsBeforeCheckpoint() {
+    try {
+      new CsvReaderBuilder(new StringReader("a,b\n")).resumeAt(new CsvCheckpoint(10, 1)).build();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CsvColumnReaderTest {
+
+  static final CsvSchema SCHEMA = new CsvSchema().
+      column("id", CsvSchema.Type.LONG).
+      column("qty", CsvSchema.Type.INT).
+      column("price", CsvSchema.Type.DOUBLE).
+      column("city", CsvSchema.Type.STRING).
+      column("day", CsvSchema.Type.DATE);
+
+  @Test
+  public void testReadsColumns() throws IOException {
+    String data = "day,city,id,price,qty\n"
+        + "2024-02-29,Oslo,1,2.5,3\n"
+        + "1970-01-02,\"Rio, RJ\",9000000000,-0.125,\n"
+        + ",Oslo,3,1e3,7\n";
+    CsvColumnReader reader = new CsvColumnReader(new CsvReader(new StringReader(data)), SCHEMA);
+    CsvColumnBatch batch = reader.newBatch(10);
+    assertTrue(reader.readBatch(batch));
+    assertEquals(3, batch.size());
+    assertArrayEquals(new long[] {1, 9000000000L, 3}, subArray(batch.getLongs(0), 3));
+    assertArrayEquals(new int[] {3, 0, 7}, subArray(batch.getInts(1), 3));
+    assertTrue(batch.isNull(1, 1));
+    assertFalse(batch.isNull(1, 2));
+    assertEquals(2.5, batch.getDoubles(2)[0], 0.0);
+    assertEquals(1000.0, batch.getDoubles(2)[2], 0.0);
+    assertArrayEquals(new String[] {"Oslo", "Rio, RJ"}, batch.getDictionary(3));
+    assertArrayEquals(new int[] {0, 1, 0}, subArray(batch.getCodes(3), 3));
+    assertEquals("Rio, RJ", batch.getString(3, 1));
+    assertEquals(19782, batch.getInts(4)[0]);
+    assertEquals(1, batch.getInts(4)[1]);
+    assertEquals(1L << 2, batch.getNulls(4)[0]);
+    assertFalse(reader.readBatch(batch));
+    assertEquals(0, batch.size());
+    reader.close();
+  }
+
+  @Test
+  public void testMatchesRecordsAcrossBatches() throws IOException {
+    Random random = new Random(41);
+    String[] cities = {"Oslo", "Rio", "Lima", "", "Köln"};
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append(random.nextInt(3) == 0 ? "" : String.valueOf(random.nextInt())).append(',');
+      sb.append(cities[random.nextInt(cities.length)]).append(',');
+      sb.append(random.nextInt(1000) / 8.0).append('\n');
+    }
+    String data = sb.toString();
+    List<List<String>> records = new CsvReader(new StringReader(data)).readAll();
+    CsvSchema schema = new CsvSchema().
+        column(2, CsvSchema.Type.DOUBLE).
+        column(0, CsvSchema.Type.INT).
+        column(1, CsvSchema.Type.STRING);
+
+    CsvColumnReader reader = new CsvColumnReader(new CsvReader(new StringReader(data)), schema);
+    CsvColumnBatch batch = reader.newBatch(100);
+    int n = 0;
+    while (reader.readBatch(batch)) {
+      for (int row = 0; row < batch.size(); row++, n++) {
+        List<String> record = records.get(n);
+        assertEquals(Double.parseDouble(record.get(2)), batch.getDoubles(0)[row], 0.0);
+        if (record.get(0).isEmpty()) {
+          assertTrue(batch.isNull(1, row));
+        } else {
+          assertEquals(Integer.parseInt(record.get(0)), batch.getInts(1)[row]);
+        }
+        assertEquals(record.get(1).isEmpty() ? null : record.get(1), batch.getString(2, row));
+        assertTrue(batch.getDictionarySize(2) <= cities.length);
+      }
+    }
+    assertEquals(records.size(), n);
+  }
+
+  @Test
+  public void testErrors() throws IOException {
+    CsvColumnReader reader = new CsvColumnReader(new CsvReader(new StringReader("id,qty,price,city,day\n"
+        + "1,2,3.0,x,2024-01-01\n2,two,3.0,y,2024-01-01\n")), SCHEMA);
+    CsvColumnBatch batch = reader.newBatch(10);
+    try {
+      reader.readBatch(batch);
+      fail("Expected a NumberFormatException to be reported");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith("in column qty: 3."));
+      assertEquals(1, batch.size());
+    }
+    try {
+      batch.getDoubles(0);
+      fail("Expected an IllegalStateException for the wrong column type");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    reader = new CsvColumnReader(new CsvReader(new StringReader("id,city\n")), SCHEMA);
+    try {
+      reader.readBatch(reader.newBatch(10));
+      fail("Expected an IllegalArgumentException for the missing column");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Column qty not found in the header", e.getMessage());
+    }
+
+    // the records the filters reject are counted too
+    reader = new CsvColumnReader(new CsvReaderBuilder(new StringReader("1,5\n2,b\n1,x\n")).
+        filter(0, FieldFilters.equalTo("1")).build(), new CsvSchema().column(1, CsvSchema.Type.INT));
+    try {
+      reader.readBatch(reader.newBatch(10));
+      fail("Expected a NumberFormatException to be reported");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith("in column #1: 3."));
+    }
+
+    reader = new CsvColumnReader(new CsvReader(new StringReader("")), SCHEMA);
+    assertFalse(reader.readBatch(reader.newBatch(10)));
+  }
+
+  private static long[] subArray(long[] values, int size) {
+    long[] sub = new long[size];
+    System.arraycopy(values, 0, sub, 0, size);
+    return sub;
+  }
+
+  private static int[] subArray(int[] values, int size) {
+    int[] sub = new int[size];
+    System.arraycopy(values, 0, sub, 0, size);
+    return sub;
+  }
+}
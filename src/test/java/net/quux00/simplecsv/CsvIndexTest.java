@@ -0,0 +1,120 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CsvIndexTest {
+
+  @Rule
+  public final TempCsvFile csv = new TempCsvFile("simplecsv-index");
+
+  File file;
+  File indexFile;
+
+  @Before
+  public void setUp() {
+    file = csv.getFile();
+    indexFile = CsvIndex.sidecarOf(file);
+  }
+
+  @After
+  public void tearDown() {
+    indexFile.delete();
+  }
+
+  @Test
+  public void testReaderAtEveryRecord() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'é', '\r', '\n'};
+    Random random = new Random(19);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 300; n++) {
+      char[] chars = new char[random.nextInt(40)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, 8);
+      if (all == null) {
+        continue;
+      }
+      csv.write(data);
+      int interval = 1 + random.nextInt(3);
+      CsvIndex index = CsvIndex.build(file, builder, interval);
+      String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " interval " + interval;
+      assertEquals(msg, all.size(), index.getRecordCount());
+
+      for (int record = 0; record <= all.size(); record++) {
+        CsvReader reader = index.readerAt(record, builder);
+        assertEquals(msg + " record " + record, all.subList(record, all.size()), reader.readAll());
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void testSidecarFile() throws IOException {
+    StringBuilder sb = new StringBuilder("id,note\n");
+    for (int i = 0; i < 100; i++) {
+      sb.append(i).append(",\"line\n").append(i).append("\"\n");
+    }
+    csv.write(sb.toString());
+    CsvParserBuilder builder = new CsvParserBuilder().multiLine(true);
+    CsvIndex.build(file, builder, 10).write();
+
+    CsvIndex index = CsvIndex.read(file);
+    assertEquals(101, index.getRecordCount());
+    assertEquals(10, index.getInterval());
+    assertTrue(index.isCurrent());
+    CsvReader reader = index.readerAt(57, builder);
+    assertEquals("56", reader.readNext().get(0));
+    assertEquals("line\n57", reader.readNext().get(1));
+    reader.close();
+    assertNull(index.readerAt(101, builder).readNext());
+
+    try {
+      index.readerAt(1, new CsvParserBuilder());
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      index.readerAt(102, builder);
+      fail("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+    }
+
+    csv.write(sb.toString().replace("line", "LINE"));
+    assertFalse(index.isCurrent());
+    try {
+      index.readerAt(1, builder);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+  @Test
+  public void testNotAnIndexFile() throws IOException {
+    csv.write("a,b\n");
+    try {
+      CsvIndex.read(file, file);
+      fail("expected IOException");
+    } catch (IOException e) {
+    }
+    CsvIndex.build(file, new CsvParserBuilder()).write(indexFile);
+    assertEquals(1, CsvIndex.read(file, indexFile).getRecordCount());
+  }
+}
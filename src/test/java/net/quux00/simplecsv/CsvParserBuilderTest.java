@@ -82,6 +82,28 @@ public class CsvParserBuilderTest {
     assertTrue(p instanceof MultiLineCsvParser);
   }
 
+  @Test
+  public void testCreateUtf8Parser() {
+    CsvParser p = new CsvParserBuilder().utf8Bytes(true).build();
+    assertTrue(p instanceof Utf8CsvParser);
+
+    p = new CsvParserBuilder().utf8Bytes(true).multiLine(true).supportRfc4180QuotedQuotes(true).build();
+    assertTrue(p instanceof Utf8CsvParser);
+
+    p = new CsvParserBuilder().utf8Bytes(false).build();
+    assertTrue(p instanceof SimpleCsvParser);
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testRequestUtf8BytesAndSettingMultiLineSetToFalseThrowsException() {
+    new CsvParserBuilder().multiLine(false).utf8Bytes(true).build();
+  }
+
+  @Test(expected=UnsupportedOperationException.class)
+  public void testUtf8ParserRequiresAsciiSeparator() {
+    new CsvParserBuilder().utf8Bytes(true).separator('\u00A7').build();
+  }
+
   @Test(expected=IllegalStateException.class)
   public void testRequestThreadSafeAndSettingMultiLineSetToFalseThrowsException() {
     new CsvParserBuilder().multiLine(false).threadSafe(true).build();
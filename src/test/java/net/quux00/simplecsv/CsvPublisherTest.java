@@ -0,0 +1,202 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CsvPublisherTest {
+
+  static final Executor DIRECT = new Executor() {
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  static String data(int records) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < records; i++) {
+      sb.append(i).append(",\"x ").append(i).append("\"\n");
+    }
+    return sb.toString();
+  }
+
+  // requests one batch at a time, or `initial` batches up front
+  static class TestSubscriber implements CsvPublisher.Subscriber<List<List<String>>> {
+    final long initial;
+    final List<List<String>> records = new ArrayList<List<String>>();
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+    final CountDownLatch terminated = new CountDownLatch(1);
+    CsvPublisher.Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    TestSubscriber(long initial) {
+      this.initial = initial;
+    }
+
+    public void onSubscribe(CsvPublisher.Subscription s) {
+      subscription = s;
+      if (initial > 0) {
+        s.request(initial);
+      }
+    }
+
+    public void onNext(List<List<String>> batch) {
+      records.addAll(batch);
+      batchSizes.add(batch.size());
+    }
+
+    public void onError(Throwable t) {
+      error = t;
+      terminated.countDown();
+    }
+
+    public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+  }
+
+  @Test
+  public void testPublishesAllRecordsInBatches() throws Exception {
+    String data = data(1000);
+    List<List<String>> expected = new CsvReader(new StringReader(data)).readAll();
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      for (long initial : new long[] {1, 3, Long.MAX_VALUE}) {
+        final TestSubscriber subscriber = new TestSubscriber(initial) {
+          @Override
+          public void onNext(List<List<String>> batch) {
+            super.onNext(batch);
+            if (initial == 1) {
+              subscription.request(1);
+            }
+          }
+        };
+        new CsvPublisher(new CsvReader(new StringReader(data)), pool, 64).subscribe(subscriber);
+        if (initial == 3) {
+          for (int i = 0; i < 20; i++) {
+            subscriber.subscription.request(1);
+          }
+        }
+        assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertTrue(subscriber.completed);
+        assertEquals(expected, subscriber.records);
+        for (int i = 0; i < subscriber.batchSizes.size() - 1; i++) {
+          assertEquals(64, (int) subscriber.batchSizes.get(i));
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReadsOnlyWhatIsRequested() throws IOException {
+    CsvReader reader = new CsvReader(new StringReader(data(100)));
+    TestSubscriber subscriber = new TestSubscriber(0);
+    new CsvPublisher(reader, DIRECT, 10).subscribe(subscriber);
+    assertEquals(0, reader.checkpoint().getRecords());
+
+    subscriber.subscription.request(2);
+    assertEquals(20, subscriber.records.size());
+    // one record is read past a full batch to look for the end of the input
+    assertEquals(21, reader.checkpoint().getRecords());
+    assertFalse(subscriber.completed);
+
+    subscriber.subscription.request(8);
+    assertEquals(100, subscriber.records.size());
+    // the input ends with the last batch asked for, so it is completed
+    // without another request
+    assertTrue(subscriber.completed);
+    assertEquals(10, subscriber.batchSizes.size());
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    final boolean[] closed = {false};
+    StringReader source = new StringReader(data(100)) {
+      @Override
+      public void close() {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    TestSubscriber subscriber = new TestSubscriber(1);
+    new CsvPublisher(new CsvReader(source), DIRECT, 10).subscribe(subscriber);
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(1);
+    assertEquals(10, subscriber.records.size());
+    assertTrue(closed[0]);
+    assertFalse(subscriber.completed);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void testThrowingSubscriberIsCancelled() throws Exception {
+    final boolean[] closed = {false};
+    StringReader source = new StringReader(data(100)) {
+      @Override
+      public void close() {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    TestSubscriber subscriber = new TestSubscriber(0) {
+      @Override
+      public void onNext(List<List<String>> batch) {
+        super.onNext(batch);
+        throw new IllegalStateException("subscriber failed");
+      }
+    };
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      new CsvPublisher(new CsvReader(source), pool, 10).subscribe(subscriber);
+      subscriber.subscription.request(5);
+      subscriber.subscription.request(5);
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(1, subscriber.batchSizes.size());
+    assertTrue(closed[0]);
+    assertFalse(subscriber.completed);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void testErrors() {
+    // a parse error
+    TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+    new CsvPublisher(new CsvReader(new StringReader("a,b\n\"c,d\n")), DIRECT).subscribe(subscriber);
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+    assertEquals(0, subscriber.records.size());
+
+    // a non-positive request
+    subscriber = new TestSubscriber(0);
+    CsvPublisher publisher = new CsvPublisher(new CsvReader(new StringReader("a,b\n")), DIRECT);
+    publisher.subscribe(subscriber);
+    subscriber.subscription.request(0);
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+
+    // a second subscriber
+    TestSubscriber second = new TestSubscriber(1);
+    publisher.subscribe(second);
+    assertTrue(second.error instanceof IllegalStateException);
+  }
+}
@@ -5,11 +5,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
@@ -1139,4 +1141,21 @@ public class CsvReaderTest {
     
     r.close();
   }
+
+  @Test
+  public void testLeavesCallersBufferedReaderWhereItIs() throws IOException {
+    BufferedReader br = new BufferedReader(new StringReader("1,2\n3,4\n5,6\n"));
+    CsvReader r = new CsvReader(br);
+    assertEquals(Arrays.asList("1", "2"), r.readNext());
+    assertEquals("3,4", br.readLine());
+    assertEquals(Arrays.asList("5", "6"), r.readNext());
+    assertNull(r.readNext());
+    try {
+      r.checkpoint();
+      fail("Expected an UnsupportedOperationException for a caller's BufferedReader");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    r.close();
+  }
 }
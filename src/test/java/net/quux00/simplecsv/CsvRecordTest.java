@@ -0,0 +1,83 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvRecordTest {
+
+  @Test
+  public void testReadNextReusesRecord() throws IOException {
+    for (CsvParser parser : new CsvParser[] {
+        new SimpleCsvParser(),
+        new CsvParserBuilder().multiLine(true).build(),
+        new CsvParserBuilder().utf8Bytes(true).build() }) {
+
+      String data = CsvRecordViewTest.SIMPLE_DATA;
+      List<List<String>> expected = new CsvReader(new StringReader(data), parser).readAll();
+
+      CsvReader cr = new CsvReader(new StringReader(data), parser);
+      CsvRecord record = new CsvRecord();
+      List<List<String>> actual = new ArrayList<List<String>>();
+      while (cr.readNext(record)) {
+        actual.add(record.toList());
+      }
+      assertEquals(expected, actual);
+      assertEquals(0, record.size());
+    }
+  }
+
+  @Test
+  public void testFieldsTrackRecord() throws IOException {
+    CsvReader cr = new CsvReader(new StringReader("a,bb,ccc\nd\n"));
+    CsvRecord record = new CsvRecord();
+    assertTrue(cr.readNext(record));
+    CharSequence first = record.get(0);
+    assertEquals("a", first.toString());
+    assertTrue(cr.readNext(record));
+    assertEquals(1, record.size());
+    assertEquals("d", first.toString());
+    assertFalse(cr.readNext(record));
+  }
+
+  @Test
+  public void testAddAndClear() {
+    CsvRecord record = new CsvRecord();
+    record.add("one");
+    record.add(new StringBuilder("two"));
+    record.add("");
+    assertEquals(Arrays.asList("one", "two", ""), record.toList());
+    assertEquals("two", record.getString(1));
+    assertEquals(0, record.get(2).length());
+
+    record.clear();
+    assertEquals(0, record.size());
+    record.add("x");
+    assertEquals(Arrays.asList("x"), record.toList());
+  }
+
+  @Test
+  public void testEquals() {
+    CsvRecord r1 = new CsvRecord();
+    CsvRecord r2 = new CsvRecord();
+    r1.add("ab");
+    r1.add("c");
+    r2.add("a");
+    r2.add("bc");
+    assertFalse(r1.equals(r2));
+
+    r2.clear();
+    r2.add("ab");
+    r2.add("c");
+    assertEquals(r1, r2);
+    assertEquals(r1.hashCode(), r2.hashCode());
+  }
+}
@@ -0,0 +1,166 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvRecordViewTest {
+
+  static final String SIMPLE_DATA = "a,b,c\n" +
+      " \"quoted, with comma\" , x \\\"y\\\" ,\r\n" +
+      "été,\"Stan \\\"The Man\\\"\",日本語\r" +
+      "'single',\"\",\\n\n";
+
+  static final String MULTI_DATA = SIMPLE_DATA + "1,\"two\nlines\",3\r\nlast";
+
+  private static List<CsvParserBuilder> builders() {
+    List<CsvParserBuilder> builders = new ArrayList<CsvParserBuilder>();
+    builders.add(new CsvParserBuilder());
+    builders.add(new CsvParserBuilder().trimWhitespace(true));
+    builders.add(new CsvParserBuilder().alwaysQuoteOutput(true));
+    builders.add(new CsvParserBuilder().retainOuterQuotes(true).retainEscapeChars(false));
+    builders.add(new CsvParserBuilder().strictQuotes(true));
+    builders.add(new CsvParserBuilder().multiLine(true));
+    builders.add(new CsvParserBuilder().multiLine(true).trimWhitespace(true).retainEscapeChars(false));
+    builders.add(new CsvParserBuilder().multiLine(true).alwaysQuoteOutput(true));
+    builders.add(new CsvParserBuilder().utf8Bytes(true));
+    return builders;
+  }
+
+  private static List<List<String>> readAllViews(CsvReader cr) throws IOException {
+    List<List<String>> records = new ArrayList<List<String>>();
+    CsvRecordView view;
+    while ((view = cr.readNextView()) != null) {
+      List<String> toks = new ArrayList<String>();
+      for (int i = 0; i < view.size(); i++) {
+        toks.add(view.get(i).toString());
+      }
+      assertEquals(view.toList(), toks);
+      records.add(toks);
+    }
+    return records;
+  }
+
+  @Test
+  public void testViewsMatchReadNext() throws IOException {
+    for (CsvParserBuilder builder : builders()) {
+      CsvParser parser = builder.build();
+      String data = (parser instanceof MultiLineCsvParser ? MULTI_DATA : SIMPLE_DATA);
+      List<List<String>> expected = new CsvReader(new StringReader(data), parser).readAll();
+
+      assertEquals(expected, readAllViews(new CsvReader(new StringReader(data), parser)));
+      // not a block reader, so the parsers take their fallback paths
+      assertEquals(expected, readAllViews(new CsvReader(new CharBlockReader(new StringReader(data), 3), parser)));
+
+      if (parser instanceof Utf8CsvParser) {
+        CsvReader cr = new CsvReaderBuilder(new ByteArrayInputStream(data.getBytes("UTF-8"))).
+            csvParser(parser).build();
+        assertEquals(expected, readAllViews(cr));
+      }
+    }
+  }
+
+  @Test
+  public void testViewIsReused() throws IOException {
+    CsvReader cr = new CsvReader(new StringReader("aaaa,b\nc,dddd,e\n"));
+    CsvRecordView first = cr.readNextView();
+    CharSequence field = first.get(0);
+    String kept = first.getString(0);
+    assertEquals("aaaa", field.toString());
+
+    CsvRecordView second = cr.readNextView();
+    assertSame(first, second);
+    assertEquals(3, second.size());
+    // the slice now shows the next record, but the copy is unchanged
+    assertEquals("c", field.toString());
+    assertEquals("aaaa", kept);
+    assertNull(cr.readNextView());
+  }
+
+  @Test
+  public void testFieldIsCharSequence() throws IOException {
+    CsvRecordView view = new CsvReader(new StringReader("hello,\"wo,rld\"")).readNextView();
+    CharSequence cs = view.get(1);
+    assertEquals(6, cs.length());
+    assertEquals('w', cs.charAt(0));
+    assertEquals(',', cs.charAt(2));
+    assertEquals("o,r", cs.subSequence(1, 4));
+    assertTrue("wo,rld".contentEquals(cs));
+    assertTrue(new StringBuilder("x").append(cs).toString().equals("xwo,rld"));
+    assertEquals("[hello, wo,rld]", view.toString());
+
+    try {
+      cs.charAt(6);
+      fail();
+    } catch (IndexOutOfBoundsException e) {}
+    try {
+      view.get(2);
+      fail();
+    } catch (IndexOutOfBoundsException e) {}
+  }
+
+  @Test
+  public void testWideRecordsAndLongFields() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append(i).append(',');
+    }
+    sb.append(SimpleCsvParserTest.longLine).append('\n').append("x,y\n");
+    List<String> expected = new CsvReader(new StringReader(sb.toString())).readNext();
+    CsvReader cr = new CsvReader(new StringReader(sb.toString()));
+    CsvRecordView view = cr.readNextView();
+    assertTrue(view.size() > 100);
+    assertEquals("99", view.get(99).toString());
+    assertEquals(expected, view.toList());
+    view = cr.readNextView();
+    assertEquals(Arrays.asList("x", "y"), view.toList());
+  }
+
+  @Test
+  public void testMixedWithReadNextAndSkipLines() throws IOException {
+    CsvReader cr = new CsvReaderBuilder(new StringReader("h1,h2\na,b\nc,d\ne,f\n")).skipLines(1).build();
+    assertEquals(Arrays.asList("a", "b"), cr.readNextView().toList());
+    assertEquals(Arrays.asList("c", "d"), cr.readNext());
+    assertEquals(Arrays.asList("e", "f"), cr.readNextView().toList());
+    assertNull(cr.readNextView());
+  }
+
+  @Test
+  public void testParserWithoutViewSupport() throws IOException {
+    CsvParser listOnly = new CsvParser() {
+      final SimpleCsvParser p = new SimpleCsvParser();
+      public List<String> parse(String s) {
+        return p.parse(s);
+      }
+      public List<String> parseNext(Reader reader) throws IOException {
+        return p.parseNext(reader);
+      }
+    };
+    CsvReader cr = new CsvReader(new StringReader(SIMPLE_DATA), listOnly);
+    assertEquals(new CsvReader(new StringReader(SIMPLE_DATA)).readAll(), readAllViews(cr));
+  }
+
+  @Test
+  public void testErrorHasRecordNumber() throws IOException {
+    CsvReader cr = new CsvReader(new StringReader("a,b\n\"c,d\n"));
+    cr.readNextView();
+    try {
+      cr.readNextView();
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith(": 2."));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class CsvScannerTest {
+
+  @Test
+  public void testSameCountsAsReadAll() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', '\u00e9', '\r', '\n'};
+    Random random = new Random(13);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 3000; n++) {
+      char[] chars = new char[random.nextInt(24)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, 1 + random.nextInt(8));
+      CsvScanner.Summary summary = new CsvScanner(builder).scan(new StringReader(data));
+      String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " " + summary;
+      if (!builder.allowUnbalancedQuotes) {
+        // the parser throws on the first unbalanced quote
+        boolean threw = false;
+        try {
+          new CsvReader(new StringReader(data), builder.build()).readAll();
+        } catch (IllegalArgumentException e) {
+          threw = true;
+        } catch (StringIndexOutOfBoundsException e) {
+          continue;
+        }
+        assertEquals(msg, threw, !summary.isBalanced());
+      }
+      if (all == null) {
+        continue;
+      }
+
+      SortedMap<Integer, Long> expected = new TreeMap<Integer, Long>();
+      for (List<String> record : all) {
+        Long count = expected.get(record.size());
+        expected.put(record.size(), (count == null ? 1 : count + 1));
+      }
+      assertEquals(msg, all.size(), summary.getRecordCount());
+      assertEquals(msg, expected, summary.getColumnCounts());
+
+      CsvScanner.Summary bytes = new CsvScanner(builder).scan(new ByteArrayInputStream(data.getBytes("UTF-8")));
+      assertEquals(msg, summary.getColumnCounts(), bytes.getColumnCounts());
+      assertEquals(msg, summary.getUnbalancedRecord(), bytes.getUnbalancedRecord());
+    }
+  }
+
+  @Test
+  public void testSummary() throws IOException {
+    String data = "id,name,city\n1,\"Smith, J\",Paris\n2,Doe\n\n3,\"New\nYork\",x\n";
+    CsvScanner.Summary summary = new CsvScanner(new CsvParserBuilder().multiLine(true)).scan(new StringReader(data));
+    assertEquals(5, summary.getRecordCount());
+    assertEquals(1, summary.getMinColumns());
+    assertEquals(3, summary.getMaxColumns());
+    SortedMap<Integer, Long> counts = new TreeMap<Integer, Long>();
+    counts.put(1, 1L);
+    counts.put(2, 1L);
+    counts.put(3, 3L);
+    assertEquals(counts, summary.getColumnCounts());
+    assertTrue(summary.isBalanced());
+    assertEquals(-1, summary.getUnbalancedRecord());
+    assertEquals(-1, summary.getUnbalancedOffset());
+
+    // the line ending in the quoted field ends a record without multi-line
+    summary = new CsvScanner(new CsvParserBuilder()).scan(new StringReader(data));
+    assertEquals(6, summary.getRecordCount());
+    assertFalse(summary.isBalanced());
+    assertEquals(5, summary.getUnbalancedRecord());
+    assertEquals(data.indexOf("\"New"), summary.getUnbalancedOffset());
+
+    summary = new CsvScanner(new CsvParserBuilder()).scan(new StringReader(""));
+    assertEquals(0, summary.getRecordCount());
+    assertEquals(0, summary.getMaxColumns());
+  }
+
+  @Test
+  public void testUnbalancedQuoteAtEnd() throws IOException {
+    String data = "a,b\r\n\"c\"\"d\",\"e\r\nf,g\r\n";
+    CsvParserBuilder builder = new CsvParserBuilder().supportRfc4180QuotedQuotes(true);
+    CsvScanner.Summary summary = new CsvScanner(builder).scan(new StringReader(data));
+    assertEquals(2, summary.getRecordCount());
+    assertEquals(2, summary.getUnbalancedRecord());
+    assertEquals(data.indexOf("\"e"), summary.getUnbalancedOffset());
+
+    // offsets of a byte scan are byte offsets
+    summary = new CsvScanner(builder).scan(new ByteArrayInputStream(("\u00e9" + data).getBytes("UTF-8")));
+    assertEquals(data.indexOf("\"e") + 2, summary.getUnbalancedOffset());
+  }
+
+  @Test
+  public void testBytesNeedAsciiStructuralChars() throws IOException {
+    try {
+      new CsvScanner(new CsvParserBuilder().separator('§')).scan(new ByteArrayInputStream(new byte[0]));
+      fail("expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+    }
+  }
+}
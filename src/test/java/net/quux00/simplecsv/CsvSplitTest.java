@@ -0,0 +1,90 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CsvSplitTest {
+
+  @Rule
+  public final TempCsvFile csv = new TempCsvFile("simplecsv-split");
+
+  // splits as far as it goes, in file order
+  private static void splitAll(CsvSplit split, List<CsvSplit> splits) throws IOException {
+    CsvSplit first = split.trySplit();
+    if (first == null) {
+      splits.add(split);
+    } else {
+      splitAll(first, splits);
+      splitAll(split, splits);
+    }
+  }
+
+  @Test
+  public void testSplitsReadAllRecords() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'é', '\r', '\n'};
+    Random random = new Random(29);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[random.nextInt(40)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, 8);
+      if (all == null) {
+        continue;
+      }
+      csv.write(data);
+      int skip = random.nextInt(2);
+      String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " skip " + skip;
+
+      List<CsvSplit> splits = new ArrayList<CsvSplit>();
+      splitAll(CsvSplit.of(csv.getFile(), builder, skip, 1 + random.nextInt(4)), splits);
+      List<List<String>> records = new ArrayList<List<String>>();
+      for (CsvSplit split : splits) {
+        assertTrue(msg, split.getLength() > 0 || splits.size() == 1);
+        CsvReader reader = split.open();
+        records.addAll(reader.readAll());
+        assertEquals(msg, split.getEnd(), reader.checkpoint().getOffset());
+        reader.close();
+      }
+      assertEquals(msg + " " + splits, all.subList(Math.min(skip, all.size()), all.size()), records);
+    }
+  }
+
+  @Test
+  public void testSplitAtRecordBoundary() throws IOException {
+    csv.write("id,note\n1,\"a\nb\"\n2,\"c\nd\"\n");
+    CsvSplit split = CsvSplit.of(csv.getFile(), new CsvParserBuilder().multiLine(true), 1, 4);
+    assertEquals(8, split.getStart());
+    CsvSplit first = split.trySplit();
+    assertEquals(8, first.getStart());
+    assertEquals(16, first.getEnd());
+    assertEquals(16, split.getStart());
+    assertEquals(Arrays.asList("1", "a\nb"), first.open().readNext());
+    assertEquals(Arrays.asList("2", "c\nd"), split.open().readNext());
+    assertNull(split.trySplit());
+  }
+
+  @Test
+  public void testColumnsByName() throws IOException {
+    csv.write("id,note\n1,a\n2,b\n3,c\n");
+    CsvParserBuilder builder = new CsvParserBuilder().columns("note");
+    CsvSplit split = CsvSplit.of(csv.getFile(), builder, 1, 1);
+    CsvSplit first = split.trySplit();
+    assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), first.open().readAll());
+    assertEquals(Arrays.asList(Arrays.asList("c")), split.open().readAll());
+  }
+}
@@ -38,11 +38,15 @@ import net.quux00.simplecsv.CsvWriterBuilder;
 import net.quux00.simplecsv.resultset.MockResultSetBuilder;
 import net.quux00.simplecsv.resultset.ResultSetHelperService;
 
+import org.junit.Rule;
 import org.junit.Test;
 
 
 public class CsvWriterTest {
 
+  @Rule
+  public final TempCsvFile csv = new TempCsvFile("CsvWriterTest");
+
   /**
    * Test routine for converting output to a string.
    *
@@ -305,10 +309,9 @@ public class CsvWriterTest {
 
   @Test
   public void testStreamFlushing() throws IOException {
-    String WRITE_FILE = "myfile.csv";
     List<String> nextLine = Arrays.asList("aaaa", "bbbb", "cccc", "dddd");
 
-    FileWriter fileWriter = new FileWriter(WRITE_FILE);
+    FileWriter fileWriter = new FileWriter(csv.getFile());
     CsvWriter writer = new CsvWriter(fileWriter);
 
     writer.writeNext(nextLine);
@@ -0,0 +1,105 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DefaultDialectCsvParserTest {
+
+  static final String[] LINES = {
+    "",
+    "a",
+    ",",
+    "a,b,c",
+    "\"a\",\"b,c\",d",
+    " \"quoted\" ,x",
+    "\"\"",
+    "a\\\"b,\"c\\\"d\",\\\\",
+    "\"a\\\",b\",c",
+    "\\,a,b\\",
+    "\"\"\"\",x",
+    "'single',x\\ny",
+    "été,\"日本,語\""
+  };
+
+  private static void assertSameTokens(CsvParser generic, CsvParser specialized, String line) throws IOException {
+    String msg = "<<" + line + ">>";
+    List<String> expected;
+    try {
+      expected = generic.parse(line);
+    } catch (RuntimeException e) {
+      try {
+        specialized.parse(line);
+      } catch (RuntimeException e2) {
+        assertEquals(msg, e.getClass(), e2.getClass());
+        assertEquals(msg, e.getMessage(), e2.getMessage());
+        return;
+      }
+      throw new AssertionError(msg + " should have thrown " + e);
+    }
+    assertEquals(msg, expected, specialized.parse(line));
+    if (line.isEmpty()) {
+      // parse returns no tokens for an empty line, but a record always has one
+      expected = generic.parseNext(new StringReader("\n"));
+    }
+    assertEquals(msg, expected, specialized.parseNext(new CharBlockReader(new StringReader(line + "\n"), 4)));
+
+    CsvRecord record = new CsvRecord();
+    assertTrue(msg, ((RecordParser) specialized).parseNext(new CharBlockReader(new StringReader(line + "\r\n"), 3), record));
+    assertEquals(msg, expected, record.toList());
+  }
+
+  @Test
+  public void testSameTokensAsGenericParser() throws IOException {
+    for (boolean unbalanced : new boolean[] {false, true}) {
+      CsvParser generic = new SimpleCsvParser(',', '"', '\\', false, false, unbalanced, false, true, false);
+      CsvParser specialized = new DefaultDialectCsvParser(',', '"', '\\', unbalanced);
+      for (String line : LINES) {
+        assertSameTokens(generic, specialized, line);
+      }
+    }
+  }
+
+  @Test
+  public void testRandomLines() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'n', '|', '\''};
+    Random random = new Random(42);
+    CsvParser generic = new SimpleCsvParser('|', '\'', '\\', false, false, true, false, true, false);
+    CsvParser specialized = new DefaultDialectCsvParser('|', '\'', '\\', true);
+    CsvParser genericStrict = new SimpleCsvParser();
+    CsvParser specializedStrict = new DefaultDialectCsvParser(',', '"', '\\', false);
+
+    for (int n = 0; n < 2000; n++) {
+      char[] line = new char[random.nextInt(20)];
+      for (int i = 0; i < line.length; i++) {
+        line[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String s = new String(line);
+      assertSameTokens(generic, specialized, s);
+      assertSameTokens(genericStrict, specializedStrict, s);
+    }
+  }
+
+  @Test
+  public void testBuilderReturnsSpecializedParser() {
+    assertTrue(new CsvParserBuilder().build() instanceof DefaultDialectCsvParser);
+    assertTrue(new CsvParserBuilder().separator('\t').quoteChar('\'').allowUnbalancedQuotes(true).build()
+        instanceof DefaultDialectCsvParser);
+
+    assertFalse(new CsvParserBuilder().trimWhitespace(true).build() instanceof DefaultDialectCsvParser);
+    assertFalse(new CsvParserBuilder().strictQuotes(true).build() instanceof DefaultDialectCsvParser);
+    assertFalse(new CsvParserBuilder().retainOuterQuotes(true).build() instanceof DefaultDialectCsvParser);
+    assertFalse(new CsvParserBuilder().retainEscapeChars(false).build() instanceof DefaultDialectCsvParser);
+    assertFalse(new CsvParserBuilder().alwaysQuoteOutput(true).build() instanceof DefaultDialectCsvParser);
+    assertFalse(new CsvParserBuilder().escapeChar(ParserUtil.NULL_CHARACTER).build() instanceof DefaultDialectCsvParser);
+    assertFalse(new CsvParserBuilder().multiLine(true).build() instanceof DefaultDialectCsvParser);
+    assertTrue(new CsvParserBuilder().trimWhitespace(true).build() instanceof SimpleCsvParser);
+  }
+}
@@ -0,0 +1,164 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FieldFiltersTest {
+
+  @Test
+  public void testFactories() {
+    assertTrue(FieldFilters.equalTo("ab").accept("ab"));
+    assertFalse(FieldFilters.equalTo("ab").accept("abc"));
+    assertFalse(FieldFilters.equalTo("ab").accept("a"));
+    assertTrue(FieldFilters.startsWith("ab").accept("abc"));
+    assertFalse(FieldFilters.startsWith("ab").accept("a"));
+    assertTrue(FieldFilters.startsWith("").accept(""));
+
+    FieldFilter range = FieldFilters.between(-5, 10.5);
+    assertTrue(range.accept("-5"));
+    assertTrue(range.accept("+10"));
+    assertTrue(range.accept("10.5"));
+    assertTrue(range.accept("1e1"));
+    assertFalse(range.accept("11"));
+    assertFalse(range.accept("-6"));
+    assertFalse(range.accept(""));
+    assertFalse(range.accept("-"));
+    assertFalse(range.accept("abc"));
+    assertFalse(range.accept("12345678901234567890"));
+    assertEquals(-1234567890123456789.0, FieldFilters.toNumber("-1234567890123456789"), 0.0);
+  }
+
+  @Test
+  public void testSameAsFilteringEveryRecord() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', '\n', '\r', '\n'};
+    Random random = new Random(11);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+    FieldFilter startsWithA = FieldFilters.startsWith("a");
+
+    int compared = 0;
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[1 + random.nextInt(30)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      int column = n % 3;
+      int blockSize = 1 + random.nextInt(8);
+
+      builder.projection = null;
+      builder.filters = null;
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, blockSize);
+      if (n % 2 == 1) {
+        builder.columns(column == 0 ? 2 : 0);
+      }
+      CsvParser filtered = builder.filter(column, startsWithA).build();
+      List<List<String>> actual = ProjectionTest.parseAll(filtered, data, blockSize);
+      if (all == null) {
+        // the field that could not be parsed may be in a rejected record
+        continue;
+      }
+      List<List<String>> expected = new ArrayList<List<String>>();
+      for (List<String> record : all) {
+        if (record.size() > column && startsWithA.accept(record.get(column))) {
+          expected.add(builder.projection == null ? record : builder.projection.select(record));
+        }
+      }
+      assertEquals("<<" + data + ">> " + column + " " + filtered.getClass().getSimpleName(), expected, actual);
+      compared++;
+    }
+    assertTrue(compared > 500);
+    for (CsvParserBuilder builder : dialects) {
+      builder.projection = null;
+      builder.filters = null;
+    }
+  }
+
+  @Test
+  public void testFilters() throws IOException {
+    String data = "id,customer,amount\n1,X,10\n2,Y,\"1,000\"\n3,X,250\n4,X,\"oops\n";
+    CsvReader reader = new CsvReaderBuilder(new StringReader(data.substring(0, data.indexOf("4,")))).
+        filter(1, FieldFilters.equalTo("X")).filter(2, FieldFilters.between(0, 100)).build();
+    assertEquals(Arrays.asList("1", "X", "10"), reader.readNext());
+    assertNull(reader.readNext());
+
+    CsvParser parser = new CsvParserBuilder().multiLine(true).columns(0).filter(1, FieldFilters.equalTo("X")).build();
+    reader = new CsvReader(new StringReader(data), parser);
+    CsvRecord record = new CsvRecord();
+    assertTrue(reader.readNext(record));
+    assertEquals(Arrays.asList("1"), record.toList());
+    assertEquals(Arrays.asList("3"), reader.readNextView().toList());
+    try {
+      reader.readNext();
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // the unbalanced quote is in an accepted record
+      assertEquals("Un-terminated quoted field at end of CSV record: 5.", e.getMessage());
+    }
+
+    assertNull(new CsvParserBuilder().filter(0, FieldFilters.equalTo("X")).build().parse("Y,X"));
+    assertEquals(Arrays.asList("X", "Y"), new CsvParserBuilder().filter(0, FieldFilters.equalTo("X")).build().parse("X,Y"));
+    // a line without the filtered column is not accepted
+    assertNull(new CsvParserBuilder().filter(2, FieldFilters.startsWith("")).build().parse("X,Y"));
+
+    Utf8CsvParser utf8 = (Utf8CsvParser) new CsvParserBuilder().utf8Bytes(true).filter(0, FieldFilters.equalTo("é")).build();
+    ByteBuffer bytes = ByteBuffer.wrap("a,b\né,c\nd\n".getBytes("UTF-8"));
+    assertEquals(Arrays.asList("é", "c"), utf8.parseNext(bytes));
+    assertNull(utf8.parseNext(bytes));
+    assertFalse(bytes.hasRemaining());
+  }
+
+  @Test
+  public void testRecordNumbersCountRejectedRecords() throws IOException {
+    String data = "k,1\nx,2\nx,3\nk,\"4\n";
+    CsvParserBuilder[] builders = {
+      new CsvParserBuilder(),
+      new CsvParserBuilder().multiLine(true),
+      new CsvParserBuilder().utf8Bytes(true)
+    };
+    for (CsvParserBuilder builder : builders) {
+      CsvParser parser = builder.filter(0, FieldFilters.equalTo("k")).build();
+      String msg = parser.getClass().getSimpleName();
+      CsvReader reader = new CsvReaderBuilder(new ByteArrayInputStream(data.getBytes("UTF-8"))).
+          csvParser(parser).build();
+      assertEquals(msg, Arrays.asList("k", "1"), reader.readNext());
+      try {
+        reader.readNext();
+        fail("expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        assertTrue(msg + ": " + e.getMessage(), e.getMessage().endsWith(": 4."));
+      }
+
+      reader = new CsvReader(new StringReader(data.substring(0, data.indexOf("k,\"4")) + "k,5\n"), parser);
+      assertEquals(msg, 1, reader.readBatch(1).size());
+      assertEquals(msg, 1, reader.checkpoint().getRecords());
+      assertEquals(msg, Arrays.asList("k", "5"), reader.readNextView().toList());
+      assertEquals(msg, 4, reader.checkpoint().getRecords());
+      assertNull(msg, reader.readNext());
+    }
+  }
+
+  @Test
+  public void testHeaderIsNotFiltered() throws IOException {
+    String data = "id,customer\n1,X\n2,Y\n";
+    CsvParser parser = new CsvParserBuilder().columns("id").filter(1, FieldFilters.equalTo("Y")).build();
+    CsvReader reader = new CsvReader(new StringReader(data), parser);
+    assertEquals(Arrays.asList("id"), reader.readNext());
+    assertEquals(Arrays.asList("2"), reader.readNext());
+    assertNull(reader.readNext());
+  }
+}
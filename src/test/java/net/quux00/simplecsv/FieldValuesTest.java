@@ -0,0 +1,186 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class FieldValuesTest {
+
+  private static long parseLong(String s) {
+    // surround the field with other chars, as in a record's buffer
+    char[] buf = ("1" + s + "2").toCharArray();
+    return FieldValues.parseLong(buf, 1, buf.length - 1);
+  }
+
+  private static double parseDouble(String s) {
+    char[] buf = ("1" + s + "2").toCharArray();
+    return FieldValues.parseDouble(buf, 1, buf.length - 1);
+  }
+
+  private static long parseEpochDay(String s) {
+    return FieldValues.parseEpochDay(s.toCharArray(), 0, s.length());
+  }
+
+  @Test
+  public void testLongs() {
+    String[] valid = {"0", "-0", "+7", "42", "-42", "007", "9223372036854775807", "-9223372036854775808"};
+    for (String s : valid) {
+      assertEquals(s, Long.parseLong(s), parseLong(s));
+    }
+    String[] invalid = {"", "-", "+", "1.0", " 1", "1 ", "1a", "--1", "9223372036854775808", "-9223372036854775809",
+        "99999999999999999999"};
+    for (String s : invalid) {
+      try {
+        parseLong(s);
+        fail("expected NumberFormatException for " + s);
+      } catch (NumberFormatException e) {
+        assertEquals("For input string: \"" + s + "\"", e.getMessage());
+      }
+    }
+
+    char[] buf = "2147483647,-2147483648,2147483648".toCharArray();
+    assertEquals(Integer.MAX_VALUE, FieldValues.parseInt(buf, 0, 10));
+    assertEquals(Integer.MIN_VALUE, FieldValues.parseInt(buf, 11, 22));
+    try {
+      FieldValues.parseInt(buf, 23, buf.length);
+      fail("expected NumberFormatException");
+    } catch (NumberFormatException e) {
+    }
+  }
+
+  @Test
+  public void testDoubles() {
+    String[] valid = {"0", "-0", "-0.0", "1", "1.", ".5", "+2.5", "3.14159", "0.1", "0.3", "1e10", "1E-5", "2.5e+3",
+        "123456789012345", "1234567890123456789", "0.000000000000000000001", "1e22", "1e23", "1e-22", "1e-23",
+        "4.9e-324", "1.7976931348623157e308", "1e400", "9007199254740993", "NaN", "-Infinity", "1d", "2.5f",
+        " 1.5 ", "0x1p4", "00000000000000000001.5"};
+    for (String s : valid) {
+      assertEquals(s, Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(parseDouble(s)));
+    }
+    String[] invalid = {"", "-", ".", "e5", "1e", "1e+", "1.2.3", "1,5", "abc"};
+    for (String s : invalid) {
+      try {
+        parseDouble(s);
+        fail("expected NumberFormatException for " + s);
+      } catch (NumberFormatException e) {
+      }
+    }
+  }
+
+  @Test
+  public void testDoublesAreCorrectlyRounded() {
+    Random random = new Random(11);
+    for (int n = 0; n < 100000; n++) {
+      StringBuilder sb = new StringBuilder();
+      if (random.nextBoolean()) {
+        sb.append('-');
+      }
+      int digits = 1 + random.nextInt(18);
+      int point = random.nextInt(digits + 1);
+      for (int i = 0; i < digits; i++) {
+        if (i == point) {
+          sb.append('.');
+        }
+        sb.append((char) ('0' + random.nextInt(10)));
+      }
+      if (random.nextInt(4) == 0) {
+        sb.append('e').append(random.nextInt(61) - 30);
+      }
+      String s = sb.toString();
+      assertEquals(s, Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(parseDouble(s)));
+    }
+    for (int n = 0; n < 10000; n++) {
+      double d = Double.longBitsToDouble(random.nextLong());
+      if (Double.isNaN(d)) {
+        continue;
+      }
+      String s = Double.toString(d);
+      assertEquals(s, Double.doubleToRawLongBits(d), Double.doubleToRawLongBits(parseDouble(s)));
+    }
+  }
+
+  @Test
+  public void testBooleans() {
+    String[] all = {"true", "TRUE", "True", "false", "", "t", "yes", "1", "truE ", "trues"};
+    for (String s : all) {
+      assertEquals(s, Boolean.parseBoolean(s), FieldValues.parseBoolean(s.toCharArray(), 0, s.length()));
+    }
+  }
+
+  @Test
+  public void testEpochDays() {
+    assertEquals(0, parseEpochDay("1970-01-01"));
+    assertEquals(-1, parseEpochDay("1969-12-31"));
+    assertEquals(11016, parseEpochDay("2000-02-29"));
+    assertEquals(-719528, parseEpochDay("0000-01-01"));
+    assertEquals(-719469, parseEpochDay("0000-02-29"));
+    assertEquals(-719468, parseEpochDay("0000-03-01"));
+
+    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    calendar.setGregorianChange(new java.util.Date(Long.MIN_VALUE));
+    calendar.clear();
+    calendar.set(1, Calendar.JANUARY, 1);
+    for (int n = 0; n < 365 * 2100; n += 7) {
+      long millis = calendar.getTimeInMillis();
+      String s = String.format("%04d-%02d-%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+          calendar.get(Calendar.DAY_OF_MONTH));
+      assertEquals(s, Math.floor(millis / 86400000.0), parseEpochDay(s), 0);
+      calendar.add(Calendar.DAY_OF_MONTH, 7);
+    }
+
+    String[] invalid = {"", "1970-1-01", "1970/01/01", "1970-00-01", "1970-13-01", "1970-01-00", "1970-01-32",
+        "1900-02-29", "2001-02-29", "2000-04-31", "197a-01-01", "1970-01-01 ", "+970-01-01"};
+    for (String s : invalid) {
+      try {
+        parseEpochDay(s);
+        fail("expected IllegalArgumentException for " + s);
+      } catch (IllegalArgumentException e) {
+      }
+    }
+  }
+
+  @Test
+  public void testRecordAccessors() throws IOException {
+    String data = "42,-9000000000,2.5,TRUE,2014-03-15,\"17\",x\n";
+    CsvReader reader = new CsvReader(new StringReader(data));
+    CsvRecordView view = reader.readNextView();
+    assertEquals(42, view.getInt(0));
+    assertEquals(-9000000000L, view.getLong(1));
+    assertEquals(2.5, view.getDouble(2), 0);
+    assertTrue(view.getBoolean(3));
+    assertFalse(view.getBoolean(6));
+    assertEquals(16144, view.getEpochDay(4));
+    assertEquals(17, view.getInt(5));
+    try {
+      view.getInt(6);
+      fail("expected NumberFormatException");
+    } catch (NumberFormatException e) {
+    }
+    try {
+      view.getInt(7);
+      fail("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+    }
+
+    reader = new CsvReader(new StringReader(data));
+    LazyCsvRecord lazy = reader.readNextLazy();
+    assertEquals(42, lazy.getInt(0));
+    assertEquals(-9000000000L, lazy.getLong(1));
+    assertEquals(2.5, lazy.getDouble(2), 0);
+    assertTrue(lazy.getBoolean(3));
+    assertEquals(16144, lazy.getEpochDay(4));
+    // a quoted field is decoded first
+    assertEquals(17, lazy.getInt(5));
+    assertEquals(17L, lazy.getLong(5));
+  }
+}
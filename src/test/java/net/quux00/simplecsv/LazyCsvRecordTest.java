@@ -0,0 +1,108 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LazyCsvRecordTest {
+
+  // the records, or the message of the exception parsing threw
+  private static Object readAll(CsvParser parser, String data, boolean lazily) throws IOException {
+    CsvReader reader = new CsvReader(new CharBlockReader(new StringReader(data), 4), parser);
+    List<List<String>> records = new ArrayList<List<String>>();
+    try {
+      if (lazily) {
+        LazyCsvRecord lazy;
+        while ((lazy = reader.readNextLazy()) != null) {
+          records.add(lazy.toList());
+        }
+      } else {
+        List<String> next;
+        while ((next = reader.readNext()) != null) {
+          records.add(next);
+        }
+      }
+    } catch (RuntimeException e) {
+      return e.getClass() + " " + e.getMessage();
+    }
+    return records;
+  }
+
+  @Test
+  public void testSameAsReadNext() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'n', '\r', '\n'};
+    Random random = new Random(3);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 2000; n++) {
+      char[] chars = new char[1 + random.nextInt(24)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      builder.projection = null;
+      builder.filters = null;
+      if (n % 3 == 1) {
+        builder.columns(0, 2);
+      } else if (n % 3 == 2) {
+        builder.filter(1, FieldFilters.startsWith("a"));
+      }
+      Object expected = readAll(builder.build(), data, false);
+      if (expected.toString().startsWith(StringIndexOutOfBoundsException.class.toString())) {
+        // decoding a lone quote fails, but the lazy record may never decode it
+        continue;
+      }
+      assertEquals("<<" + data + ">> " + n, expected, readAll(builder.build(), data, true));
+    }
+    for (CsvParserBuilder builder : dialects) {
+      builder.projection = null;
+      builder.filters = null;
+    }
+  }
+
+  @Test
+  public void testFieldsAreDecodedOnDemand() throws IOException {
+    CsvReader reader = new CsvReader(new StringReader("plain,\"quo,ted\",es\\\"c\nx\n"));
+    LazyCsvRecord lazy = reader.readNextLazy();
+    assertEquals(3, lazy.size());
+    CharSequence plain = lazy.get(0);
+    assertTrue(plain instanceof LazyCsvRecord.Field);
+    assertEquals("plain", plain.toString());
+    assertEquals("la", plain.subSequence(1, 3));
+    assertEquals("quo,ted", lazy.getString(1));
+    assertSame(lazy.get(1), lazy.getString(1));
+    assertEquals("es\\\"c", lazy.get(2).toString());
+    try {
+      lazy.get(3);
+      fail("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+    }
+
+    assertSame(lazy, reader.readNextLazy());
+    assertEquals(Arrays.asList("x"), lazy.toList());
+    assertEquals("x", plain.toString());
+    assertNull(reader.readNextLazy());
+  }
+
+  @Test
+  public void testOtherParsersDecodeUpFront() throws IOException {
+    CsvParser parser = new CsvParserBuilder().multiLine(true).build();
+    CsvReader reader = new CsvReader(new StringReader("a,\"b\nc\"\n"), parser);
+    LazyCsvRecord lazy = reader.readNextLazy();
+    assertEquals(Arrays.asList("a", "b\nc"), lazy.toList());
+    assertEquals("[a, b\nc]", lazy.toString());
+    assertNull(reader.readNextLazy());
+  }
+}
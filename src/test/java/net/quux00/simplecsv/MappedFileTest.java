@@ -0,0 +1,104 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class MappedFileTest {
+
+  static final String DATA = "a,\"b\r\nb\",c\r\n" +
+      "été,\"Stan \\\"The Man\\\"\",日本語\n" +
+      "\"😀 smile\",\\ü,x§y\r\n" +
+      "\r\n" + SimpleCsvParserTest.longLine + "\n";
+
+  // no newlines in quoted fields, for the SimpleCsvParser
+  static final String SIMPLE_DATA = DATA.substring(DATA.indexOf('é'));
+
+  @Rule
+  public final TempCsvFile csv = new TempCsvFile("simplecsv-mapped");
+
+  @Before
+  public void setUp() throws IOException {
+    csv.write(DATA);
+  }
+
+  @Test
+  public void testReaderDecodesAcrossRegions() throws IOException {
+    for (long regionSize = 4; regionSize < 24; regionSize++) {
+      Reader r = new MappedFile(csv.getFile(), regionSize).newReader();
+      StringBuilder sb = new StringBuilder();
+      char[] cbuf = new char[3];
+      int n;
+      while ((n = r.read(cbuf, 0, cbuf.length)) >= 0) {
+        sb.append(cbuf, 0, n);
+      }
+      r.close();
+      assertEquals("region size " + regionSize, DATA, sb.toString());
+    }
+  }
+
+  @Test
+  public void testSingleCharReadsSplitSurrogatePairs() throws IOException {
+    Reader r = new MappedFile(csv.getFile(), 5).newReader();
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = r.read()) >= 0) {
+      sb.append((char) c);
+    }
+    r.close();
+    assertEquals(DATA, sb.toString());
+  }
+
+  @Test
+  public void testRecordsStraddlingRegionsForAllParsers() throws IOException {
+    CsvParser[] parsers = new CsvParser[] {
+        new SimpleCsvParser(),
+        new CsvParserBuilder().multiLine(true).build(),
+        new CsvParserBuilder().utf8Bytes(true).build()
+    };
+
+    for (CsvParser parser : parsers) {
+      String data = (parser instanceof SimpleCsvParser ? SIMPLE_DATA : DATA);
+      csv.write(data);
+      List<List<String>> expected = new CsvReader(new StringReader(data), parser).readAll();
+
+      for (long regionSize = 4; regionSize < 24; regionSize++) {
+        MappedFile mapped = new MappedFile(csv.getFile(), regionSize);
+        Reader source = (parser instanceof Utf8CsvParser ?
+            new ByteBlockReader(mapped, 7) : new CharBlockReader(mapped.newReader(), 7));
+        CsvReader cr = new CsvReader(source, parser);
+        assertEquals("region size " + regionSize, expected, cr.readAll());
+        cr.close();
+      }
+    }
+  }
+
+  @Test
+  public void testCsvReaderBuilderWithFile() throws IOException {
+    CsvParser parser = new CsvParserBuilder().multiLine(true).build();
+    List<List<String>> expected = new CsvReader(new StringReader(DATA), parser).readAll();
+
+    CsvReader cr = new CsvReaderBuilder(csv.getFile()).csvParser(parser).build();
+    assertEquals(expected, cr.readAll());
+    cr.close();
+
+    cr = new CsvReaderBuilder(csv.getFile()).csvParser(new Utf8CsvParser()).skipLines(1).build();
+    assertEquals(expected.subList(1, expected.size()), cr.readAll());
+    cr.close();
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    csv.write("");
+    CsvReader cr = new CsvReaderBuilder(csv.getFile()).build();
+    assertEquals(0, cr.readAll().size());
+    cr.close();
+  }
+}
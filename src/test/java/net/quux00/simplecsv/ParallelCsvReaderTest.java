@@ -0,0 +1,131 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ParallelCsvReaderTest {
+
+  @Rule
+  public final TempCsvFile csv = new TempCsvFile("simplecsv-parallel");
+
+  private static String simpleData() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb.append(i).append(",\"été ").append(i).append("\",\\\"x\\\"");
+      sb.append(i % 3 == 0 ? "\r\n" : (i % 3 == 1 ? "\n" : "\r"));
+    }
+    return sb.toString();
+  }
+
+  private static String multiLineData() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb.append(i).append(",\"line one\nline \\\"two\\\"\r\n日本 ").append(i).append("\",");
+      sb.append("\\\\,\"a\\\"b\"\"c\",x\ry").append(i % 2 == 0 ? "\r\n" : "\n");
+    }
+    // last record without a trailing newline
+    sb.append("last,\"quoted\nend\"");
+    return sb.toString();
+  }
+
+  private void assertSameAsSequential(String data, CsvParserBuilder builder) throws IOException {
+    csv.write(data);
+    List<List<String>> expected = new CsvReader(new StringReader(data), builder.build()).readAll();
+
+    for (long chunkSize = 1; chunkSize < 64; chunkSize += 3) {
+      ParallelCsvReader pr = new ParallelCsvReader(csv.getFile(), builder, 3, true, chunkSize);
+      assertEquals("chunk size " + chunkSize, expected, pr.readAll());
+      assertNull(pr.readNext());
+      pr.close();
+
+      pr = new ParallelCsvReader(csv.getFile(), builder, 3, false, chunkSize);
+      List<List<String>> actual = pr.readAll();
+      pr.close();
+      assertEquals("chunk size " + chunkSize, sorted(expected), sorted(actual));
+    }
+  }
+
+  private static List<List<String>> sorted(List<List<String>> records) {
+    List<List<String>> copy = new ArrayList<List<String>>(records);
+    Collections.sort(copy, new Comparator<List<String>>() {
+      public int compare(List<String> a, List<String> b) {
+        return a.toString().compareTo(b.toString());
+      }
+    });
+    return copy;
+  }
+
+  @Test
+  public void testSimpleDialect() throws IOException {
+    assertSameAsSequential(simpleData(), new CsvParserBuilder());
+  }
+
+  @Test
+  public void testMultiLineDialect() throws IOException {
+    assertSameAsSequential(multiLineData(), new CsvParserBuilder().multiLine(true));
+  }
+
+  @Test
+  public void testRfc4180Quotes() throws IOException {
+    String data = multiLineData().replace("\\", "");
+    assertSameAsSequential(data, new CsvParserBuilder().multiLine(true).supportRfc4180QuotedQuotes(true));
+  }
+
+  @Test
+  public void testUtf8Bytes() throws IOException {
+    assertSameAsSequential(multiLineData(), new CsvParserBuilder().utf8Bytes(true));
+  }
+
+  @Test
+  public void testNoEscapeChar() throws IOException {
+    String data = multiLineData().replace("\\", "");
+    assertSameAsSequential(data, new CsvParserBuilder().multiLine(true).escapeChar(ParserUtil.NULL_CHARACTER));
+  }
+
+  @Test
+  public void testDefaultChunkSize() throws IOException {
+    String data = multiLineData();
+    csv.write(data);
+    CsvParserBuilder builder = new CsvParserBuilder().multiLine(true);
+    List<List<String>> expected = new CsvReader(new StringReader(data), builder.build()).readAll();
+    ParallelCsvReader pr = new ParallelCsvReader(csv.getFile(), builder);
+    assertEquals(expected, pr.readAll());
+    pr.close();
+  }
+
+  @Test
+  public void testColumnsByName() throws IOException {
+    String data = "num,text,esc,quoted,last\n" + multiLineData();
+    assertSameAsSequential(data, new CsvParserBuilder().multiLine(true).columns("last", "text"));
+    assertSameAsSequential(data, new CsvParserBuilder().utf8Bytes(true).columns("num"));
+    assertSameAsSequential("num,text,esc\n" + simpleData(), new CsvParserBuilder().columns(2, 0));
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    csv.write("");
+    ParallelCsvReader pr = new ParallelCsvReader(csv.getFile(), new CsvParserBuilder(), 2, true, 4);
+    assertNull(pr.readNext());
+    pr.close();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testNonAsciiSeparator() {
+    new ParallelCsvReader(csv.getFile(), new CsvParserBuilder().separator('§'));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testChunkSizeTooLarge() {
+    new ParallelCsvReader(csv.getFile(), new CsvParserBuilder(), 2, true, ParallelCsvReader.MAX_CHUNK_SIZE + 1);
+  }
+}
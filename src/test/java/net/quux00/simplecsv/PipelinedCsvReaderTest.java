@@ -0,0 +1,93 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PipelinedCsvReaderTest {
+
+  @Test
+  public void testReadsAllRecordsInOrder() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'é', '\r', '\n'};
+    Random random = new Random(31);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[random.nextInt(60)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, 8);
+      if (all == null) {
+        continue;
+      }
+      int blockSize = 1 + random.nextInt(8);
+      String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " block " + blockSize;
+
+      PipelinedCsvReader reader = new PipelinedCsvReader(new StringReader(data), builder, 1 + random.nextInt(3), blockSize);
+      try {
+        assertEquals(msg, all, reader.readAll());
+        assertNull(msg, reader.readNext());
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void testManyBlocks() throws IOException {
+    StringBuilder sb = new StringBuilder("id,note\r\n");
+    for (int i = 0; i < 10000; i++) {
+      sb.append(i).append(",\"line ").append(i).append("\nnext, line\"\r\n");
+    }
+    String data = sb.toString();
+    CsvParserBuilder builder = new CsvParserBuilder().multiLine(true).columns("note");
+    List<List<String>> expected = new CsvReader(new StringReader(data), builder.build()).readAll();
+
+    PipelinedCsvReader reader = new PipelinedCsvReader(new ByteArrayInputStream(data.getBytes("UTF-8")), builder);
+    try {
+      assertEquals(expected, reader.readAll());
+    } finally {
+      reader.close();
+    }
+
+    reader = new PipelinedCsvReader(new StringReader(data), builder, 4, 100);
+    try {
+      assertEquals(Arrays.asList("note"), reader.readNext());
+      assertEquals(Arrays.asList("line 0\nnext, line"), reader.readNext());
+      assertEquals(expected.subList(2, expected.size()), reader.readAll());
+      // the threads are let go at the end of the input, without a close
+      assertTrue(reader.isFinished());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testParseError() throws IOException {
+    PipelinedCsvReader reader = new PipelinedCsvReader(new StringReader("a,b\n\"c,d\n"), new CsvParserBuilder(), 2, 4);
+    try {
+      assertEquals(Arrays.asList("a", "b"), reader.readNext());
+      assertFalse(reader.isFinished());
+      reader.readNext();
+      fail("Expected an IllegalArgumentException for the unbalanced quote");
+    } catch (IllegalArgumentException e) {
+      assertTrue(reader.isFinished());
+    } finally {
+      reader.close();
+    }
+  }
+}
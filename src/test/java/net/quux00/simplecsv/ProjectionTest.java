@@ -0,0 +1,186 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ProjectionTest {
+
+  static final int[][] COLUMNS = {{0}, {1}, {2}, {0, 2}, {1, 3}, {5}, {3, 0}};
+
+  static CsvParserBuilder[] dialects() {
+    return new CsvParserBuilder[] {
+      new CsvParserBuilder(),
+      new CsvParserBuilder().allowUnbalancedQuotes(true),
+      new CsvParserBuilder().retainEscapeChars(false),
+      new CsvParserBuilder().retainOuterQuotes(true).trimWhitespace(true),
+      new CsvParserBuilder().strictQuotes(true),
+      new CsvParserBuilder().alwaysQuoteOutput(true),
+      new CsvParserBuilder().multiLine(true),
+      new CsvParserBuilder().multiLine(true).allowUnbalancedQuotes(true).retainEscapeChars(false),
+      new CsvParserBuilder().multiLine(true).strictQuotes(true),
+      new CsvParserBuilder().supportRfc4180QuotedQuotes(true),
+      new CsvParserBuilder().utf8Bytes(true)
+    };
+  }
+
+  // the records, or null if parsing threw
+  static List<List<String>> parseAll(CsvParser parser, String data, int blockSize) throws IOException {
+    // the byte parser only parses bytes from a ByteBlockReader
+    Reader reader = (parser instanceof Utf8CsvParser ?
+        new ByteBlockReader(new ByteArrayInputStream(data.getBytes("UTF-8")), blockSize) :
+        new CharBlockReader(new StringReader(data), blockSize));
+    try {
+      return new CsvReader(reader, parser).readAll();
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testSameAsProjectingEveryField() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'n', '\r', '\n'};
+    Random random = new Random(7);
+    CsvParserBuilder[] dialects = dialects();
+
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[1 + random.nextInt(24)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      int[] columns = COLUMNS[n % COLUMNS.length];
+      int blockSize = 1 + random.nextInt(8);
+
+      builder.projection = null;
+      List<List<String>> all = parseAll(builder.build(), data, blockSize);
+      CsvParser projected = builder.columns(columns).build();
+      List<List<String>> actual = parseAll(projected, data, blockSize);
+      String msg = "<<" + data + ">> " + Arrays.toString(columns) + " " + projected.getClass().getSimpleName();
+      if (all == null) {
+        // the field that could not be parsed may not be projected
+        continue;
+      }
+      List<List<String>> expected = new ArrayList<List<String>>();
+      for (List<String> record : all) {
+        expected.add(new Projection(columns).select(record));
+      }
+      assertEquals(msg, expected, actual);
+    }
+    for (CsvParserBuilder builder : dialects) {
+      builder.projection = null;
+    }
+  }
+
+  @Test
+  public void testColumnsByIndex() throws IOException {
+    String line = "a,\"b,\"\"c\",d\\,e,\"f\ng\",h";
+    CsvParser parser = new CsvParserBuilder().columns(4, 0).build();
+    assertEquals(Arrays.asList("a", "f\ng"), parser.parse(line));
+    assertEquals(Arrays.asList("a"), parser.parse("a"));
+    assertEquals(Arrays.asList("a", ""), parser.parse("a,b,c,d,"));
+
+    CsvParser multi = new CsvParserBuilder().columns(5, 2).multiLine(true).build();
+    assertEquals(Arrays.asList("d\\", "h"), multi.parse(line));
+    CsvRecord record = new CsvRecord();
+    assertTrue(((RecordParser) multi).parseNext(new CharBlockReader(new StringReader(line + "\r\n"), 2), record));
+    assertEquals(Arrays.asList("d\\", "h"), record.toList());
+  }
+
+  @Test
+  public void testUnbalancedQuotesInSkippedField() throws IOException {
+    CsvParser multi = new CsvParserBuilder().columns(0).multiLine(true).build();
+    try {
+      multi.parse("a,\"b");
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    CsvParser parser = new CsvParserBuilder().columns(0, 2).build();
+    try {
+      parser.parse("a,\"b");
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    // the rest of a line after its last projected column is not looked at
+    assertEquals(Arrays.asList("a"), new CsvParserBuilder().columns(0).build().parse("a,\"b"));
+  }
+
+  @Test
+  public void testColumnsByName() throws IOException {
+    String data = "id,name,city\n1,\"Smith, J\",Paris\n2,Doe,\"New\nYork\"\n";
+    CsvParser parser = new CsvParserBuilder().columns("city", "id").multiLine(true).build();
+    CsvReader reader = new CsvReader(new StringReader(data), parser);
+    assertEquals(Arrays.asList("id", "city"), reader.readNext());
+    assertEquals(Arrays.asList("1", "Paris"), reader.readNext());
+    CsvRecord record = new CsvRecord();
+    assertTrue(reader.readNext(record));
+    assertEquals(Arrays.asList("2", "New\nYork"), record.toList());
+    assertFalse(reader.readNext(record));
+
+    reader = new CsvReaderBuilder(new StringReader("skipped\n" + data)).skipLines(1).columns("name").build();
+    CsvRecordView view = reader.readNextView();
+    assertEquals(Arrays.asList("name"), view.toList());
+    assertEquals("Smith, J", reader.readNextView().getString(0));
+
+    reader = new CsvReaderBuilder(new StringReader("")).columns("name").build();
+    assertNull(reader.readNext());
+  }
+
+  @Test
+  public void testUnknownName() throws IOException {
+    CsvReader reader = new CsvReaderBuilder(new StringReader("a,b\n1,2\n")).columns("c").build();
+    try {
+      reader.readNext();
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Column c not found in the header: 1.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testInvalidColumns() {
+    try {
+      new CsvParserBuilder().columns(new int[0]);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      new CsvParserBuilder().columns(1, -1);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      new CsvReaderBuilder(new StringReader("")).columns(0).csvParser(new CsvParserBuilder().build()).build();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+  @Test
+  public void testBuildTwice() throws IOException {
+    CsvReaderBuilder builder = new CsvReaderBuilder(new StringReader("a,b\n1,2\n"));
+    builder.build();
+    // the first build must not fix the default parser
+    CsvReader reader = builder.columns(1).build();
+    assertEquals(Arrays.asList("b"), reader.readNext());
+  }
+
+  @Test
+  public void testProjectedParserIsNotSpecialized() {
+    assertFalse(new CsvParserBuilder().columns(0).build() instanceof DefaultDialectCsvParser);
+  }
+}
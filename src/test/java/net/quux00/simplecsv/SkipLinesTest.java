@@ -0,0 +1,94 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SkipLinesTest {
+
+  @Test
+  public void testSameAsParsingSkippedRecords() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', '\u00e9', '\r', '\n'};
+    Random random = new Random(17);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 2000; n++) {
+      char[] chars = new char[random.nextInt(24)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      int blockSize = 1 + random.nextInt(8);
+      List<List<String>> all = ProjectionTest.parseAll(builder.build(), data, blockSize);
+      if (all == null) {
+        continue;
+      }
+
+      for (int skip = 0; skip <= all.size() + 1; skip++) {
+        List<List<String>> expected = all.subList(Math.min(skip, all.size()), all.size());
+        String msg = "<<" + data + ">> " + builder.build().getClass().getSimpleName() + " skip " + skip;
+        CsvReader reader = new CsvReader(new CharBlockReader(new StringReader(data), blockSize), skip, builder.build());
+        assertEquals(msg, expected, reader.readAll());
+
+        if (builder.utf8Bytes) {
+          ByteBlockReader bytes = new ByteBlockReader(new ByteArrayInputStream(data.getBytes("UTF-8")), blockSize);
+          reader = new CsvReader(bytes, skip, builder.build());
+          assertEquals(msg, expected, reader.readAll());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSkipMultiLineRecords() throws IOException {
+    String data = "id,note\n1,\"two\nlines\"\n2,\"a \"\"quoted\"\"\r\nvalue\"\r\n3,x\n";
+    CsvParserBuilder builder = new CsvParserBuilder().multiLine(true).supportRfc4180QuotedQuotes(true);
+    CsvReader reader = new CsvReaderBuilder(new StringReader(data)).csvParser(builder.build()).skipLines(3).build();
+    assertEquals(Arrays.asList("3", "x"), reader.readNext());
+
+    CsvParser parser = builder.utf8Bytes(true).build();
+    assertTrue(parser instanceof Utf8CsvParser);
+    reader = new CsvReaderBuilder(new ByteArrayInputStream(data.getBytes("UTF-8"))).csvParser(parser).skipLines(2).build();
+    assertEquals(Arrays.asList("2", "a \"quoted\"\r\nvalue"), reader.readNext());
+  }
+
+  @Test
+  public void testSkipNext() throws IOException {
+    SimpleCsvParser parser = (SimpleCsvParser) new CsvParserBuilder().allowUnbalancedQuotes(true).build();
+    CharBlockReader reader = new CharBlockReader(new StringReader("a,\"b\nc\r\nd"), 2);
+    assertTrue(parser.skipNext(reader));
+    assertTrue(parser.skipNext(reader));
+    assertEquals(Arrays.asList("d"), parser.parseNext(reader));
+    assertFalse(parser.skipNext(reader));
+  }
+
+  @Test
+  public void testSkipNextUnterminatedQuote() throws IOException {
+    CsvParserBuilder[] builders = {
+        new CsvParserBuilder(),
+        new CsvParserBuilder().multiLine(true),
+        new CsvParserBuilder().multiLine(true).utf8Bytes(true)
+    };
+    for (CsvParserBuilder builder : builders) {
+      CsvReader reader = new CsvReaderBuilder(new ByteArrayInputStream("a,\"b\nc\n".getBytes("UTF-8")))
+          .csvParser(builder.build()).skipLines(1).build();
+      try {
+        reader.readNext();
+        fail(builder.build().getClass().getSimpleName() + " skipped an unterminated quoted field");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().startsWith("Un-terminated quoted field"));
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package net.quux00.simplecsv;
+
+import java.util.Random;
+
+/**
+ * Times the two ways CharClasses can skip plain UTF-8 bytes: one table
+ * lookup per byte, and the word at a time (SWAR) scan ahead of it.  The
+ * buffer is scanned the way the byte parsers scan it, stopping at each
+ * structural byte and stepping over it, for fields of a few lengths.
+ *
+ * Not a unit test; run it with the test classpath:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes net.quux00.simplecsv.SkipPlainBenchmark
+ * </pre>
+ */
+public class SkipPlainBenchmark {
+  private static final int FIELD_LENGTHS[] = {2, 6, 12, 24, 64};
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int ROUNDS = 200;
+
+  public static void main(String[] args) {
+    CharClasses cc = new CharClasses(',', '"', '\\');
+    System.out.printf("%12s %14s %14s%n", "field bytes", "table MB/s", "words MB/s");
+    for (int fieldLength : FIELD_LENGTHS) {
+      byte[] buf = records(fieldLength);
+      // warm up both loops before timing either
+      for (int n = 0; n < ROUNDS; n++) {
+        scan(cc, buf, false);
+        scan(cc, buf, true);
+      }
+      System.out.printf("%12d %14.0f %14.0f%n", fieldLength, rate(cc, buf, false), rate(cc, buf, true));
+    }
+  }
+
+  /**
+   * @return records of five fields of about the given length, of ASCII
+   *         letters and digits
+   */
+  private static byte[] records(int fieldLength) {
+    Random random = new Random(17);
+    byte[] buf = new byte[BUFFER_SIZE];
+    int field = 0;
+    for (int i = 0; i < buf.length; i++) {
+      int length = fieldLength / 2 + random.nextInt(fieldLength + 1);
+      for (int j = 0; j < length && i < buf.length; j++, i++) {
+        buf[i] = (byte) ('a' + random.nextInt(26));
+      }
+      if (i < buf.length) {
+        buf[i] = (byte) (++field % 5 == 0 ? '\n' : ',');
+      }
+    }
+    return buf;
+  }
+
+  private static double rate(CharClasses cc, byte[] buf, boolean words) {
+    long start = System.nanoTime();
+    long check = 0;
+    for (int n = 0; n < ROUNDS; n++) {
+      check += scan(cc, buf, words);
+    }
+    long nanos = System.nanoTime() - start;
+    if (check == 42) {
+      System.out.println();
+    }
+    return (double) buf.length * ROUNDS / (nanos / 1e9) / (1 << 20);
+  }
+
+  /**
+   * @return number of structural bytes found
+   */
+  private static int scan(CharClasses cc, byte[] buf, boolean words) {
+    int found = 0;
+    int i = 0;
+    while (i < buf.length) {
+      int end = (words ? cc.skipWords(buf, i, buf.length, false) : i);
+      end = cc.skipBytes(buf, end, buf.length, false);
+      found++;
+      i = end + 1;
+    }
+    return found;
+  }
+}
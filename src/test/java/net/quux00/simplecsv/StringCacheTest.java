@@ -0,0 +1,110 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StringCacheTest {
+
+  @Test
+  public void testSameAsWithoutDeduplication() throws IOException {
+    char[] alphabet = {'a', 'b', ',', '"', '\\', ' ', 'n', '\r', '\n'};
+    Random random = new Random(5);
+    CsvParserBuilder[] dialects = ProjectionTest.dialects();
+
+    for (int n = 0; n < 1000; n++) {
+      char[] chars = new char[1 + random.nextInt(24)];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String data = new String(chars);
+      CsvParserBuilder builder = dialects[n % dialects.length];
+      int blockSize = 1 + random.nextInt(8);
+
+      builder.deduplicated = null;
+      List<List<String>> expected = ProjectionTest.parseAll(builder.build(), data, blockSize);
+      CsvParser deduplicating = builder.deduplicate(0, 2).build();
+      List<List<String>> actual = ProjectionTest.parseAll(deduplicating, data, blockSize);
+      assertEquals("<<" + data + ">> " + deduplicating.getClass().getSimpleName(), expected, actual);
+    }
+    for (CsvParserBuilder builder : dialects) {
+      builder.deduplicated = null;
+    }
+  }
+
+  @Test
+  public void testEqualFieldsAreOneInstance() throws IOException {
+    String data = "\"US\",\"open\",\"1\"\n\"US\",\"open\",\"1\"\n";
+    for (CsvParserBuilder builder : ProjectionTest.dialects()) {
+      List<List<String>> all = ProjectionTest.parseAll(builder.deduplicate(0, 1).build(), data, 4);
+      String msg = builder.build().getClass().getSimpleName();
+      assertSame(msg, all.get(0).get(0), all.get(1).get(0));
+      assertSame(msg, all.get(0).get(1), all.get(1).get(1));
+      // only the given columns
+      assertEquals(msg, all.get(0).get(2), all.get(1).get(2));
+      assertNotSame(msg, all.get(0).get(2), all.get(1).get(2));
+    }
+
+    CsvReader reader = new CsvReaderBuilder(new StringReader("x,1\nx,1\n")).deduplicate(0).build();
+    List<List<String>> all = reader.readAll();
+    assertSame(all.get(0).get(0), all.get(1).get(0));
+    assertNotSame(all.get(0).get(1), all.get(1).get(1));
+  }
+
+  @Test
+  public void testCacheIsBounded() {
+    StringCache cache = new StringCache();
+    char[] buf = new char[8];
+    String first = null;
+    for (int n = 0; n < 10 * StringCache.SLOTS; n++) {
+      String s = String.format("%08d", n);
+      s.getChars(0, 8, buf, 0);
+      String cached = cache.get(buf, 0, 8);
+      assertEquals(s, cached);
+      if (n == 0) {
+        first = cached;
+      }
+    }
+    // evicted by then
+    assertNotSame(first, cache.get("00000000".toCharArray(), 0, 8));
+
+    StringBuilder sb = new StringBuilder("[recent]");
+    String recent = cache.get(sb, 1, 7);
+    assertEquals("recent", recent);
+    assertSame(recent, cache.get("recent".toCharArray(), 0, 6));
+    assertSame(recent, cache.get(sb, 1, 7));
+
+    char[] wide = new char[StringCache.MAX_LENGTH + 1];
+    Arrays.fill(wide, 'w');
+    assertNotSame(cache.get(wide, 0, wide.length), cache.get(wide, 0, wide.length));
+  }
+
+  @Test
+  public void testInvalidColumns() {
+    try {
+      new CsvParserBuilder().deduplicate(new int[0]);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      new CsvParserBuilder().deduplicate(2, -1);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testDeduplicatingParserIsNotSpecialized() {
+    assertFalse(new CsvParserBuilder().deduplicate(0).build() instanceof DefaultDialectCsvParser);
+  }
+}
@@ -0,0 +1,107 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Runs against whichever scanning CharClasses uses in this JVM: the Vector API
+ * one when the multi-release classes and the jdk.incubator.vector module are
+ * available, otherwise the scalar tables alone.
+ */
+public class StructuralScannerTest {
+
+  static int naiveSkipPlain(char[] buf, int from, int to, boolean inQuotes, char sep, char quote, char esc) {
+    for (int i = from; i < to; i++) {
+      char c = buf[i];
+      if (c == quote || c == esc) {
+        return i;
+      }
+      if (!inQuotes && (c == sep || c == '\r' || c == '\n')) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  @Test
+  public void testSkipPlainMatchesNaiveScan() {
+    char[] alphabet = {'a', 'b', 'é', ',', '"', '\\', '\r', '\n', '\0', '§'};
+    char[][] dialects = {
+        {',', '"', '\\'},
+        {'§', '"', ParserUtil.NULL_CHARACTER},
+        {'\t', ParserUtil.NULL_CHARACTER, ParserUtil.NULL_CHARACTER}
+    };
+    Random random = new Random(7);
+
+    for (char[] d : dialects) {
+      CharClasses cc = new CharClasses(d[0], d[1], d[2]);
+      // the naive scan must not match undefined chars
+      char quote = (d[1] == ParserUtil.NULL_CHARACTER ? 0xFFFF : d[1]);
+      char esc = (d[2] == ParserUtil.NULL_CHARACTER ? 0xFFFF : d[2]);
+
+      for (int n = 0; n < 500; n++) {
+        char[] buf = new char[random.nextInt(300)];
+        // mostly plain chars, so the runs span several vectors
+        for (int i = 0; i < buf.length; i++) {
+          buf[i] = (random.nextInt(40) == 0 ? alphabet[random.nextInt(alphabet.length)] : 'x');
+        }
+        int from = (buf.length == 0 ? 0 : random.nextInt(buf.length));
+        for (boolean inQuotes : new boolean[] {false, true}) {
+          assertEquals(naiveSkipPlain(buf, from, buf.length, inQuotes, d[0], quote, esc),
+              cc.skipPlain(buf, from, buf.length, inQuotes));
+        }
+      }
+    }
+  }
+
+  static int naiveSkipPlain(byte[] buf, int from, int to, boolean inQuotes) {
+    for (int i = from; i < to; i++) {
+      byte b = buf[i];
+      if (b < 0 || b == '"' || b == '\\' || (!inQuotes && (b == ',' || b == '\r' || b == '\n'))) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  @Test
+  public void testByteSkipPlainMatchesNaiveScan() {
+    byte[] alphabet = {'a', ',', '"', '\\', '\r', '\n', (byte) 0xC3, (byte) 0xA9};
+    CharClasses cc = new CharClasses(',', '"', '\\');
+    Random random = new Random(11);
+
+    for (int n = 0; n < 500; n++) {
+      byte[] buf = new byte[random.nextInt(300)];
+      for (int i = 0; i < buf.length; i++) {
+        buf[i] = (random.nextInt(40) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'x');
+      }
+      for (boolean inQuotes : new boolean[] {false, true}) {
+        assertEquals(naiveSkipPlain(buf, 0, buf.length, inQuotes), cc.skipPlain(buf, 0, buf.length, inQuotes));
+      }
+    }
+  }
+
+  @Test
+  public void testParsersWithLongFields() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      sb.append(SimpleCsvParserTest.longLine.replace("\"", "")).append(",\"quoted, ").append(i).append("\",\\\"\n");
+    }
+    String data = sb.toString();
+    CsvParser generic = new CsvParserBuilder().trimWhitespace(true).build();
+    CsvParser multi = new CsvParserBuilder().multiLine(true).trimWhitespace(true).build();
+    CsvParser utf8 = new CsvParserBuilder().utf8Bytes(true).trimWhitespace(true).build();
+    // the per-char Reader path doesn't scan in runs
+    assertEquals(multi.parseNext(new StringReader(data)),
+        new CsvReader(new StringReader(data), multi).readNext());
+    assertEquals(new CsvReader(new StringReader(data), multi).readAll(),
+        new CsvReader(new StringReader(data), generic).readAll());
+    assertEquals(new CsvReader(new StringReader(data), multi).readAll(),
+        new CsvReaderBuilder(new java.io.ByteArrayInputStream(data.getBytes("UTF-8"))).csvParser(utf8).build().readAll());
+  }
+}
@@ -0,0 +1,51 @@
+package net.quux00.simplecsv;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * A temporary file for the tests that read from files, created before each
+ * test and deleted after it:
+ *
+ * <pre>
+ * &#64;Rule
+ * public final TempCsvFile csv = new TempCsvFile("simplecsv-split");
+ * </pre>
+ */
+public class TempCsvFile extends ExternalResource {
+  private final String prefix;
+  private File file;
+
+  public TempCsvFile(String prefix) {
+    this.prefix = prefix;
+  }
+
+  @Override
+  protected void before() throws IOException {
+    file = File.createTempFile(prefix, ".csv");
+  }
+
+  @Override
+  protected void after() {
+    file.delete();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Replaces the contents of the file with the UTF-8 encoding of the data.
+   */
+  public void write(String data) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(data.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class Utf8CsvParserTest {
+
+  static final String DATA = "a,\"b\r\nb\",c\r\n" +
+      "\u00e9t\u00e9,\"Stan \"\"The Man\"\"\",\u65e5\u672c\u8a9e\n" +
+      "\"\ud83d\ude00 smile\",\\\u00fc,x\u00a7y\r" + 
+      "z\r\n\r\n" + SimpleCsvParserTest.longLine;
+
+  @Test
+  public void testParsesTheSameAsMultiLineParserForAllBlockSizes() throws IOException {
+    CsvParserBuilder[] builders = new CsvParserBuilder[] {
+        new CsvParserBuilder(),
+        new CsvParserBuilder().supportRfc4180QuotedQuotes(true),
+        new CsvParserBuilder().supportRfc4180QuotedQuotes(true).retainEscapeChars(false),
+        new CsvParserBuilder().strictQuotes(true).trimWhitespace(true)
+    };
+    byte[] bytes = DATA.getBytes("UTF-8");
+
+    for (CsvParserBuilder builder : builders) {
+      CsvParser multi = builder.multiLine(true).build();
+      CsvParser utf8 = builder.utf8Bytes(true).build();
+      List<List<String>> expected = readAll(multi, new StringReader(DATA));
+      for (int blockSize = 1; blockSize < 24; blockSize++) {
+        ByteBlockReader bbr = new ByteBlockReader(new ByteArrayInputStream(bytes), blockSize);
+        assertEquals("block size " + blockSize, expected, readAll(utf8, bbr));
+      }
+    }
+  }
+
+  @Test
+  public void testProjectsTheSameAsMultiLineParserForAllBlockSizes() throws IOException {
+    int[][] projections = new int[][] {{0}, {2, 0}, {1}, {5}};
+    byte[] bytes = DATA.getBytes("UTF-8");
+
+    for (int[] columns : projections) {
+      for (boolean rfc4180 : new boolean[] {false, true}) {
+        CsvParser multi = new CsvParserBuilder().supportRfc4180QuotedQuotes(rfc4180).
+            columns(columns).multiLine(true).build();
+        CsvParser utf8 = new CsvParserBuilder().supportRfc4180QuotedQuotes(rfc4180).
+            columns(columns).utf8Bytes(true).build();
+        List<List<String>> expected = readAll(multi, new StringReader(DATA));
+        for (int blockSize = 1; blockSize < 24; blockSize++) {
+          ByteBlockReader bbr = new ByteBlockReader(new ByteArrayInputStream(bytes), blockSize);
+          assertEquals(Arrays.toString(columns) + " block size " + blockSize, expected, readAll(utf8, bbr));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPlainFieldsTakenFromTheBytes() throws IOException {
+    String data = "aa,,b b,\"c,d\",\u00e9t\u00e9,e\\,f,ggg\nx,y\n";
+    List<String> first = new CsvParserBuilder().multiLine(true).build().parseNext(new StringReader(data));
+    assertEquals(Arrays.asList("aa", "", "b b", "c,d", "\u00e9t\u00e9", "e\\", "f", "ggg"), first);
+    byte[] bytes = data.getBytes("UTF-8");
+    CsvParser[] parsers = {
+        new CsvParserBuilder().utf8Bytes(true).build(),
+        new CsvParserBuilder().utf8Bytes(true).deduplicate(0, 2).build()
+    };
+    for (CsvParser parser : parsers) {
+      for (int blockSize = 1; blockSize <= bytes.length; blockSize++) {
+        ByteBlockReader bbr = new ByteBlockReader(new ByteArrayInputStream(bytes), blockSize);
+        assertEquals("block size " + blockSize, first, parser.parseNext(bbr));
+        CsvRecord record = new CsvRecord();
+        assertTrue(((RecordParser) parser).parseNext(bbr, record));
+        assertEquals("block size " + blockSize, Arrays.asList("x", "y"), record.toList());
+        assertNull(parser.parseNext(bbr));
+      }
+    }
+  }
+
+  @Test
+  public void testParseBytes() throws IOException {
+    Utf8CsvParser parser = new Utf8CsvParser();
+    byte[] bytes = "xx\u00e9,\"b,\u00df\"\nc".getBytes("UTF-8");
+    List<String> toks = parser.parse(bytes, 2, bytes.length - 2);
+    assertEquals(Arrays.asList("\u00e9", "b,\u00df"), toks);
+    assertEquals(0, parser.parse(bytes, 0, 0).size());
+  }
+
+  @Test
+  public void testParseNextByteBufferAdvancesPosition() throws IOException {
+    Utf8CsvParser parser = new Utf8CsvParser();
+    byte[] bytes = "a,b\r\n\u00e9\n".getBytes("UTF-8");
+
+    ByteBuffer[] buffers = new ByteBuffer[] { ByteBuffer.wrap(bytes), ByteBuffer.allocateDirect(bytes.length) };
+    buffers[1].put(bytes).flip();
+    for (ByteBuffer buffer : buffers) {
+      assertEquals(Arrays.asList("a", "b"), parser.parseNext(buffer));
+      assertEquals(5, buffer.position());
+      assertEquals(Arrays.asList("\u00e9"), parser.parseNext(buffer));
+      assertNull(parser.parseNext(buffer));
+    }
+  }
+
+  @Test
+  public void testMalformedBytesAreReplaced() throws IOException {
+    Utf8CsvParser parser = new Utf8CsvParser();
+    byte[] bytes = new byte[] { 'a', (byte) 0xC3, ',', (byte) 0xFF, 'b', ',', (byte) 0xE6, (byte) 0x97 };
+    List<String> toks = parser.parse(bytes, 0, bytes.length);
+    assertEquals(Arrays.asList("a\ufffd", "\ufffdb", "\ufffd"), toks);
+  }
+
+  @Test
+  public void testByteBlockReaderDecodesAsReader() throws IOException {
+    ByteBlockReader bbr = new ByteBlockReader(new ByteArrayInputStream(DATA.getBytes("UTF-8")), 3);
+    StringBuilder sb = new StringBuilder();
+    char[] cbuf = new char[5];
+    int n;
+    while ((n = bbr.read(cbuf, 0, cbuf.length)) >= 0) {
+      sb.append(cbuf, 0, n);
+    }
+    assertEquals(DATA, sb.toString());
+    bbr.close();
+  }
+
+  @Test
+  public void testReadLineAfterHalfASupplementaryChar() throws IOException {
+    ByteBlockReader bbr = new ByteBlockReader(new ByteArrayInputStream("\ud83d\ude00ab\ncd".getBytes("UTF-8")), 3);
+    assertEquals('\ud83d', bbr.read());
+    assertEquals("\ude00ab", bbr.readLine());
+    assertEquals("cd", bbr.readLine());
+    assertNull(bbr.readLine());
+
+    bbr = new ByteBlockReader(new ByteArrayInputStream("\ud83d\ude00".getBytes("UTF-8")), 3);
+    assertEquals('\ud83d', bbr.read());
+    assertEquals("\ude00", bbr.readLine());
+    assertNull(bbr.readLine());
+    bbr.close();
+  }
+
+  @Test
+  public void testCsvReaderFromInputStreamAndChannel() throws IOException {
+    byte[] bytes = DATA.getBytes("UTF-8");
+    List<List<String>> expected = new CsvReader(new StringReader(DATA),
+        new CsvParserBuilder().multiLine(true).build()).readAll();
+
+    CsvReader cr = new CsvReaderBuilder(new ByteArrayInputStream(bytes)).
+        csvParser(new Utf8CsvParser()).
+        build();
+    assertEquals(expected, cr.readAll());
+    cr.close();
+
+    cr = new CsvReaderBuilder(Channels.newChannel(new ByteArrayInputStream(bytes))).
+        csvParser(new CsvParserBuilder().utf8Bytes(true).build()).
+        skipLines(1).
+        build();
+    assertEquals(expected.subList(1, expected.size()), cr.readAll());
+    cr.close();
+  }
+
+  @Test
+  public void testCsvReaderFromInputStreamWithCharParser() throws IOException {
+    String data = "a,b\r\n\u00e9t\u00e9,\"\u65e5,\u672c\"\n\ud83d\ude00";
+    byte[] bytes = data.getBytes("UTF-8");
+    List<List<String>> expected = new CsvReader(new StringReader(data)).readAll();
+
+    CsvReader cr = new CsvReaderBuilder(new ByteArrayInputStream(bytes)).build();
+    List<List<String>> actual = cr.readAll();
+    assertEquals(expected, actual);
+    assertTrue(actual.get(1).contains("\u00e9t\u00e9"));
+    cr.close();
+  }
+
+  private static List<List<String>> readAll(CsvParser parser, Reader reader) throws IOException {
+    List<List<String>> records = new ArrayList<List<String>>();
+    List<String> toks;
+    while ((toks = parser.parseNext(reader)) != null) {
+      records.add(toks);
+    }
+    return records;
+  }
+}
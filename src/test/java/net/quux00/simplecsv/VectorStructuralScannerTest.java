@@ -0,0 +1,76 @@
+package net.quux00.simplecsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the Vector API scanner itself against the naive scans of
+ * StructuralScannerTest.  It can only be loaded on JDK 17+ with the
+ * multi-release classes and jdk.incubator.vector, which the vector-api build
+ * profile sets up for a second test run, so only that run includes this test.
+ */
+public class VectorStructuralScannerTest {
+  // the most lanes of any vector shape: 64 bytes with AVX-512
+  private static final int MAX_LANES = 64;
+
+  private StructuralScanner scanner;
+
+  @Before
+  public void loadScanner() {
+    scanner = StructuralScanner.newInstance(',', '"', '\\');
+    assertNotNull("The vector scanner could not be loaded", scanner);
+    assertEquals(StructuralScanner.VECTOR_SCANNER_CLASS, scanner.getClass().getName());
+  }
+
+  @Test
+  public void testCharsMatchNaiveScan() {
+    char[] alphabet = {'a', 'é', ',', '"', '\\', '\r', '\n', '\0'};
+    Random random = new Random(5);
+
+    for (int n = 0; n < 1000; n++) {
+      char[] buf = new char[random.nextInt(400)];
+      for (int i = 0; i < buf.length; i++) {
+        buf[i] = (random.nextInt(60) == 0 ? alphabet[random.nextInt(alphabet.length)] : 'x');
+      }
+      int from = (buf.length == 0 ? 0 : random.nextInt(buf.length));
+      for (boolean inQuotes : new boolean[] {false, true}) {
+        int expected = StructuralScannerTest.naiveSkipPlain(buf, from, buf.length, inQuotes, ',', '"', '\\');
+        assertSkipped(expected, scanner.skipPlain(buf, from, buf.length, inQuotes), buf.length);
+      }
+    }
+  }
+
+  @Test
+  public void testBytesMatchNaiveScan() {
+    byte[] alphabet = {'a', ',', '"', '\\', '\r', '\n', 0, (byte) 0xC3, (byte) 0xA9};
+    Random random = new Random(13);
+
+    for (int n = 0; n < 1000; n++) {
+      byte[] buf = new byte[random.nextInt(400)];
+      for (int i = 0; i < buf.length; i++) {
+        buf[i] = (random.nextInt(60) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'x');
+      }
+      int from = (buf.length == 0 ? 0 : random.nextInt(buf.length));
+      for (boolean inQuotes : new boolean[] {false, true}) {
+        int expected = StructuralScannerTest.naiveSkipPlain(buf, from, buf.length, inQuotes);
+        assertSkipped(expected, scanner.skipPlain(buf, from, buf.length, inQuotes), buf.length);
+      }
+    }
+  }
+
+  /**
+   * The scanner finds the structural char exactly, or stops short of it
+   * only at the last partial vector, which the table scan finishes.
+   */
+  private static void assertSkipped(int expected, int actual, int to) {
+    if (actual != expected) {
+      assertTrue("stopped at " + actual + " before " + expected, actual < expected && to - actual < MAX_LANES);
+    }
+  }
+}